@@ -0,0 +1,12 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+
+/**
+ * The outcome of a driver trying to accept a request with DBManager.acceptRequest()
+ */
+public enum AcceptResult {
+    ACCEPTED,       // The request is now ACTIVE with this driver
+    ALREADY_TAKEN,  // Another driver accepted it first, or the rider cancelled it
+    NOT_FOUND,      // The request no longer exists
+    FAILED          // The transaction couldn't reach Firestore. Nothing was changed
+}
@@ -0,0 +1,55 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+
+import com.google.maps.model.LatLng;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Looks up places with the platform Geocoder. One Geocoder is kept for the lifetime of this object
+ * instead of a new one for every lookup
+ */
+public class AndroidGeocodingBackend implements GeocodingBackend {
+    private Geocoder geocoder;
+
+
+    /**
+     * Constructor for AndroidGeocodingBackend
+     * @param context Any context. Only the application context is kept
+     */
+    public AndroidGeocodingBackend(Context context) {
+        this.geocoder = new Geocoder(context.getApplicationContext());
+    }
+
+
+    @Override
+    public LatLng geocode(String query) throws IOException {
+        List<Address> addresses = geocoder.getFromLocationName(query, 1);
+        if (addresses == null || addresses.isEmpty()) {
+            return null;
+        }
+        return new LatLng(addresses.get(0).getLatitude(), addresses.get(0).getLongitude());
+    }
+
+
+    @Override
+    public List<Place> suggest(String prefix, int limit) throws IOException {
+        List<Place> places = new ArrayList<>();
+        List<Address> addresses = geocoder.getFromLocationName(prefix, limit);
+        if (addresses == null) {
+            return places;
+        }
+        for (Address address : addresses) {
+            if (address.getMaxAddressLineIndex() >= 0) {
+                places.add(new Place(address.getAddressLine(0), new LatLng(address.getLatitude(), address.getLongitude())));
+            }
+        }
+        return places;
+    }
+}
@@ -0,0 +1,13 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+
+/**
+ * Implement this interface and onBestNextRide will be called, on the main thread, when
+ * PickupMarkerManager.findBestNextRide() has ranked the open requests around the driver
+ */
+/// StackOverflow post by Rupesh
+/// Author: https://stackoverflow.com/users/787438/rupesh
+/// Answer: https://stackoverflow.com/questions/994840/how-to-create-our-own-listener-interface-in-android
+public interface BestNextRideListener {
+    void onBestNextRide(MarkerStoreObject request, long pickupSeconds);     // request is null if none is in range
+}
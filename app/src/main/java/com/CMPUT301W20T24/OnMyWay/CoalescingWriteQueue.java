@@ -0,0 +1,141 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.firebase.firestore.FieldValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Collects document writes until they are sent together, collapsing writes to the same document.
+ * A set replaces anything queued for the document, and an update is merged into what is already
+ * queued, so the document ends up the same as if every write had been sent one by one. An update
+ * merged into a set is applied the way Firestore would apply it: "a.b" changes the b field inside
+ * the map a, and FieldValue.delete() removes the field, since a set can't contain either.
+ * Every write keeps its own completion handle, so callers still hear about their own write
+ * @param <C> The type of completion handle, such as a TaskCompletionSource
+ */
+public class CoalescingWriteQueue<C> {
+    /**
+     * The combined writes to one document
+     * @param <C> The type of completion handle
+     */
+    public static class Write<C> {
+        public final String path;
+        private boolean set;                        // True to replace the document, false to update it
+        private Map<String, Object> fields = new HashMap<>();
+        private List<C> completions = new ArrayList<>();
+
+        Write(String path) {
+            this.path = path;
+        }
+
+        public boolean isSet() {
+            return set;
+        }
+
+        public Map<String, Object> getFields() {
+            return fields;
+        }
+
+        public List<C> getCompletions() {
+            return completions;
+        }
+    }
+
+
+    private LinkedHashMap<String, Write<C>> pending = new LinkedHashMap<>();   // In the order first written
+
+
+    /**
+     * Queues a write
+     * @param path The path of the document, such as "users/abc"
+     * @param set True to replace the whole document, false to only change the given fields
+     * @param fields The fields to write
+     * @param completion The handle to complete when this write is sent
+     * @return True if the queue was empty before, so the caller should schedule a flush
+     */
+    public synchronized boolean add(String path, boolean set, Map<String, Object> fields, C completion) {
+        boolean wasEmpty = pending.isEmpty();
+        Write<C> write = pending.get(path);
+
+        if (write == null) {
+            write = new Write<>(path);
+            pending.put(path, write);
+        }
+
+        if (set) {
+            write.set = true;
+            write.fields = new HashMap<>(fields);
+        }
+        else if (write.set) {
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                applyUpdate(write.fields, field.getKey(), field.getValue());
+            }
+        }
+        else {
+            write.fields.putAll(fields);    // Merged into an earlier update. Later values win
+        }
+        write.completions.add(completion);
+
+        return wasEmpty;
+    }
+
+
+    /**
+     * Removes and returns up to maxWrites queued writes, oldest first
+     * @param maxWrites The most writes to return
+     * @return The combined writes
+     */
+    public synchronized List<Write<C>> drain(int maxWrites) {
+        List<Write<C>> writes = new ArrayList<>(Math.min(maxWrites, pending.size()));
+        Iterator<Write<C>> iterator = pending.values().iterator();
+
+        while (iterator.hasNext() && writes.size() < maxWrites) {
+            writes.add(iterator.next());
+            iterator.remove();
+        }
+        return writes;
+    }
+
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+
+    // Apply one field of an update to the fields of a set. Maps on the way to the field are
+    // copied before they are changed, since they may belong to the caller
+    @SuppressWarnings("unchecked")
+    private static void applyUpdate(Map<String, Object> document, String fieldPath, Object value) {
+        String[] names = fieldPath.split("\\.");
+        boolean delete = FieldValue.delete().equals(value);
+        Map<String, Object> map = document;
+
+        for (int i = 0; i < names.length - 1; ++i) {
+            Object child = map.get(names[i]);
+            if (!(child instanceof Map)) {
+                if (delete) {
+                    return;     // Nothing there to delete
+                }
+                child = new HashMap<String, Object>();
+            }
+            else {
+                child = new HashMap<>((Map<String, Object>) child);
+            }
+            map.put(names[i], child);
+            map = (Map<String, Object>) child;
+        }
+
+        if (delete) {
+            map.remove(names[names.length - 1]);
+        }
+        else {
+            map.put(names[names.length - 1], value);
+        }
+    }
+}
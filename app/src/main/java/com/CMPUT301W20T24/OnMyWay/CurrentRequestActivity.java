@@ -41,7 +41,7 @@ public class CurrentRequestActivity extends AppCompatActivity {
 
             double lat = extras.getDouble("REQUEST_LATITUDE", 0);
             double lon = extras.getDouble("REQUEST_LONGITUDE", 0);
-            float payment = extras.getFloat("REQUEST_PAYMENTAMOUNT", 0);
+            Money payment = Money.ofCents(extras.getLong("REQUEST_PAYMENT_CENTS", 0));
             double endLat;
             double endLon;
 
@@ -50,7 +50,7 @@ public class CurrentRequestActivity extends AppCompatActivity {
             TextView endLocation = (TextView) findViewById(R.id.end_location);
 
             location.setText(Double.toString(lat) + " " + Double.toString(lon));
-            paymentAmount.setText(Float.toString(payment));
+            paymentAmount.setText(payment.format());
 
             if(extras.containsKey("REQUEST_LATITUDE_ARRIVAL") && extras.containsKey("REQUEST_LONGITUDE_ARRIVAL")){
                 endLat = extras.getDouble("REQUEST_LATITUDE_ARRIVAL");
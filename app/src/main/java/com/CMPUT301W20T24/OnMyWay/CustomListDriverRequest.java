@@ -43,6 +43,7 @@ public class CustomListDriverRequest extends ArrayAdapter<Request> {
         usernameText.setText(request.getRiderId());
         latText.setText(String.valueOf(request.getStartLatitude()));
         longText.setText(String.valueOf(request.getEndLatitude()));
+        paymentText.setText(request.getPaymentAmount().format());
 
         return view;
     }
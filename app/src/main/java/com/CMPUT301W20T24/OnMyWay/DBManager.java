@@ -6,17 +6,24 @@ import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.AuthResult;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Transaction;
 import com.squareup.picasso.Picasso;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import androidx.annotation.NonNull;
 
@@ -27,12 +34,19 @@ import androidx.annotation.NonNull;
  */
 public class DBManager {
     private static final String TAG = "OMW/DBManager";  // Use this tag for call Log.d()
+    private static final long OPEN_REQUESTS_LIMIT = 200;    // Most open requests a driver screen needs
+    private static final long HISTORY_LIMIT = 50;          // Most past rides shown in driver history
+    private static final long RIDER_PLACES_LIMIT = 100;    // Most past requests read for search suggestions
+    private static final long RECENT_REQUESTS_LIMIT = 500; // Most requests counted for surge pricing
     private FirebaseAuth auth;
     private FirebaseFirestore db;
+    private WritePipeline writePipeline;
     private LoginListener loginListener;
     private CurrentUserInfoPulledListener currentUserInfoPulledListener;
     private UserInfoPulledListener userInfoPulledListener;
     private UserDeletedListener userDeletedListener;
+    private NearbyRequestsPulledListener nearbyRequestsPulledListener;
+    private RequestAcceptedListener requestAcceptedListener;
 
 
     /**
@@ -42,6 +56,7 @@ public class DBManager {
     public DBManager() {
         auth = FirebaseAuth.getInstance();     // Initialize Firebase Auth
         db = FirebaseFirestore.getInstance();  // Access a Cloud Firestore instance
+        writePipeline = WritePipeline.getInstance();   // Batches writes made close together
     }
 
 
@@ -84,6 +99,26 @@ public class DBManager {
     }
 
 
+    /**
+     * Method to set up this listener
+     * @param nearbyRequestsPulledListener A NearbyRequestsPulledListener. This is the method that
+     *                                     will be called after nearbyOpenRequests() finishes
+     */
+    public void setNearbyRequestsPulledListener(NearbyRequestsPulledListener nearbyRequestsPulledListener) {
+        this.nearbyRequestsPulledListener = nearbyRequestsPulledListener;
+    }
+
+
+    /**
+     * Method to set up this listener
+     * @param requestAcceptedListener A RequestAcceptedListener. This is the method that
+     *                                will be called after acceptRequest() finishes
+     */
+    public void setRequestAcceptedListener(RequestAcceptedListener requestAcceptedListener) {
+        this.requestAcceptedListener = requestAcceptedListener;
+    }
+
+
     /**
      * Takes an email address, password, and parent activity, and tries to login using Firebase Auth.
      * It calls loginListener.onLoginSuccess() if successful and loginListener.onLoginFailure() otherwise
@@ -193,18 +228,10 @@ public class DBManager {
                                 Log.d(TAG, "User information fetched from database");
 
                                 // Build a new User object with the information we fetched
-                                // Check each one to make sure its not null
-                                // Everything from FireStore should be okay if we store it correctly
-                                User newUser = new User(
-                                        userId,
-                                        Utilities.checkStringNotNull(document.getString("firstName")),
-                                        Utilities.checkStringNotNull(document.getString("lastName")),
-                                        Utilities.checkBooleanNotNull(document.getBoolean("isDriver")),
-                                        Utilities.checkStringNotNull(document.getString("email")),
-                                        Utilities.checkStringNotNull(document.getString("phone")),
-                                        Utilities.checkLongNotNull(document.getLong("upRatings")),
-                                        Utilities.checkLongNotNull(document.getLong("totalRatings"))
-                                );
+                                User newUser = DocumentCodec.decodeUser(userId, document.getData());
+                                if (newUser == null) {
+                                    return;     // Malformed profiles are counted and logged by DocumentCodec
+                                }
 
                                 // Download the user's profile photo and cache it for later
                                 Picasso.get().load(newUser.getProfilePhotoUrl()).fetch();
@@ -239,19 +266,8 @@ public class DBManager {
     /// Google Firebase Docs, Add data to Cloud Firestore
     /// https://firebase.google.com/docs/firestore/manage-data/add-data
     public void pushUserInfo(User updatedUser) {
-        // Construct a Map with all the values to upload
-        Map<String, Object> updatedUserObj = new HashMap<>();
-        updatedUserObj.put("firstName", updatedUser.getFirstName());
-        updatedUserObj.put("lastName", updatedUser.getLastName());
-        updatedUserObj.put("isDriver", updatedUser.isDriver());
-        updatedUserObj.put("email", updatedUser.getEmail());
-        updatedUserObj.put("phone", updatedUser.getPhoneNumber());
-        updatedUserObj.put("upRatings", updatedUser.getUpRatings());
-        updatedUserObj.put("totalRatings", updatedUser.getTotalRatings());
-
         // Extract the user id from updatedUser and update that document on FireStore
-        db.collection("users").document(updatedUser.getUserId())
-                .set(updatedUserObj)
+        writePipeline.set(db.collection("users").document(updatedUser.getUserId()), userToMap(updatedUser))
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void aVoid) {
@@ -339,37 +355,14 @@ public class DBManager {
      * @author Payas, John
      */
     public void pushRequestInfo(Request updatedRequest) {
-        // Store all values in the database
-        Map<String, Object> updatedRequestObj = new HashMap<>();
-
-        updatedRequestObj.put("requestID", updatedRequest.getRequestId());
-        updatedRequestObj.put("riderId", updatedRequest.getRiderId());
-        updatedRequestObj.put("driverId", updatedRequest.getDriverId());
-
-        updatedRequestObj.put("startLocationName", updatedRequest.getStartLocationName());
-        updatedRequestObj.put("startLatitude", updatedRequest.getStartLatitude());
-        updatedRequestObj.put("startLongitude", updatedRequest.getStartLongitude());
-
-        updatedRequestObj.put("endLocationName", updatedRequest.getEndLocationName());
-        updatedRequestObj.put("endLatitude", updatedRequest.getEndLatitude());
-        updatedRequestObj.put("endLongitude", updatedRequest.getEndLongitude());
-
-        updatedRequestObj.put("paymentAmount", updatedRequest.getPaymentAmount());
-        updatedRequestObj.put("status", updatedRequest.getStatus());
+        Map<String, Object> updatedRequestObj = requestToMap(updatedRequest);
 
-        RequestTime timeCreated = updatedRequest.getTimeCreated();
-        RequestTime timeAccepted = updatedRequest.getTimeAccepted();
-
-        updatedRequestObj.put("timeCreated", (timeCreated == null) ? null : timeCreated.toLong());
-        updatedRequestObj.put("timeAccepted", (timeAccepted == null) ? null : timeAccepted.toLong());
-        
-        //Adds a new record the request to the 'riderRequests' collection.
-        db.collection("riderRequests")
-                .add(updatedRequestObj)
-                .addOnSuccessListener(new OnSuccessListener<DocumentReference>() {
+        // Requests are stored under their requestId, so they can be found without a query
+        writePipeline.set(requestDocument(updatedRequest.getRequestId()), updatedRequestObj)
+                .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
-                    public void onSuccess(DocumentReference documentReference) {
-                        Log.d(TAG, "Request added to database successfully. ID: " + documentReference.getId());
+                    public void onSuccess(Void aVoid) {
+                        Log.d(TAG, "Request added to database successfully. ID: " + updatedRequest.getRequestId());
                     }
                 })
                 .addOnFailureListener(new OnFailureListener() {
@@ -385,40 +378,84 @@ public class DBManager {
      * If a rider cancels a ride, update the status to "CANCELLED" in the database
      * @param requestID The ID of the the request we want to cancel
      */
-    /// StackOverflow post by Alan Nelson
-    /// Author: https://stackoverflow.com/users/5526322/alan-nelson
-    /// Answer: https://stackoverflow.com/a/51092366
     public void cancelRequest(String requestID){
-        CollectionReference collectionReference = db.collection("riderRequests");
-        Query query = collectionReference.whereEqualTo("requestID", requestID);
-        query.get().addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
-            @Override
-            public void onComplete(@NonNull Task<QuerySnapshot> task) {
-                if (task.isSuccessful()){
-                    for (DocumentSnapshot document : task.getResult()){
-                        Log.d(TAG, document.getId() + " => " + document.getData());
-                        String idDelete = document.getId();
-                        db.collection("riderRequests").document(idDelete)
-                                .update("status", "CANCELLED")
-                                .addOnSuccessListener(new OnSuccessListener<Void>() {
-                                    @Override
-                                    public void onSuccess(Void aVoid) {
-                                        Log.d(TAG, "DocumentSnapshot successfully deleted!");
-                                    }
-                                })
-                                .addOnFailureListener(new OnFailureListener() {
-                                    @Override
-                                    public void onFailure(@NonNull Exception e) {
-                                        Log.w(TAG, "Error deleting document", e);
-                                    }
-                                });
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("status", "CANCELLED");
+
+        updateRequest(requestID, fields)
+                .addOnSuccessListener(new OnSuccessListener<Void>() {
+                    @Override
+                    public void onSuccess(Void aVoid) {
+                        Log.d(TAG, "Request successfully cancelled");
+                    }
+                })
+                .addOnFailureListener(new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        Log.w(TAG, "Error cancelling request", e);
                     }
-                } else {
-                    Log.d(TAG, "Error getting documents: ", task.getException());
+                });
+    }
+
+
+    /**
+     * Makes a driver the driver of a request, but only if the request is still open. The check and
+     * the write happen in one transaction, so if two drivers accept the same request at the same
+     * time only one of them gets it. requestAcceptedListener is called with the outcome
+     * @param documentId The document ID of the request
+     * @param driverId The userId of the driver accepting it
+     */
+    /// Google Firebase Docs, Transactions and batched writes
+    /// https://firebase.google.com/docs/firestore/manage-data/transactions
+    public void acceptRequest(String documentId, String driverId) {
+        final DocumentReference request = requestDocument(documentId);
+        final long timeAccepted = RequestTime.nowSeconds();
+
+        db.runTransaction(new Transaction.Function<AcceptResult>() {
+            @Override
+            public AcceptResult apply(@NonNull Transaction transaction) throws FirebaseFirestoreException {
+                DocumentSnapshot snapshot = transaction.get(request);
+
+                if (!snapshot.exists()) {
+                    return AcceptResult.NOT_FOUND;
+                }
+
+                String status = snapshot.getString("status");
+                if ("INCOMPLETE".equals(status)) {
+                    transaction.update(request,
+                            "driverId", driverId,
+                            "status", "ACTIVE",
+                            "timeAccepted", timeAccepted);
+                    return AcceptResult.ACCEPTED;
+                }
+                else if ("ACTIVE".equals(status) && driverId.equals(snapshot.getString("driverId"))) {
+                    return AcceptResult.ACCEPTED;   // This driver already has it, from an earlier tap
+                }
+                else {
+                    return AcceptResult.ALREADY_TAKEN;
                 }
             }
-        });
+        }).addOnCompleteListener(new OnCompleteListener<AcceptResult>() {
+            @Override
+            public void onComplete(@NonNull Task<AcceptResult> task) {
+                AcceptResult result;
+
+                if (task.isSuccessful()) {
+                    result = task.getResult();
+                }
+                else {
+                    Log.w(TAG, "Error accepting request " + documentId, task.getException());
+                    result = AcceptResult.FAILED;
+                }
 
+                if (requestAcceptedListener == null) {
+                    Log.d(TAG, "No listeners are assigned for requestAcceptedListener");
+                }
+                else {
+                    requestAcceptedListener.onRequestAccepted(result);
+                }
+            }
+        });
     }
 
 
@@ -428,4 +465,271 @@ public class DBManager {
     public CollectionReference getRequests(){
         return db.collection("riderRequests");
     }
+
+
+    /**
+     * Returns a query for requests that are waiting for a driver, newest first. The filter runs on
+     * the server so only open requests are downloaded. Backed by the (status, timeCreated)
+     * composite index in firestore.indexes.json
+     * @return A Query that can be used with get() or addSnapshotListener()
+     */
+    public Query openRequests() {
+        return getRequests()
+                .whereEqualTo("status", "INCOMPLETE")
+                .orderBy("timeCreated", Query.Direction.DESCENDING)
+                .limit(OPEN_REQUESTS_LIMIT);
+    }
+
+
+    /**
+     * Returns a query for the open requests whose pickup location is in a geohash cell. Backed by
+     * the (status, geohash) composite index in firestore.indexes.json
+     * @param cell A geohash prefix, see the Geohash class
+     * @return A Query that can be used with get() or addSnapshotListener()
+     */
+    public Query openRequestsInCell(String cell) {
+        return getRequests()
+                .whereEqualTo("status", "INCOMPLETE")
+                .orderBy("geohash")
+                .startAt(cell)
+                .endAt(Geohash.rangeEnd(cell))
+                .limit(OPEN_REQUESTS_LIMIT);
+    }
+
+
+    /**
+     * Returns a query for the rides a driver has completed, most recently accepted first. Backed by
+     * the (driverId, status, timeAccepted) composite index in firestore.indexes.json
+     * @param driverId The userId of the driver
+     * @return A Query that can be used with get() or addSnapshotListener()
+     */
+    public Query completedRequestsForDriver(String driverId) {
+        return getRequests()
+                .whereEqualTo("driverId", driverId)
+                .whereEqualTo("status", "COMPLETE")
+                .orderBy("timeAccepted", Query.Direction.DESCENDING)
+                .limit(HISTORY_LIMIT);
+    }
+
+
+    /**
+     * Returns a query for the requests created since a time, newest first, whatever their status.
+     * Filters and sorts on one field, so it needs no composite index
+     * @param sinceSeconds The earliest timeCreated to include, see RequestTime.nowSeconds()
+     * @return A Query that can be used with get() or addSnapshotListener()
+     */
+    public Query requestsCreatedSince(long sinceSeconds) {
+        return getRequests()
+                .whereGreaterThanOrEqualTo("timeCreated", sinceSeconds)
+                .orderBy("timeCreated", Query.Direction.DESCENDING)
+                .limit(RECENT_REQUESTS_LIMIT);
+    }
+
+
+    /**
+     * Returns a query for the requests accepted since a time, newest first, however long ago they
+     * were created. Filters and sorts on one field, so it needs no composite index
+     * @param sinceSeconds The earliest timeAccepted to include, see RequestTime.nowSeconds()
+     * @return A Query that can be used with get() or addSnapshotListener()
+     */
+    public Query requestsAcceptedSince(long sinceSeconds) {
+        return getRequests()
+                .whereGreaterThanOrEqualTo("timeAccepted", sinceSeconds)
+                .orderBy("timeAccepted", Query.Direction.DESCENDING)
+                .limit(RECENT_REQUESTS_LIMIT);
+    }
+
+
+    /**
+     * Returns a query for the requests a rider has made, in no particular order. Only used for the
+     * names of the places in them, so it filters on one field and needs no composite index
+     * @param riderId The userId of the rider
+     * @return A Query that can be used with get() or addSnapshotListener()
+     */
+    public Query requestsForRider(String riderId) {
+        return getRequests()
+                .whereEqualTo("riderId", riderId)
+                .limit(RIDER_PLACES_LIMIT);
+    }
+
+
+    /**
+     * Returns the document of a request. Requests are stored with their requestId as the document ID
+     * @param requestId The requestId generated by the Request class
+     * @return A DocumentReference that can be used with get(), update() or addSnapshotListener()
+     */
+    public DocumentReference requestDocument(String requestId) {
+        return getRequests().document(requestId);
+    }
+
+
+    /**
+     * Fetches a single request
+     * @param requestId The requestId generated by the Request class
+     * @return The Task of the read. Its DocumentSnapshot doesn't exist if there is no such request
+     */
+    public Task<DocumentSnapshot> getRequest(String requestId) {
+        return requestDocument(requestId).get();
+    }
+
+
+    /**
+     * Changes some fields of a request. Changes made close together are sent in one batch
+     * @param requestId The requestId generated by the Request class
+     * @param fields The fields to change
+     * @return The Task of the write
+     */
+    public Task<Void> updateRequest(String requestId, Map<String, Object> fields) {
+        return writePipeline.update(requestDocument(requestId), fields);
+    }
+
+
+    /**
+     * Listens to the changes of a single request
+     * @param requestId The requestId generated by the Request class
+     * @param listener Called with the request every time it changes
+     * @return The ListenerRegistration to remove the listener with
+     */
+    public ListenerRegistration listenToRequest(String requestId, EventListener<DocumentSnapshot> listener) {
+        return requestDocument(requestId).addSnapshotListener(listener);
+    }
+
+
+    /**
+     * Fetches the open requests whose pickup location is within radiusKm of a point.
+     * One prefix range query is sent for each geohash cell covering the circle, and the results
+     * are then filtered by their exact distance. onNearbyRequestsPulled() is called with the
+     * matching documents when every query has finished. The filtering and the listener run on
+     * SnapshotExecutor's thread, not the main thread
+     * @param latitude The latitude of the centre of the search, usually the driver's location
+     * @param longitude The longitude of the centre of the search
+     * @param radiusKm The search radius in kilometres
+     */
+    public void nearbyOpenRequests(double latitude, double longitude, double radiusKm) {
+        List<Task<QuerySnapshot>> cellQueries = new ArrayList<>();
+
+        for (String cell : Geohash.coveringCells(latitude, longitude, radiusKm)) {
+            cellQueries.add(openRequestsInCell(cell).get());
+        }
+
+        Tasks.<QuerySnapshot>whenAllSuccess(cellQueries)
+                .addOnSuccessListener(SnapshotExecutor.get(), new OnSuccessListener<List<QuerySnapshot>>() {
+                    @Override
+                    public void onSuccess(List<QuerySnapshot> cellSnapshots) {
+                        List<DocumentSnapshot> nearbyRequests = new ArrayList<>();
+
+                        for (QuerySnapshot cellSnapshot : cellSnapshots) {
+                            for (DocumentSnapshot document : cellSnapshot.getDocuments()) {
+                                Double startLatitude = document.getDouble("startLatitude");
+                                Double startLongitude = document.getDouble("startLongitude");
+
+                                // The cells cover a square, so drop the corners outside the circle
+                                if (startLatitude != null && startLongitude != null
+                                        && Utilities.haversineKm(latitude, longitude, startLatitude, startLongitude) <= radiusKm) {
+                                    nearbyRequests.add(document);
+                                }
+                            }
+                        }
+
+                        Log.d(TAG, "Found " + nearbyRequests.size() + " nearby requests");
+
+                        if (nearbyRequestsPulledListener == null) {
+                            Log.d(TAG, "No listeners are assigned for nearbyRequestsPulledListener");
+                        }
+                        else {
+                            nearbyRequestsPulledListener.onNearbyRequestsPulled(nearbyRequests);
+                        }
+                    }
+                })
+                .addOnFailureListener(new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        Log.w(TAG, "Error fetching nearby requests", e);
+                    }
+                });
+    }
+
+
+    /**
+     * Builds the Firestore fields of a user document
+     * @param user The User to convert
+     * @return A Map with one entry per field of the users document
+     */
+    public static Map<String, Object> userToMap(User user) {
+        // Construct a Map with all the values to upload
+        Map<String, Object> userObj = new HashMap<>();
+        userObj.put("firstName", user.getFirstName());
+        userObj.put("lastName", user.getLastName());
+        userObj.put("isDriver", user.isDriver());
+        userObj.put("email", user.getEmail());
+        userObj.put("phone", user.getPhoneNumber());
+        userObj.put("upRatings", user.getUpRatings());
+        userObj.put("totalRatings", user.getTotalRatings());
+        return userObj;
+    }
+
+
+    /**
+     * Builds the Firestore fields of a request document
+     * @param request The Request to convert
+     * @return A Map with one entry per field of the riderRequests document
+     */
+    public static Map<String, Object> requestToMap(Request request) {
+        // Store all values in the database
+        Map<String, Object> requestObj = new HashMap<>();
+
+        requestObj.put("requestID", request.getRequestId());
+        requestObj.put("riderId", request.getRiderId());
+        requestObj.put("driverId", request.getDriverId());
+
+        requestObj.put("startLocationName", request.getStartLocationName());
+        requestObj.put("startLatitude", request.getStartLatitude());
+        requestObj.put("startLongitude", request.getStartLongitude());
+        requestObj.put("geohash", Geohash.encode(
+                request.getStartLatitude(),
+                request.getStartLongitude(),
+                Geohash.STORED_PRECISION
+        ));
+
+        requestObj.put("endLocationName", request.getEndLocationName());
+        requestObj.put("endLatitude", request.getEndLatitude());
+        requestObj.put("endLongitude", request.getEndLongitude());
+
+        // Stored as whole cents so the amount is exact. Older requests have a "paymentAmount" string instead
+        requestObj.put("paymentCents", request.getPaymentAmount().getCents());
+        requestObj.put("paymentCurrency", request.getPaymentAmount().getCurrency());
+        requestObj.put("status", request.getStatus());
+
+        RequestTime timeCreated = request.getTimeCreated();
+        RequestTime timeAccepted = request.getTimeAccepted();
+
+        requestObj.put("timeCreated", (timeCreated == null) ? null : timeCreated.toLong());
+        requestObj.put("timeAccepted", (timeAccepted == null) ? null : timeAccepted.toLong());
+        return requestObj;
+    }
+
+
+    /**
+     * Overwrites a document with the given fields. Writing the same fields twice has the same
+     * result as writing them once, so this is safe to retry
+     * @param collection The collection of the document
+     * @param documentId The ID of the document
+     * @param data The fields of the document
+     * @return The Task of the write
+     */
+    public Task<Void> setDocument(String collection, String documentId, Map<String, Object> data) {
+        return writePipeline.set(db.collection(collection).document(documentId), data);
+    }
+
+
+    /**
+     * Updates some fields of an existing document. Fails if the document doesn't exist
+     * @param collection The collection of the document
+     * @param documentId The ID of the document
+     * @param data The fields to change
+     * @return The Task of the write
+     */
+    public Task<Void> updateDocument(String collection, String documentId, Map<String, Object> data) {
+        return writePipeline.update(db.collection(collection).document(documentId), data);
+    }
 }
@@ -0,0 +1,314 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * Counts the demand for rides and the drivers taking them in each geohash cell over the last
+ * WINDOW_MINUTES, and turns the two into a surge multiplier for the FareEngine. Demand is the
+ * open requests created in the window. There are no driver locations in the database, so supply
+ * is the rides accepted in the window, however long ago they were requested, which shows where
+ * drivers are picking riders up. The two come from different queries, so they are applied
+ * separately with upsertDemand() and upsertSupply().
+ * Each cell keeps one bucket per minute in a ring, so applying a changed document and reading a
+ * surge are O(1), and the window slides by emptying the buckets that fall out of it. Documents
+ * are remembered by ID, so a request that is modified or removed takes back what it added.
+ * Not thread-safe: use it from one thread, or synchronize on it
+ */
+public class DemandDensity {
+    public static final int PRECISION = 5;              // Cells about 5km wide
+    public static final int WINDOW_MINUTES = 15;
+    private static final int MIN_DEMAND = 3;            // Fewer open requests than this never surge
+    private static final double SURGE_PER_PRESSURE = 0.25;
+    private static final double MAX_SURGE = 3.0;
+
+    private Map<String, CellWindow> cells = new HashMap<>();      // By geohash cell
+    private Map<String, Event> demandEvents = new HashMap<>();    // By documentId
+    private Map<String, Event> supplyEvents = new HashMap<>();    // By documentId
+
+
+    // What a request adds to the counts: one unit of demand or of supply, in a cell and a minute
+    private static class Event {
+        private final String cell;
+        private final long minute;
+        private final boolean supply;
+
+        Event(String cell, long minute, boolean supply) {
+            this.cell = cell;
+            this.minute = minute;
+            this.supply = supply;
+        }
+
+        boolean sameAs(Event other) {
+            return other != null && cell.equals(other.cell) && minute == other.minute && supply == other.supply;
+        }
+    }
+
+
+    // The counts of one cell, one bucket per minute. The buckets hold the minutes in
+    // (newestMinute - WINDOW_MINUTES, newestMinute]
+    private static class CellWindow {
+        private final int[] demand = new int[WINDOW_MINUTES];
+        private final int[] supply = new int[WINDOW_MINUTES];
+        private int demandTotal;
+        private int supplyTotal;
+        private long newestMinute = Long.MIN_VALUE;
+
+        // Slide the window forward to a minute, emptying the buckets that fall out of it. At most
+        // WINDOW_MINUTES buckets are emptied, however far the window moves
+        void advance(long minute) {
+            if (minute <= newestMinute) {
+                return;
+            }
+            long steps = (newestMinute == Long.MIN_VALUE) ? WINDOW_MINUTES : Math.min(minute - newestMinute, WINDOW_MINUTES);
+            for (long m = minute - steps + 1; m <= minute; ++m) {
+                int i = bucket(m);
+                demandTotal -= demand[i];
+                supplyTotal -= supply[i];
+                demand[i] = 0;
+                supply[i] = 0;
+            }
+            newestMinute = minute;
+        }
+
+        boolean inWindow(long minute) {
+            return minute <= newestMinute && minute > newestMinute - WINDOW_MINUTES;
+        }
+
+        void add(Event event, int delta) {
+            int i = bucket(event.minute);
+            if (event.supply) {
+                supply[i] += delta;
+                supplyTotal += delta;
+            }
+            else {
+                demand[i] += delta;
+                demandTotal += delta;
+            }
+        }
+
+        boolean isEmpty() {
+            return demandTotal == 0 && supplyTotal == 0;
+        }
+
+        private static int bucket(long minute) {
+            return (int) Math.floorMod(minute, (long) WINDOW_MINUTES);
+        }
+    }
+
+
+    /**
+     * Counts a request as demand if it is open, replacing what it counted as demand before
+     * @param documentId The ID of the document
+     * @param data The fields of the document, from the query of recently created requests
+     * @param nowSeconds The current time, see RequestTime.nowSeconds()
+     */
+    public void upsertDemand(String documentId, Map<String, Object> data, long nowSeconds) {
+        long nowMinute = nowSeconds / 60;
+        apply(demandEvents, documentId, toEvent(DocumentCodec.decodeRequest(documentId, data), false, nowMinute), nowMinute);
+    }
+
+
+    /**
+     * Counts a request as supply if it was accepted, replacing what it counted as supply before
+     * @param documentId The ID of the document
+     * @param data The fields of the document, from the query of recently accepted requests
+     * @param nowSeconds The current time, see RequestTime.nowSeconds()
+     */
+    public void upsertSupply(String documentId, Map<String, Object> data, long nowSeconds) {
+        long nowMinute = nowSeconds / 60;
+        apply(supplyEvents, documentId, toEvent(DocumentCodec.decodeRequest(documentId, data), true, nowMinute), nowMinute);
+    }
+
+
+    /**
+     * Takes back what a request counted as demand
+     * @param documentId The ID of the document
+     * @param nowSeconds The current time, see RequestTime.nowSeconds()
+     */
+    public void removeDemand(String documentId, long nowSeconds) {
+        Event old = demandEvents.remove(documentId);
+        if (old != null) {
+            count(old, nowSeconds / 60, -1);
+        }
+    }
+
+
+    /**
+     * Takes back what a request counted as supply
+     * @param documentId The ID of the document
+     * @param nowSeconds The current time, see RequestTime.nowSeconds()
+     */
+    public void removeSupply(String documentId, long nowSeconds) {
+        Event old = supplyEvents.remove(documentId);
+        if (old != null) {
+            count(old, nowSeconds / 60, -1);
+        }
+    }
+
+
+    /**
+     * Forgets the requests whose counts have left the window. Call it when the queries are
+     * started again, since the new queries never report the requests they no longer match
+     * @param nowSeconds The current time, see RequestTime.nowSeconds()
+     */
+    public void forgetExpired(long nowSeconds) {
+        long oldestMinute = nowSeconds / 60 - WINDOW_MINUTES + 1;
+        for (Map<String, Event> events : Arrays.asList(demandEvents, supplyEvents)) {
+            Iterator<Event> iterator = events.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().minute < oldestMinute) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of requests whose counts are remembered
+     */
+    public int size() {
+        return demandEvents.size() + supplyEvents.size();
+    }
+
+
+    /**
+     * Returns the number of open requests created in a cell during the window
+     * @param cell A geohash cell of PRECISION characters
+     * @param nowSeconds The current time, see RequestTime.nowSeconds()
+     */
+    public int demand(String cell, long nowSeconds) {
+        CellWindow window = slide(cell, nowSeconds / 60);
+        return (window == null) ? 0 : window.demandTotal;
+    }
+
+
+    /**
+     * Returns the number of rides accepted in a cell during the window
+     * @param cell A geohash cell of PRECISION characters
+     * @param nowSeconds The current time, see RequestTime.nowSeconds()
+     */
+    public int supply(String cell, long nowSeconds) {
+        CellWindow window = slide(cell, nowSeconds / 60);
+        return (window == null) ? 0 : window.supplyTotal;
+    }
+
+
+    /**
+     * Returns the surge multiplier of a cell. It grows with the open requests per accepted ride,
+     * in steps of 0.1 so quotes don't change with every request
+     * @param cell A geohash cell of PRECISION characters
+     * @param nowSeconds The current time, see RequestTime.nowSeconds()
+     * @return 1 if there is no surge, up to 3
+     */
+    public double surge(String cell, long nowSeconds) {
+        int demand = demand(cell, nowSeconds);
+        if (demand < MIN_DEMAND) {
+            return 1;
+        }
+
+        double pressure = (double) demand / (supply(cell, nowSeconds) + 1);
+        double surge = 1 + SURGE_PER_PRESSURE * Math.max(0, pressure - 1);
+        return Math.min(MAX_SURGE, Math.round(surge * 10) / 10.0);
+    }
+
+
+    /**
+     * Returns the surge multiplier where a ride starts
+     * @param latitude The latitude of the pickup location
+     * @param longitude The longitude of the pickup location
+     * @param nowSeconds The current time, see RequestTime.nowSeconds()
+     * @return 1 if there is no surge, up to 3
+     */
+    public double surgeAt(double latitude, double longitude, long nowSeconds) {
+        return surge(Geohash.encode(latitude, longitude, PRECISION), nowSeconds);
+    }
+
+
+    // Replace what a document counted with a new event, or with nothing
+    private void apply(Map<String, Event> events, String documentId, Event event, long nowMinute) {
+        Event old = events.get(documentId);
+        if (event == null ? old == null : event.sameAs(old)) {
+            return;     // Only fields that don't affect the counts changed
+        }
+
+        if (old != null) {
+            count(old, nowMinute, -1);
+        }
+        if (event == null) {
+            events.remove(documentId);
+        }
+        else {
+            events.put(documentId, event);
+            count(event, nowMinute, 1);
+        }
+    }
+
+
+    // Open requests count as demand when they were created, accepted rides as supply when they
+    // were accepted. Anything else, and malformed documents, count for nothing
+    private static Event toEvent(Request request, boolean supply, long nowMinute) {
+        if (request == null) {
+            return null;
+        }
+
+        RequestTime time;
+        if (!supply && "INCOMPLETE".equals(request.getStatus())) {
+            time = request.getTimeCreated();
+        }
+        else if (supply && ("ACTIVE".equals(request.getStatus()) || "COMPLETE".equals(request.getStatus()))) {
+            time = request.getTimeAccepted();
+        }
+        else {
+            return null;
+        }
+        if (time == null) {
+            return null;
+        }
+
+        // A phone with its clock ahead can write times in the future, so count those as now
+        long minute = Math.min(time.toLong() / 60, nowMinute);
+        String cell = Geohash.encode(request.getStartLatitude(), request.getStartLongitude(), PRECISION);
+        return new Event(cell, minute, supply);
+    }
+
+
+    // Add or take back an event, if its minute is still in its cell's window
+    private void count(Event event, long nowMinute, int delta) {
+        CellWindow window = slide(event.cell, nowMinute);
+        if (window == null) {
+            if (delta < 0) {
+                return;     // The cell was emptied, so the event already left the window
+            }
+            window = new CellWindow();
+            window.advance(nowMinute);
+            cells.put(event.cell, window);
+        }
+
+        if (window.inWindow(event.minute)) {
+            window.add(event, delta);
+        }
+        if (window.isEmpty()) {
+            cells.remove(event.cell);
+        }
+    }
+
+
+    // Slide a cell's window to now, dropping the cell once nothing is left in it
+    private CellWindow slide(String cell, long nowMinute) {
+        CellWindow window = cells.get(cell);
+        if (window == null) {
+            return null;
+        }
+        window.advance(nowMinute);
+        if (window.isEmpty()) {
+            cells.remove(cell);
+            return null;
+        }
+        return window;
+    }
+}
@@ -0,0 +1,163 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
+
+
+/**
+ * Keeps a DemandDensity up to date with the requests created and the requests accepted in its
+ * window, so fares can be quoted with the surge where a ride starts. Each comes from its own
+ * query, and the queries are started again every window so their start time keeps up with the
+ * clock. Snapshots are applied one change at a time on SnapshotExecutor's thread, and surgeAt()
+ * can be called from any thread. start() and stop() must be called on the main thread
+ */
+public class DemandDensityService {
+    private static final String TAG = "OMW/DemandDensitySer...";   // Use this tag for calling Log.d()
+    private static final long REFRESH_MILLIS = DemandDensity.WINDOW_MINUTES * 60 * 1000;
+
+    private DBManager dbManager;
+    private final DemandDensity density = new DemandDensity();   // Guarded by itself
+    private ListenerRegistration demandListener;
+    private ListenerRegistration supplyListener;
+    private Handler handler = new Handler(Looper.getMainLooper());
+
+    // Start the queries again from the new start of the window
+    private Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            listen();
+            handler.postDelayed(this, REFRESH_MILLIS);
+        }
+    };
+
+
+    /**
+     * Constructor for DemandDensityService
+     * @param dbManager Used to build the queries of recent requests
+     */
+    public DemandDensityService(DBManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+
+    /**
+     * Starts listening to the requests created and accepted in the last
+     * DemandDensity.WINDOW_MINUTES. Does nothing if it is already listening
+     */
+    public void start() {
+        if (demandListener != null) {
+            return;
+        }
+        listen();
+        handler.postDelayed(refresh, REFRESH_MILLIS);
+    }
+
+
+    /**
+     * Stops listening. The counts are kept, and slide out of the window as time passes
+     */
+    public void stop() {
+        handler.removeCallbacks(refresh);
+        removeListeners();
+    }
+
+
+    /**
+     * Returns the surge multiplier where a ride starts
+     * @param latitude The latitude of the pickup location
+     * @param longitude The longitude of the pickup location
+     * @return 1 if there is no surge
+     */
+    public double surgeAt(double latitude, double longitude) {
+        synchronized (density) {
+            return density.surgeAt(latitude, longitude, RequestTime.nowSeconds());
+        }
+    }
+
+
+    // Replace both listeners with ones whose queries start at the start of the window. The new
+    // queries never report the requests that only the old ones matched, so those are forgotten
+    private void listen() {
+        removeListeners();
+
+        final long now = RequestTime.nowSeconds();
+        synchronized (density) {
+            density.forgetExpired(now);
+        }
+
+        long since = now - DemandDensity.WINDOW_MINUTES * 60;
+        demandListener = dbManager.requestsCreatedSince(since)
+                .addSnapshotListener(SnapshotExecutor.get(), new EventListener<QuerySnapshot>() {
+                    @Override
+                    public void onEvent(@Nullable QuerySnapshot snapshot, @Nullable FirebaseFirestoreException e) {
+                        if (e != null || snapshot == null) {
+                            Log.w(TAG, "Listening to recently created requests failed", e);
+                            return;
+                        }
+                        applyChanges(snapshot, false);
+                    }
+                });
+        supplyListener = dbManager.requestsAcceptedSince(since)
+                .addSnapshotListener(SnapshotExecutor.get(), new EventListener<QuerySnapshot>() {
+                    @Override
+                    public void onEvent(@Nullable QuerySnapshot snapshot, @Nullable FirebaseFirestoreException e) {
+                        if (e != null || snapshot == null) {
+                            Log.w(TAG, "Listening to recently accepted requests failed", e);
+                            return;
+                        }
+                        applyChanges(snapshot, true);
+                    }
+                });
+    }
+
+
+    private void removeListeners() {
+        if (demandListener != null) {
+            demandListener.remove();
+            demandListener = null;
+        }
+        if (supplyListener != null) {
+            supplyListener.remove();
+            supplyListener = null;
+        }
+    }
+
+
+    // Only the changed documents are applied, and each costs O(1)
+    private void applyChanges(QuerySnapshot snapshot, boolean supply) {
+        long now = RequestTime.nowSeconds();
+        synchronized (density) {
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                String documentId = change.getDocument().getId();
+                switch (change.getType()) {
+                    case ADDED:
+                    case MODIFIED:
+                        if (supply) {
+                            density.upsertSupply(documentId, change.getDocument().getData(), now);
+                        }
+                        else {
+                            density.upsertDemand(documentId, change.getDocument().getData(), now);
+                        }
+                        break;
+                    case REMOVED:
+                        if (supply) {
+                            density.removeSupply(documentId, now);
+                        }
+                        else {
+                            density.removeDemand(documentId, now);
+                        }
+                        break;
+                }
+            }
+        }
+    }
+}
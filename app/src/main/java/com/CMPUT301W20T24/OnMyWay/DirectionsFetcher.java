@@ -0,0 +1,14 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.model.DirectionsResult;
+import com.google.maps.model.LatLng;
+
+
+/**
+ * Fetches directions between two points. DirectionsService runs this on its own worker threads,
+ * so fetch() is allowed to block. Tests can implement this with a local stub
+ */
+public interface DirectionsFetcher {
+    DirectionsResult fetch(LatLng origin, LatLng destination) throws Exception;
+    void shutdown();
+}
@@ -0,0 +1,176 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.util.Log;
+
+import com.google.maps.PendingResult;
+import com.google.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * An app-wide service for fetching directions. It owns a single DirectionsFetcher (and so a single
+ * GeoApiContext) and runs requests on a small bounded pool of worker threads. Results are scored
+ * and decoded into a RouteChoice on the worker, and the RouteChoice is kept in a RouteCache, so a
+ * cached route needs no work at all. If the same route is requested again while a request for it
+ * is still running, the callers share one request.
+ * Activities call acquire() when they are created and release() when they are destroyed, and the
+ * service shuts down once nothing is using it
+ */
+public class DirectionsService {
+    private static final String TAG = "OMW/DirectionsService";  // Use this tag for calling Log.d()
+    private static final int WORKER_THREADS = 2;
+    private static final int QUEUE_CAPACITY = 16;   // Requests past this are rejected instead of piling up
+    private static final long IDLE_SECONDS = 30;    // Idle worker threads stop after this long
+    private static final int CACHED_ROUTES = 64;
+    private static final long ROUTE_TTL_MILLIS = 10 * 60 * 1000;   // Routes older than 10 minutes are fetched again
+
+    private static DirectionsService instance;
+    private static int users = 0;
+
+    private DirectionsFetcher fetcher;
+    private ThreadPoolExecutor executor;
+    private RouteCache<RouteChoice> routeCache = new RouteCache<>(CACHED_ROUTES, ROUTE_TTL_MILLIS);
+    private HashMap<String, List<PendingResult.Callback<RouteChoice>>> inFlight = new HashMap<>();
+
+
+    /**
+     * Constructor for DirectionsService. Use acquire() in the app, this is public for tests
+     * @param fetcher The DirectionsFetcher used for every request
+     */
+    public DirectionsService(DirectionsFetcher fetcher) {
+        this.fetcher = fetcher;
+        this.executor = new ThreadPoolExecutor(
+                WORKER_THREADS, WORKER_THREADS,
+                IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY)
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+
+    /**
+     * Returns the shared DirectionsService, creating it if needed. Every call must be matched by
+     * a call to release()
+     * @param apiKey The Google Maps API key, used if the service has to be created
+     * @return The shared DirectionsService
+     */
+    public static synchronized DirectionsService acquire(String apiKey) {
+        if (instance == null) {
+            instance = new DirectionsService(new GeoApiDirectionsFetcher(apiKey));
+        }
+        ++users;
+        return instance;
+    }
+
+
+    /**
+     * Stops using the shared DirectionsService. The service is shut down when the last user releases it
+     */
+    public static synchronized void release() {
+        if (users > 0 && --users == 0) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+
+    /**
+     * Fetches directions between two points. The callback is always called on a worker thread,
+     * even for cached routes, so callers that touch the UI must post back to the main thread
+     * @param origin The start of the route
+     * @param destination The end of the route
+     * @param callback Called with the chosen route (null if the API found none), or with the
+     *                 error if the request failed
+     */
+    public void getDirections(LatLng origin, LatLng destination, final PendingResult.Callback<RouteChoice> callback) {
+        final String key = RouteCache.key(origin.lat, origin.lng, destination.lat, destination.lng);
+        final RouteChoice cachedChoice = routeCache.get(key);
+
+        if (cachedChoice != null) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(cachedChoice);
+                    }
+                });
+            }
+            catch (RejectedExecutionException e) {
+                Log.w(TAG, "Too many directions requests, dropping one", e);
+                callback.onFailure(e);
+            }
+            return;
+        }
+
+        synchronized (inFlight) {
+            List<PendingResult.Callback<RouteChoice>> waiting = inFlight.get(key);
+
+            if (waiting != null) {
+                waiting.add(callback);  // Share the request that is already running
+                return;
+            }
+
+            waiting = new ArrayList<>();
+            waiting.add(callback);
+            inFlight.put(key, waiting);
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // Score and decode the alternatives here, so the main thread only draws
+                        RouteChoice choice = RouteChoice.choose(fetcher.fetch(origin, destination));
+
+                        if (choice != null) {
+                            routeCache.put(key, choice);
+                        }
+
+                        for (PendingResult.Callback<RouteChoice> waitingCallback : finish(key)) {
+                            waitingCallback.onResult(choice);
+                        }
+                    }
+                    catch (Exception e) {
+                        Log.w(TAG, "Error fetching directions", e);
+
+                        for (PendingResult.Callback<RouteChoice> waitingCallback : finish(key)) {
+                            waitingCallback.onFailure(e);
+                        }
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            Log.w(TAG, "Too many directions requests, dropping one", e);
+
+            for (PendingResult.Callback<RouteChoice> waitingCallback : finish(key)) {
+                waitingCallback.onFailure(e);
+            }
+        }
+    }
+
+
+    /**
+     * Stops the worker threads and the fetcher. Requests that haven't started yet are dropped
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        fetcher.shutdown();
+    }
+
+
+    // Remove a finished request and return everyone who was waiting on it
+    private List<PendingResult.Callback<RouteChoice>> finish(String key) {
+        synchronized (inFlight) {
+            return inFlight.remove(key);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Turns the fields of Firestore documents into Users, Requests, history rows and marker tags.
+ * Pass it the map from DocumentSnapshot.getData(), so the snapshot is read once instead of once
+ * per field. A document with a missing or wrongly typed field is counted and logged, and null is
+ * returned instead of throwing, so one bad document never stops a list from loading
+ */
+public class DocumentCodec {
+    private static final String TAG = "OMW/DocumentCodec";   // Use this tag for calling Log.d()
+
+    private static final AtomicLong decodedCount = new AtomicLong();
+    private static final AtomicLong malformedCount = new AtomicLong();
+
+
+    /**
+     * Builds a User from the fields of its document
+     * @param userId The ID of the user, which is the ID of the document
+     * @param data The fields of the document
+     * @return The User, or null if the document is malformed
+     */
+    public static User decodeUser(String userId, Map<String, Object> data) {
+        Fields fields = new Fields("users/" + userId, data);
+
+        String firstName = fields.requiredString("firstName");
+        String lastName = fields.requiredString("lastName");
+        Boolean driver = fields.requiredBoolean("isDriver");
+        String email = fields.requiredString("email");
+        String phone = fields.requiredString("phone");
+        Long upRatings = fields.requiredLong("upRatings");
+        Long totalRatings = fields.requiredLong("totalRatings");
+
+        if (fields.isMalformed()) {
+            return null;
+        }
+        try {
+            return decoded(new User(userId, firstName, lastName, driver, email, phone, upRatings.intValue(), totalRatings.intValue()));
+        }
+        catch (IllegalArgumentException e) {
+            return fields.malformed(e.getMessage());
+        }
+    }
+
+
+    /**
+     * Builds a Request from the fields of its document. The Request keeps the requestID it was stored with
+     * @param documentId The ID of the document, used in the log if it is malformed
+     * @param data The fields of the document
+     * @return The Request, or null if the document is malformed
+     */
+    public static Request decodeRequest(String documentId, Map<String, Object> data) {
+        Fields fields = new Fields("riderRequests/" + documentId, data);
+
+        String requestId = fields.requiredString("requestID");
+        String riderId = fields.requiredString("riderId");
+        String driverId = fields.optionalString("driverId");
+        String startLocationName = fields.requiredString("startLocationName");
+        double startLongitude = fields.requiredDouble("startLongitude");
+        double startLatitude = fields.requiredDouble("startLatitude");
+        String endLocationName = fields.requiredString("endLocationName");
+        double endLongitude = fields.requiredDouble("endLongitude");
+        double endLatitude = fields.requiredDouble("endLatitude");
+        Money paymentAmount = fields.requiredMoney();
+        String status = fields.requiredString("status");
+        Long timeCreated = fields.optionalLong("timeCreated");
+        Long timeAccepted = fields.optionalLong("timeAccepted");
+
+        if (fields.isMalformed()) {
+            return null;
+        }
+        try {
+            Request request = new Request(
+                    riderId, driverId,
+                    startLocationName, startLongitude, startLatitude,
+                    endLocationName, endLongitude, endLatitude,
+                    paymentAmount, status, timeCreated, timeAccepted
+            );
+            request.setRequestId(requestId);
+            return decoded(request);
+        }
+        catch (IllegalArgumentException e) {
+            return fields.malformed(e.getMessage());
+        }
+    }
+
+
+    /**
+     * Builds a row of the driver history from the fields of a completed request
+     * @param documentId The ID of the document, used in the log if it is malformed
+     * @param data The fields of the document
+     * @return The DriverHistoryInfo, or null if the document is malformed
+     */
+    public static DriverHistoryInfo decodeHistory(String documentId, Map<String, Object> data) {
+        Fields fields = new Fields("riderRequests/" + documentId, data);
+
+        String requestId = fields.requiredString("requestID");
+        String startLocationName = fields.requiredString("startLocationName");
+        String endLocationName = fields.requiredString("endLocationName");
+        Long timeAccepted = fields.requiredLong("timeAccepted");   // Needed to sort and to write to a Parcel
+
+        if (fields.isMalformed()) {
+            return null;
+        }
+        return decoded(new DriverHistoryInfo(requestId, startLocationName, endLocationName, timeAccepted));
+    }
+
+
+    /**
+     * Builds the tag of a pickup marker from the fields of a request
+     * @param documentId The ID of the document, kept in the tag
+     * @param data The fields of the document
+     * @return The MarkerStoreObject, or null if the document is malformed
+     */
+    public static MarkerStoreObject decodeMarker(String documentId, Map<String, Object> data) {
+        return decodeMarker(documentId, data, null);
+    }
+
+
+    /**
+     * Decodes the tag of a pickup marker into an existing tag, so a marker whose request changes
+     * keeps the same tag instead of getting a new one
+     * @param documentId The ID of the document, kept in the tag
+     * @param data The fields of the document
+     * @param reuse The tag to update, or null to make a new one
+     * @return The updated or new MarkerStoreObject, or null if the document is malformed. If it is
+     *         malformed, reuse is left unchanged
+     */
+    public static MarkerStoreObject decodeMarker(String documentId, Map<String, Object> data, MarkerStoreObject reuse) {
+        Fields fields = new Fields("riderRequests/" + documentId, data);
+
+        String driverId = fields.optionalString("driverId");
+        double endLatitude = fields.requiredDouble("endLatitude");
+        double endLongitude = fields.requiredDouble("endLongitude");
+        Money paymentAmount = fields.requiredMoney();
+        String requestId = fields.optionalString("requestID");
+        String riderId = fields.optionalString("riderId");
+        double startLatitude = fields.requiredDouble("startLatitude");
+        double startLongitude = fields.requiredDouble("startLongitude");
+        String status = fields.requiredString("status");
+        String startLocationName = fields.optionalString("startLocationName");
+        String endLocationName = fields.optionalString("endLocationName");
+
+        if (fields.isMalformed()) {
+            return null;
+        }
+
+        MarkerStoreObject markerStoreObject = (reuse == null) ? new MarkerStoreObject(documentId) : reuse;
+        markerStoreObject.update(
+                driverId, endLatitude, endLongitude, paymentAmount.getCents(), paymentAmount.getCurrency(),
+                requestId, riderId, startLatitude, startLongitude, status,
+                startLocationName, endLocationName
+        );
+        return decoded(markerStoreObject);
+    }
+
+
+    /**
+     * Returns how many documents have been decoded since the app started
+     * @return The number of documents decoded without a problem
+     */
+    public static long getDecodedCount() {
+        return decodedCount.get();
+    }
+
+
+    /**
+     * Returns how many documents were skipped because they were malformed since the app started
+     * @return The number of malformed documents
+     */
+    public static long getMalformedCount() {
+        return malformedCount.get();
+    }
+
+
+    private static <T> T decoded(T value) {
+        decodedCount.incrementAndGet();
+        return value;
+    }
+
+
+    // Reads typed fields out of a document, remembering the first problem instead of throwing
+    private static class Fields {
+        private final String path;
+        private final Map<String, Object> data;
+        private String problem;
+
+        Fields(String path, Map<String, Object> data) {
+            this.path = path;
+            this.data = data;
+            if (data == null) {
+                problem = "document has no data";
+            }
+        }
+
+        boolean isMalformed() {
+            if (problem != null) {
+                malformed(problem);
+                return true;
+            }
+            return false;
+        }
+
+        <T> T malformed(String reason) {
+            malformedCount.incrementAndGet();
+            Log.d(TAG, "Skipping malformed document " + path + ": " + reason);
+            return null;
+        }
+
+        String requiredString(String name) {
+            return required(name, optionalString(name));
+        }
+
+        String optionalString(String name) {
+            Object value = get(name);
+            if (value == null || value instanceof String) {
+                return (String) value;
+            }
+            return wrongType(name);
+        }
+
+        Boolean requiredBoolean(String name) {
+            Object value = get(name);
+            if (value == null || value instanceof Boolean) {
+                return required(name, (Boolean) value);
+            }
+            return wrongType(name);
+        }
+
+        Long requiredLong(String name) {
+            return required(name, optionalLong(name));
+        }
+
+        // Firestore gives back whole numbers as Long, but values written from a map may be Integer
+        Long optionalLong(String name) {
+            Object value = get(name);
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof Long) {
+                return (Long) value;
+            }
+            if (value instanceof Integer) {
+                return ((Integer) value).longValue();
+            }
+            return wrongType(name);
+        }
+
+        // A whole number stored as a double field comes back as a Long, so accept any Number.
+        // Returns a primitive so nothing is boxed. The value is 0 if the field is missing
+        double requiredDouble(String name) {
+            Object value = get(name);
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            if (value == null) {
+                required(name, null);
+            }
+            else {
+                wrongType(name);
+            }
+            return 0;
+        }
+
+        // Amounts are stored as whole cents. Requests from before that have a "paymentAmount"
+        // in dollars instead, as a string or a number, until PaymentMigration rewrites them
+        Money requiredMoney() {
+            Long cents = optionalLong("paymentCents");
+            String currency = optionalString("paymentCurrency");
+            Object legacyAmount = get("paymentAmount");
+
+            try {
+                if (cents != null) {
+                    return new Money(cents, (currency == null) ? Money.DEFAULT_CURRENCY : currency);
+                }
+                if (legacyAmount instanceof String || legacyAmount instanceof Number) {
+                    return Money.parse(legacyAmount.toString());
+                }
+            }
+            catch (IllegalArgumentException e) {
+                if (problem == null) {
+                    problem = "the payment amount is invalid";
+                }
+                return null;
+            }
+            return required("paymentCents", null);
+        }
+
+        private Object get(String name) {
+            return (data == null) ? null : data.get(name);
+        }
+
+        private <T> T required(String name, T value) {
+            if (value == null && problem == null) {
+                problem = name + " is missing";
+            }
+            return value;
+        }
+
+        private <T> T wrongType(String name) {
+            if (problem == null) {
+                problem = name + " has the wrong type";
+            }
+            return null;
+        }
+    }
+}
@@ -1,37 +1,18 @@
 package com.CMPUT301W20T24.OnMyWay;
 
-import android.content.Context;
 import android.content.Intent;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.os.Bundle;
 
 import androidx.fragment.app.Fragment;
 
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ImageView;
-import android.widget.Toast;
 
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
-
-import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.concurrent.Semaphore;
-
-import static androidx.core.content.ContextCompat.getSystemService;
 
 public class DriverHistoryFragment extends Fragment implements View.OnClickListener {
 
-    private FirebaseFirestore db = FirebaseFirestore.getInstance();
-    private CollectionReference requests = db.collection("riderRequests");
     private ArrayList<DriverHistoryInfo> historyArray = new ArrayList<>();
     User currentUser = UserRequestState.getCurrentUser();
 
@@ -43,25 +24,7 @@ public class DriverHistoryFragment extends Fragment implements View.OnClickListe
         View view = inflater.inflate(R.layout.driver_history_button, container, false);
         view.setOnClickListener(this);
 
-        requests.get().addOnSuccessListener(new OnSuccessListener<QuerySnapshot>() {
-            @Override
-            public void onSuccess(QuerySnapshot queryDocumentSnapshots) {
-                for (QueryDocumentSnapshot documentSnapshot : queryDocumentSnapshots){
-                    if (documentSnapshot.getString("driverId") != null && documentSnapshot.getString("status").equals("COMPLETE")){
-                        if(documentSnapshot.getString("driverId").equals(currentUser.getUserId()))
-                        {
-                            DriverHistoryInfo temp = new DriverHistoryInfo(
-                                    documentSnapshot.getString("requestID"),
-                                    documentSnapshot.getString("startLocationName"),
-                                    documentSnapshot.getString("endLocationName"),
-                                    documentSnapshot.getLong("timeAccepted")
-                            );
-                            historyArray.add(temp);
-                        }
-                    }
-                }
-            }
-        });
+        fetchHistory();
 
         return view;
     }
@@ -69,50 +32,25 @@ public class DriverHistoryFragment extends Fragment implements View.OnClickListe
 
     @Override
     public void onClick(View view) {
+        // The list is already loaded from the phone, so open it right away and refresh it for next time
+        Intent intent = new Intent(getContext(), DriverHistoryActivity.class);
+        intent.putParcelableArrayListExtra("TheData", historyArray);
+        startActivity(intent);
 
-        if(!isNetworkAvailable()){
-            Intent intent = new Intent(getContext(), DriverHistoryActivity.class);
-            intent.putParcelableArrayListExtra("TheData", historyArray);
-            startActivity(intent);
-        }
-        else{
-            updateList();
-        }
-
-    }
-
-    private boolean isNetworkAvailable() {
-        ConnectivityManager connectivityManager = (ConnectivityManager) getActivity().getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-        return activeNetworkInfo != null && activeNetworkInfo.isConnected();
+        fetchHistory();
     }
 
-    private void updateList(){
-        historyArray.clear();
-        requests.get().addOnSuccessListener(new OnSuccessListener<QuerySnapshot>() {
+    /**
+     * Loads the completed rides of the current driver, first from the phone and then from Firestore
+     */
+    private void fetchHistory(){
+        RequestRepository.getInstance(getContext()).loadDriverHistory(currentUser.getUserId(), new DriverHistoryLoadedListener() {
             @Override
-            public void onSuccess(QuerySnapshot queryDocumentSnapshots) {
-                for (QueryDocumentSnapshot documentSnapshot : queryDocumentSnapshots){
-                    if (documentSnapshot.getString("driverId") != null && documentSnapshot.getString("status").equals("COMPLETE")){
-                        if(documentSnapshot.getString("driverId").equals(currentUser.getUserId()))
-                        {
-                            DriverHistoryInfo temp = new DriverHistoryInfo(
-                                    documentSnapshot.getString("requestID"),
-                                    documentSnapshot.getString("startLocationName"),
-                                    documentSnapshot.getString("endLocationName"),
-                                    documentSnapshot.getLong("timeAccepted")
-                            );
-                            historyArray.add(temp);
-                        }
-                    }
-                }
-                Intent intent = new Intent(getContext(), DriverHistoryActivity.class);
-                intent.putParcelableArrayListExtra("TheData", historyArray);
-                startActivity(intent);
+            public void onDriverHistoryLoaded(ArrayList<DriverHistoryInfo> history) {
+                historyArray.clear();
+                historyArray.addAll(history);
             }
         });
-
-
     }
 
 }
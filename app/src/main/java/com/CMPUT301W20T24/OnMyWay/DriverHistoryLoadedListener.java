@@ -0,0 +1,15 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.ArrayList;
+
+
+/**
+ * Implement this interface and onDriverHistoryLoaded will be called with the completed rides of
+ * a driver, first from the copy saved on the phone and again when Firestore answers
+ */
+/// StackOverflow post by Rupesh
+/// Author: https://stackoverflow.com/users/787438/rupesh
+/// Answer: https://stackoverflow.com/questions/994840/how-to-create-our-own-listener-interface-in-android
+public interface DriverHistoryLoadedListener {
+    void onDriverHistoryLoaded(ArrayList<DriverHistoryInfo> history);
+}
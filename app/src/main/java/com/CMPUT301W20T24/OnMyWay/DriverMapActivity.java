@@ -1,13 +1,10 @@
 package com.CMPUT301W20T24.OnMyWay;
 
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.FragmentManager;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -39,27 +36,17 @@ import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.BitmapDescriptor;
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.maps.model.Polyline;
-import com.google.android.gms.maps.model.PolylineOptions;
-import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
-import com.google.maps.DirectionsApiRequest;
-import com.google.maps.GeoApiContext;
-import com.google.maps.internal.PolylineEncoding;
-import com.google.maps.model.DirectionsResult;
-import com.google.maps.model.DirectionsRoute;
 
 
 import java.sql.Driver;
@@ -74,10 +61,10 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
     private GoogleMap mMap;
     private Location currentLocation;
     private FusedLocationProviderClient fusedLocationProviderClient;
-    private GeoApiContext geoApi;
+    private DirectionsService directionsService;
 
-    private Polyline polyline_rider;
-    private Polyline polyline_destination;
+    private RouteOverlay riderRoute;
+    private RouteOverlay destinationRoute;
 
     private FragmentManager fm;
 
@@ -92,13 +79,13 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
     private CollectionReference requests = db.collection("riderRequests");
 
     private ArrayList<Marker> destinationMarkers = new ArrayList<>();
-    private ArrayList<Marker> pickupMarkers = new ArrayList<>();
+    private PickupMarkerManager pickupMarkerManager;
+    private ViewportRequestLoader requestLoader;
 
     private LayoutInflater layoutInflater;
     private PopupWindow popupWindow;
 
     private boolean currently_driving = false;
-    private boolean viewing_ride = false;
 
 
     // Disable back button for this activity
@@ -134,6 +121,7 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
         setContentView(R.layout.activity_driver_map);
         dbManager = new DBManager();
         fm = getSupportFragmentManager();
+        directionsService = DirectionsService.acquire(getString(R.string.google_api_key));
 
         fusedLocationProviderClient = LocationServices.getFusedLocationProviderClient(this);
         fetchLastLocation();
@@ -143,6 +131,13 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
 
         driverId = UserRequestState.getCurrentUser().getUserId();
 
+        Button bestNextRideButton = findViewById(R.id.bestNextRideButton);
+        bestNextRideButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showBestNextRide();
+            }
+        });
     }
 
     /**
@@ -169,91 +164,29 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
     }
 
 
-    /// Youtube video by Coding In Flow: Firestore Tutorial Part 8 - ADD AND RETRIEVE MULTIPLE DOCUMENTS - Android Studio Tutorial
-    /// https://www.youtube.com/watch?v=Bh0h_ZhX-Qg&t=349s
-    // load requests from the database
-    /**
-     * Loads potential ride requests on the map
-     * @author Payas, Bard, Neel
-     */
-    public void loadMarkers(){
-        requests.get()
-                .addOnSuccessListener(new OnSuccessListener<QuerySnapshot>() {
-                    @Override
-                    public void onSuccess(QuerySnapshot queryDocumentSnapshots) {
-                        if (queryDocumentSnapshots.isEmpty()){
-                            Log.d(TAG, "List is Empty");
-                            return;
-                        } else {
-                            for (QueryDocumentSnapshot documentSnapshot : queryDocumentSnapshots){
-                                try {
-                                    BitmapDescriptor startLocationIcon = BitmapDescriptorFactory.fromResource(R.drawable.ic_blue_location_marker);
-                                    LatLng latlng = new LatLng(documentSnapshot.getDouble("startLatitude"), documentSnapshot.getDouble("startLongitude"));
-//                                  Toast.makeText(getApplicationContext(), documentSnapshot.getString("startLatitude")+","+documentSnapshot.getString("startLongitude"), Toast.LENGTH_LONG).show();
-
-                                    String documentId = documentSnapshot.getId();
-                                    String requestId = documentSnapshot.getString("requestID");
-                                    String riderUser = documentSnapshot.getString("riderId");
-                                    String driverUser = documentSnapshot.getString("driverId");
-                                    Double startLat = documentSnapshot.getDouble("startLatitude");
-                                    Double startLon = documentSnapshot.getDouble("startLongitude");
-                                    Double endLat = documentSnapshot.getDouble("endLatitude");
-                                    Double endLon = documentSnapshot.getDouble("endLongitude");
-                                    float paymentAmount = Float.parseFloat(documentSnapshot.getString("paymentAmount"));
-                                    String status = documentSnapshot.getString("status");
-                                    String startAddr = documentSnapshot.getString("startLocationName");
-                                    String endAddr = documentSnapshot.getString("endLocationName");
-                                    Long timeCreated = documentSnapshot.getLong("timeCreated");
-
-                                    if(status.equals("INCOMPLETE")) {
-                                        Marker my_marker = mMap.addMarker(
-                                                new MarkerOptions()
-                                                        .position(latlng)
-                                                        .title("Pickup")
-                                                        .icon(startLocationIcon)
-                                        );
-
-                                        MarkerStoreObject markerStoreObject = new MarkerStoreObject(documentId, driverUser, endLat, endLon, paymentAmount, requestId, riderUser, startLat, startLon, status, startAddr, endAddr);
-                                        my_marker.setTag((MarkerStoreObject) markerStoreObject);
-                                        pickupMarkers.add(my_marker);
-                                    }
-
-
-                                }
-                                catch (NullPointerException e) {}
-                            }
-                        }
-                    }
-                });
-    }
-
-
     /// YouTube video by CodingWithMitch: Calculating Directions with Google Directions API
     /// https://www.youtube.com/watch?v=f47L1SL5S0o&list=PLgCYzUzKIBE-SZUrVOsbYMzH7tPigT3gi&index=19
     /**
      * Calculates directions from the driver's current location to a marker (in this case, the rider's location)
-     * Calls addPolylinesToMap(result) to draw the resulting directions as a polyline
+     * Calls addPolylinesToMap() to draw the resulting directions as a polyline
      * @param marker A marker at the rider's current location
      * @author Neel
      */
     private void calculateDirections(Marker marker){
-        com.google.maps.model.LatLng destination = new com.google.maps.model.LatLng(marker.getPosition().latitude,marker.getPosition().longitude);
-
-        geoApi = new GeoApiContext.Builder().apiKey(getString(R.string.google_api_key)).build();
-        DirectionsApiRequest directions = new DirectionsApiRequest(geoApi);
+        final com.google.maps.model.LatLng destination = new com.google.maps.model.LatLng(marker.getPosition().latitude,marker.getPosition().longitude);
 
-        directions.alternatives(true);
-        directions.origin(new com.google.maps.model.LatLng(currentLocation.getLatitude(), currentLocation.getLongitude()));
+        final com.google.maps.model.LatLng origin = new com.google.maps.model.LatLng(currentLocation.getLatitude(), currentLocation.getLongitude());
+        final String documentId = ((MarkerStoreObject) marker.getTag()).getDocumentId();
 
-        directions.destination(String.valueOf(destination)).setCallback(new com.google.maps.PendingResult.Callback<DirectionsResult>() {
+        directionsService.getDirections(origin, destination, new com.google.maps.PendingResult.Callback<RouteChoice>() {
             @Override
-            public void onResult(DirectionsResult result) {
-                addPolylinesToMap(result);
+            public void onResult(RouteChoice choice) {
+                addPolylinesToMap(choice, origin, documentId);
             }
 
             @Override
             public void onFailure(Throwable e) {
-                System.out.println(e.toString());
+                Log.e(TAG, "Error fetching directions to the rider", e);
             }
         });
     }
@@ -273,21 +206,17 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
         // setting current request for sliding menu view
         com.google.maps.model.LatLng destination = new com.google.maps.model.LatLng(destination_coordinates.latitude, destination_coordinates.longitude);
 
-        geoApi = new GeoApiContext.Builder().apiKey(getString(R.string.google_api_key)).build();
-        DirectionsApiRequest directions = new DirectionsApiRequest(geoApi);
+        com.google.maps.model.LatLng origin = new com.google.maps.model.LatLng(marker.getPosition().latitude, marker.getPosition().longitude);
 
-        directions.alternatives(true);
-        directions.origin(new com.google.maps.model.LatLng(marker.getPosition().latitude, marker.getPosition().longitude));
-
-        directions.destination(String.valueOf(destination)).setCallback(new com.google.maps.PendingResult.Callback<DirectionsResult>() {
+        directionsService.getDirections(origin, destination, new com.google.maps.PendingResult.Callback<RouteChoice>() {
             @Override
-            public void onResult(DirectionsResult result) {
-                addPolylinesToMapDestination(result);
+            public void onResult(RouteChoice choice) {
+                addPolylinesToMapDestination(choice);
             }
 
             @Override
             public void onFailure(Throwable e) {
-                System.out.println(e.toString());
+                Log.e(TAG, "Error fetching directions to the destination", e);
             }
         });
     }
@@ -297,33 +226,25 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
     /// https://www.youtube.com/watch?v=xl0GwkLNpNI&list=PLgCYzUzKIBE-SZUrVOsbYMzH7tPigT3gi&index=20
     /**
      * Adds a polyline on the Driver map showing the route to the rider
-     * @param result The directions object containing the directional data
+     * @param choice The route the DirectionsService chose
+     * @param origin Where the driver is
+     * @param documentId The ID of the request being picked up
      * @author Neel
      */
-    private void addPolylinesToMap(final DirectionsResult result){
+    private void addPolylinesToMap(final RouteChoice choice, com.google.maps.model.LatLng origin, String documentId){
+        // The route was scored and decoded on the directions thread, so the main thread only draws it
+        if (choice == null) {
+            return;
+        }
+
+        // The real driving time ranks this ride from now on, instead of an estimate
+        pickupMarkerManager.recordPickupRoute(documentId, choice, origin.lat, origin.lng);
+
         new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @SuppressLint("ResourceType")
             @Override
             public void run() {
-                Log.d(TAG, "run: result routes: " + result.routes.length);
-
-                for (DirectionsRoute route: result.routes){
-                    Log.d(TAG, "run: leg: " + route.legs[0].toString());
-                    List<com.google.maps.model.LatLng> decodedPath = PolylineEncoding.decode(route.overviewPolyline.getEncodedPath());
-
-                    List<LatLng> newDecodedPath = new ArrayList<>();
-
-                    // This loops through all the LatLng coordinates of ONE polyline.
-                    for (com.google.maps.model.LatLng latLng: decodedPath){
-                        newDecodedPath.add(new LatLng(latLng.lat, latLng.lng));
-                    }
-
-                    if (polyline_rider!=null){
-                        polyline_rider.remove();
-                    }
-
-                    polyline_rider = mMap.addPolyline(new PolylineOptions().addAll(newDecodedPath).color(getApplicationContext().getResources().getColor(R.color.colorPolyline)).clickable(true).width(10));
-                }
+                Log.d(TAG, "run: chose a " + choice.getDistanceMeters() + "m route out of " + (choice.getAlternatives().size() + 1));
+                riderRoute.show(choice);
             }
         });
     }
@@ -331,33 +252,20 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
 
     /**
      * Adds a polyline on the Driver's map showing the route from the rider to the final destination
-     * @param result The directions object containing the directional data
+     * @param choice The route the DirectionsService chose
      * @author Neel
      */
-    private void addPolylinesToMapDestination(final DirectionsResult result){
+    private void addPolylinesToMapDestination(final RouteChoice choice){
+        // The route was scored and decoded on the directions thread, so the main thread only draws it
+        if (choice == null) {
+            return;
+        }
+
         new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @SuppressLint("ResourceType")
             @Override
             public void run() {
-                Log.d(TAG, "run: result routes: " + result.routes.length);
-
-                for (DirectionsRoute route: result.routes){
-                    Log.d(TAG, "run: leg: " + route.legs[0].toString());
-                    List<com.google.maps.model.LatLng> decodedPath = PolylineEncoding.decode(route.overviewPolyline.getEncodedPath());
-
-                    List<LatLng> newDecodedPath = new ArrayList<>();
-
-                    // This loops through all the LatLng coordinates of ONE polyline.
-                    for (com.google.maps.model.LatLng latLng: decodedPath){
-                        newDecodedPath.add(new LatLng(latLng.lat, latLng.lng));
-                    }
-
-                    if (polyline_destination!=null){
-                        polyline_destination.remove();
-                    }
-
-                    polyline_destination = mMap.addPolyline(new PolylineOptions().addAll(newDecodedPath).color(getApplicationContext().getResources().getColor(R.color.colorPolylineDest)).clickable(true).width(10));
-                }
+                Log.d(TAG, "run: chose a " + choice.getDistanceMeters() + "m route out of " + (choice.getAlternatives().size() + 1));
+                destinationRoute.show(choice);
             }
         });
     }
@@ -393,31 +301,45 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
         RelativeLayout.LayoutParams rlp2 = (RelativeLayout.LayoutParams) compassButton.getLayoutParams();
         rlp2.leftMargin = 185;
 
-        loadMarkers();
+        pickupMarkerManager = new PickupMarkerManager(
+                this,
+                mMap,
+                R.drawable.ic_blue_location_marker,
+                getApplicationContext().getResources().getColor(R.color.colorMapBlueLocation)
+        );
 
-        requests.addSnapshotListener(new EventListener<QuerySnapshot>() {
+        // Only open requests around what the driver can see are listened to. When the camera stops
+        // the listeners follow it, and nearby requests are grouped into clusters again if the zoom changed
+        requestLoader = new ViewportRequestLoader(dbManager, pickupMarkerManager);
+        mMap.setOnCameraIdleListener(new GoogleMap.OnCameraIdleListener() {
             @Override
-            public void onEvent(@Nullable QuerySnapshot queryDocumentSnapshots, @Nullable FirebaseFirestoreException e) {
-                if(!viewing_ride) {
-                    if (e != null) {
-                        Log.w(TAG, "Listen failed.", e);
-                        return;
-                    }
-                    for (QueryDocumentSnapshot documentSnapshot : queryDocumentSnapshots) {
-                        removeDestinationMarkers();
-                        loadMarkers();
-                    }
-                }
-
+            public void onCameraIdle() {
+                pickupMarkerManager.onCameraIdle();
+                requestLoader.onCameraIdle(mMap.getProjection().getVisibleRegion().latLngBounds);
             }
         });
 
+        int alternativeColor = getApplicationContext().getResources().getColor(R.color.colorPolylineAlternative);
+        riderRoute = new RouteOverlay(mMap, getApplicationContext().getResources().getColor(R.color.colorPolyline), alternativeColor);
+        destinationRoute = new RouteOverlay(mMap, getApplicationContext().getResources().getColor(R.color.colorPolylineDest), alternativeColor);
+
+        // Tapping a route shows or hides the other routes the Directions API suggested
+        mMap.setOnPolylineClickListener(new GoogleMap.OnPolylineClickListener() {
+            @Override
+            public void onPolylineClick(Polyline polyline) {
+                if (!riderRoute.onPolylineClick(polyline)) {
+                    destinationRoute.onPolylineClick(polyline);
+                }
+            }
+        });
 
         mMap.setOnMarkerClickListener(new GoogleMap.OnMarkerClickListener() {
             @Override
             public boolean onMarkerClick(Marker marker) {
+                if (!currently_driving && pickupMarkerManager.onClusterClick(marker)) {
+                    return true;    // Zoomed in on the requests of a cluster
+                }
                 if(marker.getTag() != null && !currently_driving) {
-                    viewing_ride = true;
                     calculateDirections(marker);
                     calculateDirectionsDestination(marker);
                     showDialogue(marker);
@@ -431,19 +353,67 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
     }
 
     /**
-     * Remove markers from the array and the map
+     * Shows the open request the driver could pick up soonest, as if its marker had been tapped.
+     * If it is inside a cluster or off screen, the map moves to it until it is drawn on its own instead
+     */
+    private void showBestNextRide() {
+        if (currentLocation == null || pickupMarkerManager == null) {
+            Toast.makeText(getApplicationContext(), "Unable to find your current location", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (currently_driving || (popupWindow != null && popupWindow.isShowing())) {
+            return;     // Already looking at a ride
+        }
+
+        // Ranked among the requests around the driver, not the ones loaded for where the map is looking
+        final double latitude = currentLocation.getLatitude();
+        final double longitude = currentLocation.getLongitude();
+        dbManager.setNearbyRequestsPulledListener(new NearbyRequestsPulledListener() {
+            @Override
+            public void onNearbyRequestsPulled(List<DocumentSnapshot> nearbyRequests) {
+                pickupMarkerManager.findBestNextRide(latitude, longitude, nearbyRequests, new BestNextRideListener() {
+                    @Override
+                    public void onBestNextRide(MarkerStoreObject request, long pickupSeconds) {
+                        if (request == null) {
+                            Toast.makeText(getApplicationContext(), "No open requests nearby", Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+
+                        long minutes = Math.max(1, Math.round(pickupSeconds / 60.0));
+                        Toast.makeText(getApplicationContext(), "About " + minutes + " min to the pickup", Toast.LENGTH_SHORT).show();
+
+                        Marker marker = pickupMarkerManager.getMarker(request.getDocumentId());
+                        if (marker == null) {
+                            LatLng pickup = new LatLng(request.getStartLatitude(), request.getStartLongitude());
+                            mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(pickup, PickupClusterer.MAX_CLUSTER_ZOOM + 1));
+                            return;
+                        }
+
+                        calculateDirections(marker);
+                        calculateDirectionsDestination(marker);
+                        showDialogue(marker);
+                    }
+                });
+            }
+        });
+        dbManager.nearbyOpenRequests(latitude, longitude, PickupIndex.MATCH_RADIUS_KM);
+    }
+
+
+    /**
+     * Remove destination markers and route polylines from the map, and show all pickup markers again
      * @author Neel
      */
     private void removeDestinationMarkers(){
         for(Marker marker : destinationMarkers){
             marker.remove();
         }
-        for(Marker marker : pickupMarkers){
-            marker.remove();
-        }
         destinationMarkers.clear();
-        pickupMarkers.clear();
-        mMap.clear();
+
+        riderRoute.remove();
+        destinationRoute.remove();
+
+        pickupMarkerManager.clearFocus();
     }
 
 
@@ -455,13 +425,8 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
 
         // Show the appropriate markers on the map when a marker is clicked and the dialogue loads:
         MarkerStoreObject markerStoreObject = (MarkerStoreObject) marker.getTag();
-        for(Marker other_markers : pickupMarkers){
-            if(!other_markers.equals(marker)){
-                other_markers.remove();
-            }
-        }
-        BitmapDescriptor endLocationIcon = BitmapDescriptorFactory
-                .fromResource(R.drawable.ic_end_location_marker);
+        pickupMarkerManager.focus(marker);
+        BitmapDescriptor endLocationIcon = MarkerIcons.get(this, R.drawable.ic_end_location_marker);
         Marker my_marker = mMap.addMarker(
                 new MarkerOptions()
                         .position(new LatLng(markerStoreObject.getEndLatitude(), markerStoreObject.getEndLongitude()))
@@ -493,7 +458,7 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
         destinationTextview.setText(destination);
 
         TextView paymentTextview = confirm_dialogue.findViewById(R.id.ride_payment_text);
-        String payment_amount = Float.toString(((MarkerStoreObject) marker.getTag()).getPaymentAmount());
+        String payment_amount = ((MarkerStoreObject) marker.getTag()).getPaymentAmount().format();
         paymentTextview.setText(payment_amount);
 
         // "Deny" button on the pop-up window
@@ -502,9 +467,7 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
             @Override
             public void onClick(View v) {
                 popupWindow.dismiss();
-                viewing_ride = false;
                 removeDestinationMarkers();
-                loadMarkers();
             }
         });
 
@@ -513,24 +476,34 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
         acceptButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-               RequestTime the_time =  new RequestTime();
-               db.collection("riderRequests").document(currentRide.getDocumentId()).update(
-                       "driverId", driverId,"status", "ACTIVE", "timeAccepted", the_time.toLong()).addOnCompleteListener(new OnCompleteListener<Void>() {
+               acceptButton.setEnabled(false);     // Wait for the answer instead of accepting twice
+
+               dbManager.setRequestAcceptedListener(new RequestAcceptedListener() {
                    @Override
-                   public void onComplete(@NonNull Task<Void> task) {
-                       if(task.isSuccessful()){
-                           Log.d(TAG, "Confirm button driver updated database correctly");
-                           popupWindow.dismiss();
-                           currently_driving = true;
-                           pickupRider(marker);
-                       }
-                       else{
-                           Log.d(TAG, "Confirm button driver did not update");
+                   public void onRequestAccepted(AcceptResult result) {
+                       switch (result) {
+                           case ACCEPTED:
+                               Log.d(TAG, "Confirm button driver updated database correctly");
+                               popupWindow.dismiss();
+                               currently_driving = true;
+                               pickupRider(marker);
+                               break;
+                           case ALREADY_TAKEN:
+                           case NOT_FOUND:
+                               // Someone else got there first, so go back to the open requests
+                               Toast.makeText(getApplicationContext(), "This ride is no longer available", Toast.LENGTH_SHORT).show();
+                               popupWindow.dismiss();
+                               removeDestinationMarkers();
+                               break;
+                           case FAILED:
+                               Log.d(TAG, "Confirm button driver did not update");
+                               Toast.makeText(getApplicationContext(), "Unable to accept the ride, please try again", Toast.LENGTH_SHORT).show();
+                               acceptButton.setEnabled(true);
+                               break;
                        }
                    }
                });
-
-
+               dbManager.acceptRequest(currentRide.getDocumentId(), driverId);
             }
         });
 
@@ -562,7 +535,7 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
         destinationTextview.setText(destination);
 
         TextView paymentTextview = pickup_dialogue.findViewById(R.id.ride_payment_text);
-        String payment_amount = Float.toString(((MarkerStoreObject) marker.getTag()).getPaymentAmount());
+        String payment_amount = ((MarkerStoreObject) marker.getTag()).getPaymentAmount().format();
         paymentTextview.setText(payment_amount);
 
         // "Deny" button on the pop-up window
@@ -602,7 +575,7 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
         destinationTextview.setText(destination);
 
         TextView paymentTextview = dropoff_dialogue.findViewById(R.id.ride_payment_text);
-        String payment_amount = Float.toString(((MarkerStoreObject) marker.getTag()).getPaymentAmount());
+        String payment_amount = ((MarkerStoreObject) marker.getTag()).getPaymentAmount().format();
         paymentTextview.setText(payment_amount);
 
         // "Deny" button on the pop-up window
@@ -614,24 +587,10 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
                 ShowDriverScanFragment showDriverScanFragment = ShowDriverScanFragment.newInstance(null);
                 showDriverScanFragment.show(fm);
                 popupWindow.dismiss();
-                db.collection("riderRequests").document(currentRide.getDocumentId()).update(
-                        "driverId", driverId,
-                        "status", "COMPLETE").addOnCompleteListener(new OnCompleteListener<Void>() {
-                    @Override
-                    public void onComplete(@NonNull Task<Void> task) {
-                        if(task.isSuccessful()){
-                            Log.d(TAG, "Confirm dropoff updated database correctly");
-                            popupWindow.dismiss();
-                            currently_driving = false;
-                        }
-                        else{
-                            Log.d(TAG, "Confirm dropoff did not update");
-                        }
-                    }
-                });
-                viewing_ride = false;
+                RequestRepository.getInstance(DriverMapActivity.this).completeRequest(currentRide.getDocumentId(), driverId);
+                Log.d(TAG, "Confirm dropoff queued the update");
+                currently_driving = false;
                 removeDestinationMarkers();
-                loadMarkers();
                 // TODO start payment activity here!
 
             }
@@ -639,6 +598,15 @@ public class DriverMapActivity extends AppCompatActivity implements OnMapReadyCa
 
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        DirectionsService.release();
+        if (requestLoader != null) {
+            requestLoader.stop();
+        }
+    }
+
     public void findRider(View view) {
         if (currentLocation != null) {
             Intent intent = new Intent(this, DriverViewRequestsActivity.class);
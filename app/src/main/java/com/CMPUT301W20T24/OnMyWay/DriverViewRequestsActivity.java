@@ -21,6 +21,7 @@ import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.FirebaseFirestoreException;
@@ -29,10 +30,14 @@ import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * view for requests within 22km for driver to see a list of people within distance , will be
- * adding their destination next week as we implement request class in database
+ * view for requests within 22km for driver to see a list of people within distance. Requests are
+ * found with a geohash range query around the driver, then filtered by their exact distance, and
+ * listed by how soon the driver could pick them up
  */
 public class DriverViewRequestsActivity extends AppCompatActivity {
     private static final String TAG = "OMW/DriverViewReques...";   // Use this tag for calling Log.d()
@@ -56,7 +61,7 @@ public class DriverViewRequestsActivity extends AppCompatActivity {
 
     ListView requestListView;
     ArrayList<Request> requests = new ArrayList<Request>();
-    ArrayList<Request> requestsin = new ArrayList<Request>();
+    private static final double NEARBY_RADIUS_KM = 22;  // Only show requests within this distance
 
     // array adapter for requests
     ArrayAdapter arrayAdapter;
@@ -77,60 +82,57 @@ public class DriverViewRequestsActivity extends AppCompatActivity {
         double driverLat = getIntent().getDoubleExtra("DRIVER_LAT", 0);
         double driverLon = getIntent().getDoubleExtra("DRIVER_LON", 0);
 
-        for (int i = 0; i < requestsin.size(); i++) {
-            /* 0.2 in lat long ~ 22km , checking to see if request within 22km of current location and if true add it to a
-            new request array which will be used for the listview*/
-            if (geoDist(driverLat, driverLon, requestsin.get(i).getStartLatitude(), requestsin.get(i).getEndLatitude())) {
-                requests.add(requestsin.get(i));
-                requests.add(requestsin.get(i));
-            }
-        }
-
         arrayAdapter = new CustomListDriverRequest(this, requests);
         requestListView.setAdapter(arrayAdapter);
-        loadRequests();
+        loadRequests(driverLat, driverLon);
     }
-        public void loadRequests(){
-            CollectionReference collectionReference = mDatabase.collection("riderRequests");
-            mDatabase.collection("riderRequests")
-                    .whereEqualTo("driverUserName", "NONE")
-                    .addSnapshotListener(new EventListener<QuerySnapshot>() {
+        /**
+         * Fetches the open requests within NEARBY_RADIUS_KM of the driver, soonest pickup first. Only
+         * requests in the geohash cells around the driver are downloaded
+         * @param driverLat The latitude of the driver
+         * @param driverLon The longitude of the driver
+         */
+        public void loadRequests(final double driverLat, final double driverLon){
+            DBManager dbManager = new DBManager();
+            dbManager.setNearbyRequestsPulledListener(new NearbyRequestsPulledListener() {
+                @Override
+                public void onNearbyRequestsPulled(List<DocumentSnapshot> nearbyRequests) {
+                    // Decoded and ranked on the background thread, so the main thread only swaps the list
+                    RideMatcher matcher = new RideMatcher(Math.max(1, nearbyRequests.size()), NEARBY_RADIUS_KM);
+                    Map<String, Request> byDocumentId = new HashMap<>();
+                    for (DocumentSnapshot doc : nearbyRequests) {
+                        Request request = DocumentCodec.decodeRequest(doc.getId(), doc.getData());
+                        if (request != null) {
+                            // Malformed requests are counted by DocumentCodec and skipped
+                            byDocumentId.put(doc.getId(), request);
+                            matcher.upsert(doc.getId(), request.getStartLatitude(), request.getStartLongitude());
+                        }
+                    }
+                    matcher.setDriverPosition(driverLat, driverLon);    // Last, so the ranking is built once
+
+                    final ArrayList<Request> decoded = new ArrayList<>();
+                    for (RideMatcher.Match match : matcher.topMatches()) {
+                        decoded.add(byDocumentId.get(match.documentId));
+                    }
+
+                    runOnUiThread(new Runnable() {
                         @Override
-                        public void onEvent(@Nullable QuerySnapshot queryDocumentSnapshots, @Nullable FirebaseFirestoreException e) {
-                            if (e != null) {
-                                Log.w(TAG, "Listen failed.", e);
-                                return;
-                            }
-                            for (QueryDocumentSnapshot doc : queryDocumentSnapshots) {
-                                // FIXME: THIS IS NOT A VALID CONSTRUCTOR ANYMORE. REQUEST NEEDS TO HAVE MANY MORE VALUES
-                                Request request = new Request(
-                                        doc.getString("riderId"),
-                                        doc.getString("driverId"),
-                                        doc.getString("startLocationName"),
-                                        Utilities.checkDoubleNotNull(doc.getDouble("startLongitude")),
-                                        Utilities.checkDoubleNotNull(doc.getDouble("startLatitude")),
-                                        doc.getString("endLocationName"),
-                                        Utilities.checkDoubleNotNull(doc.getDouble("endLongitude")),
-                                        Utilities.checkDoubleNotNull(doc.getDouble("endLatitude")),
-                                        "$5.00",
-                                        doc.getString("status"),
-                                        doc.getLong("timeCreated"),
-                                        doc.getLong("timeAccepted")
-                                );
-                                //request = i.toObject(Request.class);
-                                arrayAdapter.add(request);
-                            }
+                        public void run() {
+                            arrayAdapter.clear();
+                            arrayAdapter.addAll(decoded);
                         }
                     });
+                }
+            });
+            dbManager.nearbyOpenRequests(driverLat, driverLon, NEARBY_RADIUS_KM);
         }
 
+        /**
+         * Checks whether a rider is within NEARBY_RADIUS_KM of the driver, using the great-circle distance
+         * @return True if the rider is close enough to be shown to the driver
+         */
         public boolean geoDist (double latDriver, double lonDriver, double latRider,
         double longRider){
-
-            // 0.2 latitude/longitude approximately 22 km, finding rides within this distance
-            double dist;
-            dist = Math.sqrt((Math.pow((latDriver - latRider), 2)) + (Math.pow((lonDriver - longRider), 2)));
-            return dist < 0.2;
+            return Utilities.haversineKm(latDriver, lonDriver, latRider, longRider) < NEARBY_RADIUS_KM;
         }
     }
-
@@ -0,0 +1,85 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+
+/**
+ * Quotes the price of rides from a RateCard. A ride is priced by the distance and duration of its
+ * route when the Directions API returned one, and otherwise estimated from the straight-line
+ * distance between its ends. Uses no Android types, and quoting is only arithmetic on the
+ * arguments, so it can be called from any thread and for many candidate rides at once
+ */
+public class FareEngine {
+    private static final double ESTIMATED_KM_PER_HOUR = 30;   // Average city speed when there is no route
+
+    private final RateCard rateCard;
+
+
+    /**
+     * Constructor for FareEngine
+     * @param rateCard The prices to quote rides with
+     */
+    public FareEngine(RateCard rateCard) {
+        this.rateCard = rateCard;
+    }
+
+
+    public RateCard getRateCard() {
+        return rateCard;
+    }
+
+
+    /**
+     * Quotes a ride along a route from the Directions API
+     * @param route The route the driver will take
+     * @param surge The surge multiplier. Clamped between 1 and the rate card's maximum
+     * @return The fare
+     */
+    public Money quote(RouteChoice route, double surge) {
+        return quote(route.getDistanceMeters(), route.getDurationSeconds(), surge);
+    }
+
+
+    /**
+     * Quotes a ride from its straight-line distance, for when there is no route yet. The time is
+     * estimated at an average city speed
+     * @param startLatitude The latitude of the pickup location
+     * @param startLongitude The longitude of the pickup location
+     * @param endLatitude The latitude of the drop-off location
+     * @param endLongitude The longitude of the drop-off location
+     * @param surge The surge multiplier. Clamped between 1 and the rate card's maximum
+     * @return The fare
+     */
+    public Money estimate(double startLatitude, double startLongitude, double endLatitude, double endLongitude, double surge) {
+        double km = Utilities.haversineKm(startLatitude, startLongitude, endLatitude, endLongitude);
+        return quote(km * 1000, km / ESTIMATED_KM_PER_HOUR * 3600, surge);
+    }
+
+
+    /**
+     * Quotes a ride of a given distance and duration
+     * @param distanceMeters How far the ride goes
+     * @param durationSeconds How long the ride takes
+     * @param surge The surge multiplier. Clamped between 1 and the rate card's maximum
+     * @return The fare
+     */
+    public Money quote(double distanceMeters, double durationSeconds, double surge) {
+        if (distanceMeters < 0 || durationSeconds < 0) {
+            throw new IllegalArgumentException("A ride can't have a negative distance or duration");
+        }
+
+        double cents = rateCard.getBaseCents()
+                + rateCard.getPerKmCents() * distanceMeters / 1000
+                + rateCard.getPerMinuteCents() * durationSeconds / 60;
+        cents *= clampSurge(surge);
+
+        return Money.ofCents(Math.max(rateCard.getMinimumCents(), Math.round(cents)));
+    }
+
+
+    // A NaN or a multiplier below 1 means no surge
+    private double clampSurge(double surge) {
+        if (!(surge > 1)) {
+            return 1;
+        }
+        return Math.min(surge, rateCard.getMaxSurge());
+    }
+}
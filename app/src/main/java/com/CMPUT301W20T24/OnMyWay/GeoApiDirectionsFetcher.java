@@ -0,0 +1,49 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.DirectionsApi;
+import com.google.maps.GeoApiContext;
+import com.google.maps.model.DirectionsResult;
+import com.google.maps.model.LatLng;
+
+
+/**
+ * Fetches directions from the Google Directions API. One GeoApiContext is kept for the lifetime
+ * of this object, so its HTTP client, threads and connection pool are shared by every request
+ */
+public class GeoApiDirectionsFetcher implements DirectionsFetcher {
+    private GeoApiContext geoApi;
+
+
+    /**
+     * Constructor for GeoApiDirectionsFetcher
+     * @param apiKey The Google Maps API key
+     */
+    public GeoApiDirectionsFetcher(String apiKey) {
+        this(new GeoApiContext.Builder().apiKey(apiKey).build());
+    }
+
+
+    /**
+     * Constructor for GeoApiDirectionsFetcher that uses an existing context
+     * @param geoApi The context to send requests with. It is shut down by shutdown()
+     */
+    public GeoApiDirectionsFetcher(GeoApiContext geoApi) {
+        this.geoApi = geoApi;
+    }
+
+
+    @Override
+    public DirectionsResult fetch(LatLng origin, LatLng destination) throws Exception {
+        return DirectionsApi.newRequest(geoApi)
+                .alternatives(true)
+                .origin(origin)
+                .destination(destination)
+                .await();
+    }
+
+
+    @Override
+    public void shutdown() {
+        geoApi.shutdown();
+    }
+}
@@ -0,0 +1,16 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.model.LatLng;
+
+
+/**
+ * Implement this interface and onGeocoded will be called, on the main thread, when a
+ * GeocodingService lookup finishes. It is not called for lookups that were cancelled
+ */
+/// StackOverflow post by Rupesh
+/// Author: https://stackoverflow.com/users/787438/rupesh
+/// Answer: https://stackoverflow.com/questions/994840/how-to-create-our-own-listener-interface-in-android
+public interface GeocodeListener {
+    void onGeocoded(LatLng location);       // Null if no place has that name
+    void onGeocodeFailed(Exception e);
+}
@@ -0,0 +1,17 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.model.LatLng;
+
+import java.io.IOException;
+import java.util.List;
+
+
+/**
+ * Turns the name of a place into its coordinates, and suggests places for a partly typed name.
+ * GeocodingService runs this on its own worker thread, so both methods are allowed to block.
+ * Tests can implement this with a local stub
+ */
+public interface GeocodingBackend {
+    LatLng geocode(String query) throws IOException;
+    List<Place> suggest(String prefix, int limit) throws IOException;
+}
@@ -0,0 +1,351 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.maps.model.LatLng;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * An app-wide service for looking up places by name off the main thread. Results are kept in an
+ * in-memory LRU cache and in a Store that survives restarts, both keyed by the normalized query,
+ * so a place a rider searches for again is found without calling the backend. Each lookup can be
+ * cancelled, so a screen can drop an older lookup when the rider submits a new query. Suggestions
+ * for partly typed names are cached in memory by prefix, and every place suggested is remembered,
+ * so picking one places its pin without another lookup
+ */
+public class GeocodingService {
+    private static final String TAG = "OMW/GeocodingService";   // Use this tag for calling Log.d()
+    private static final int CACHED_PLACES = 64;
+    private static final int CACHED_PREFIXES = 32;
+    private static final int STORED_PLACES = 500;     // The saved places are cleared past this
+    private static final long IDLE_SECONDS = 30;      // The worker thread stops after this long idle
+
+    private static GeocodingService instance;
+
+    private GeocodingBackend backend;
+    private Store store;
+    private Executor worker;
+    private Executor callbacks;
+    private final LinkedHashMap<String, LatLng> memory;
+    private final LinkedHashMap<String, List<Place>> suggestions;     // By normalized prefix and limit
+
+
+    /**
+     * Keeps places across app restarts. Only called on the worker thread
+     */
+    public interface Store {
+        String get(String key);
+        void put(String key, String value);
+    }
+
+
+    /**
+     * A lookup that can be cancelled. Cancelling it after its listener was called does nothing
+     */
+    public static class Lookup {
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+
+    /**
+     * Constructor for GeocodingService. Use getInstance() in the app, this is public for tests
+     * @param backend Looks up the places that aren't cached
+     * @param store Keeps places across restarts
+     * @param worker Runs the store and the backend. Lookups run one at a time in order if it has one thread
+     * @param callbacks Runs the listeners, normally on the main thread
+     */
+    public GeocodingService(GeocodingBackend backend, Store store, Executor worker, Executor callbacks) {
+        this.backend = backend;
+        this.store = store;
+        this.worker = worker;
+        this.callbacks = callbacks;
+
+        // An access-ordered LinkedHashMap keeps the least recently used place first
+        this.memory = new LinkedHashMap<String, LatLng>(CACHED_PLACES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LatLng> eldest) {
+                return size() > CACHED_PLACES;
+            }
+        };
+        this.suggestions = new LinkedHashMap<String, List<Place>>(CACHED_PREFIXES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Place>> eldest) {
+                return size() > CACHED_PREFIXES;
+            }
+        };
+    }
+
+
+    /**
+     * Returns the service shared by the whole app, creating it the first time. It uses the
+     * platform Geocoder, saves places in SharedPreferences and calls listeners on the main thread
+     * @param context Any context. Only the application context is kept
+     * @return The GeocodingService
+     */
+    public static synchronized GeocodingService getInstance(Context context) {
+        if (instance == null) {
+            ThreadPoolExecutor worker = new ThreadPoolExecutor(
+                    1, 1,
+                    IDLE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>()
+            );
+            worker.allowCoreThreadTimeOut(true);
+
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new GeocodingService(
+                    new AndroidGeocodingBackend(context),
+                    new PreferencesStore(context.getApplicationContext()),
+                    worker,
+                    new Executor() {
+                        @Override
+                        public void execute(Runnable runnable) {
+                            mainHandler.post(runnable);
+                        }
+                    }
+            );
+        }
+        return instance;
+    }
+
+
+    /**
+     * Looks up a place. Cached places are answered without calling the backend
+     * @param query The name of the place, as the rider typed it
+     * @param listener Called with the place, or with null if there is no such place
+     * @return The Lookup, to cancel it with
+     */
+    public Lookup geocode(final String query, final GeocodeListener listener) {
+        final Lookup lookup = new Lookup();
+        final String key = normalize(query);
+
+        if (key.isEmpty()) {
+            deliver(lookup, listener, null, null);
+            return lookup;
+        }
+
+        LatLng cached;
+        synchronized (memory) {
+            cached = memory.get(key);
+        }
+        if (cached != null) {
+            deliver(lookup, listener, cached, null);
+            return lookup;
+        }
+
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (lookup.isCancelled()) {
+                    return;     // Superseded before it started, so don't call the backend
+                }
+
+                LatLng location = decode(store.get(key));
+                if (location == null) {
+                    try {
+                        location = backend.geocode(query);
+                    }
+                    catch (Exception e) {
+                        Log.w(TAG, "Geocoding failed", e);
+                        deliver(lookup, listener, null, e);
+                        return;
+                    }
+
+                    if (location != null) {
+                        store.put(key, encode(location));
+                    }
+                }
+
+                if (location != null) {
+                    synchronized (memory) {
+                        memory.put(key, location);
+                    }
+                }
+                deliver(lookup, listener, location, null);
+            }
+        });
+        return lookup;
+    }
+
+
+    /**
+     * Suggests places whose names start with what the rider has typed. A failed lookup suggests
+     * nothing, since the rider can still submit the query and see the error then
+     * @param prefix What the rider has typed so far
+     * @param limit The most places to suggest
+     * @param listener Called with the places
+     * @return The Lookup, to cancel it with once the rider types more
+     */
+    public Lookup suggest(final String prefix, final int limit, final PlaceSuggestionsListener listener) {
+        final Lookup lookup = new Lookup();
+        String normalized = normalize(prefix);
+        final String key = normalized + "#" + limit;
+
+        if (normalized.isEmpty()) {
+            deliver(lookup, listener, Collections.<Place>emptyList());
+            return lookup;
+        }
+
+        List<Place> cached;
+        synchronized (suggestions) {
+            cached = suggestions.get(key);
+        }
+        if (cached != null) {
+            deliver(lookup, listener, cached);
+            return lookup;
+        }
+
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (lookup.isCancelled()) {
+                    return;     // The rider kept typing, so this prefix is stale
+                }
+
+                List<Place> places;
+                try {
+                    places = Collections.unmodifiableList(backend.suggest(prefix, limit));
+                }
+                catch (Exception e) {
+                    Log.w(TAG, "Suggesting places failed", e);
+                    deliver(lookup, listener, Collections.<Place>emptyList());
+                    return;
+                }
+
+                synchronized (suggestions) {
+                    suggestions.put(key, places);
+                }
+                for (Place place : places) {
+                    remember(place);
+                }
+                deliver(lookup, listener, places);
+            }
+        });
+        return lookup;
+    }
+
+
+    /**
+     * Remembers where a place is for this session, so geocoding its name is answered from memory
+     * @param place A place whose location is already known, like a suggestion the rider picked
+     */
+    public void remember(Place place) {
+        String key = normalize(place.getName());
+        if (key.isEmpty()) {
+            return;
+        }
+        synchronized (memory) {
+            memory.put(key, place.getLocation());
+        }
+    }
+
+
+    /**
+     * Normalizes a query so ones that only differ in case, spacing or a trailing period share a key
+     * @param query The name of a place
+     * @return The key of the query in the caches
+     */
+    static String normalize(String query) {
+        return query.trim()
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .replaceAll(" ?, ?", ", ")
+                .replaceAll("[.,]+$", "");
+    }
+
+
+    // Call the listener on the callbacks executor, unless the lookup was cancelled by then
+    private void deliver(final Lookup lookup, final GeocodeListener listener, final LatLng location, final Exception error) {
+        callbacks.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (lookup.isCancelled()) {
+                    return;
+                }
+                if (error != null) {
+                    listener.onGeocodeFailed(error);
+                }
+                else {
+                    listener.onGeocoded(location);
+                }
+            }
+        });
+    }
+
+
+    private void deliver(final Lookup lookup, final PlaceSuggestionsListener listener, final List<Place> places) {
+        callbacks.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!lookup.isCancelled()) {
+                    listener.onSuggestions(places);
+                }
+            }
+        });
+    }
+
+
+    private static String encode(LatLng location) {
+        return location.lat + "," + location.lng;
+    }
+
+
+    // Returns null for a place that isn't saved, or was saved in a form we can't read
+    private static LatLng decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        try {
+            return new LatLng(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]));
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+
+    // Saves places in their own SharedPreferences file, cleared when it grows past STORED_PLACES
+    private static class PreferencesStore implements Store {
+        private SharedPreferences preferences;
+
+        PreferencesStore(Context context) {
+            this.preferences = context.getSharedPreferences("geocoded_places", Context.MODE_PRIVATE);
+        }
+
+        @Override
+        public String get(String key) {
+            return preferences.getString(key, null);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            SharedPreferences.Editor editor = preferences.edit();
+            if (preferences.getAll().size() >= STORED_PLACES) {
+                editor.clear();
+            }
+            editor.putString(key, value).apply();
+        }
+    }
+}
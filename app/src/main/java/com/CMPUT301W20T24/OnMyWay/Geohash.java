@@ -0,0 +1,230 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+
+/**
+ * Encodes coordinates as geohashes so requests can be found with prefix range queries.
+ * Every character of a geohash narrows the cell it describes, so a request stored with a long
+ * geohash matches a range query on any shorter prefix of it
+ */
+/// Wikipedia, Geohash
+/// https://en.wikipedia.org/wiki/Geohash
+public class Geohash {
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    public static final int STORED_PRECISION = 9;   // About 5m x 5m, precise enough for any radius we query
+    private static final double KM_PER_DEGREE_LATITUDE = 110.574;
+    private static final double KM_PER_DEGREE_LONGITUDE = 111.320;    // At the equator
+
+
+    /**
+     * Encodes a coordinate as a geohash
+     * @param latitude The latitude, between -90 and 90
+     * @param longitude The longitude, between -180 and 180
+     * @param precision The number of characters in the geohash, between 1 and 12
+     * @return The geohash of the cell containing the coordinate
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > 12) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and 12");
+        }
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("Coordinate is out of range");
+        }
+
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        StringBuilder geohash = new StringBuilder(precision);
+        boolean evenBit = true;    // Bits alternate between longitude and latitude, starting with longitude
+        int bit = 0;
+        int character = 0;
+
+        while (geohash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    character = (character << 1) | 1;
+                    minLon = mid;
+                }
+                else {
+                    character = character << 1;
+                    maxLon = mid;
+                }
+            }
+            else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    character = (character << 1) | 1;
+                    minLat = mid;
+                }
+                else {
+                    character = character << 1;
+                    maxLat = mid;
+                }
+            }
+
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                geohash.append(BASE32.charAt(character));
+                bit = 0;
+                character = 0;
+            }
+        }
+
+        return geohash.toString();
+    }
+
+
+    /**
+     * Returns the height of a geohash cell in degrees of latitude
+     * @param precision The number of characters in the geohash
+     * @return The height of the cell in degrees
+     */
+    public static double cellHeightDegrees(int precision) {
+        int latitudeBits = (5 * precision) / 2;
+        return 180.0 / Math.pow(2, latitudeBits);
+    }
+
+
+    /**
+     * Returns the width of a geohash cell in degrees of longitude
+     * @param precision The number of characters in the geohash
+     * @return The width of the cell in degrees
+     */
+    public static double cellWidthDegrees(int precision) {
+        int longitudeBits = (5 * precision + 1) / 2;
+        return 360.0 / Math.pow(2, longitudeBits);
+    }
+
+
+    /**
+     * Returns the longest precision whose cells are at least as tall and wide as the radius at
+     * the given latitude. Any point within the radius is then in the cell of the centre or in one
+     * of its eight neighbours
+     * @param latitude The latitude of the centre of the search
+     * @param radiusKm The search radius in kilometres
+     * @return A geohash precision between 1 and STORED_PRECISION
+     */
+    public static int precisionForRadius(double latitude, double radiusKm) {
+        double radiusLat = radiusKm / KM_PER_DEGREE_LATITUDE;
+        double cosLat = Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+        double radiusLon = Math.min(radiusKm / (KM_PER_DEGREE_LONGITUDE * cosLat), 360);
+
+        for (int precision = STORED_PRECISION; precision > 1; --precision) {
+            if (cellHeightDegrees(precision) >= radiusLat && cellWidthDegrees(precision) >= radiusLon) {
+                return precision;
+            }
+        }
+        return 1;
+    }
+
+
+    /**
+     * Returns the geohash cells that together cover a circle: the cell of the centre and its
+     * eight neighbours, at the precision given by precisionForRadius(). Cells of the same
+     * precision never overlap, so a document is found by at most one of the prefix ranges
+     * @param latitude The latitude of the centre
+     * @param longitude The longitude of the centre
+     * @param radiusKm The radius of the circle in kilometres
+     * @return A set of distinct geohash prefixes
+     */
+    public static Set<String> coveringCells(double latitude, double longitude, double radiusKm) {
+        int precision = precisionForRadius(latitude, radiusKm);
+        double height = cellHeightDegrees(precision);
+        double width = cellWidthDegrees(precision);
+        Set<String> cells = new LinkedHashSet<>();
+
+        for (int dLat = -1; dLat <= 1; ++dLat) {
+            double neighbourLat = Math.max(-90, Math.min(90, latitude + dLat * height));
+
+            for (int dLon = -1; dLon <= 1; ++dLon) {
+                cells.add(encode(neighbourLat, wrapLongitude(longitude + dLon * width), precision));
+            }
+        }
+
+        return cells;
+    }
+
+
+    /**
+     * Returns the longest precision whose cells are at least as tall and wide as a box, so the box
+     * touches at most two cells across and two cells down
+     * @param south The southern edge of the box
+     * @param west The western edge of the box
+     * @param north The northern edge of the box
+     * @param east The eastern edge of the box. Less than west if the box crosses the antimeridian
+     * @return A geohash precision between 1 and STORED_PRECISION
+     */
+    public static int precisionForBounds(double south, double west, double north, double east) {
+        double height = north - south;
+        double width = (east >= west) ? east - west : east + 360 - west;
+
+        for (int precision = STORED_PRECISION; precision > 1; --precision) {
+            if (cellHeightDegrees(precision) >= height && cellWidthDegrees(precision) >= width) {
+                return precision;
+            }
+        }
+        return 1;
+    }
+
+
+    /**
+     * Returns the geohash cells that together cover a box, at the precision given by
+     * precisionForBounds(). That is at most four cells, unless the box is bigger than a
+     * precision 1 cell
+     * @param south The southern edge of the box
+     * @param west The western edge of the box
+     * @param north The northern edge of the box
+     * @param east The eastern edge of the box. Less than west if the box crosses the antimeridian
+     * @return A set of distinct geohash prefixes
+     */
+    public static Set<String> coveringCells(double south, double west, double north, double east) {
+        int precision = precisionForBounds(south, west, north, east);
+        double height = cellHeightDegrees(precision);
+        double width = cellWidthDegrees(precision);
+        double unwrappedEast = (east >= west) ? east : east + 360;
+        Set<String> cells = new LinkedHashSet<>();
+
+        // Step one cell at a time from the south-west corner, always including the far edges
+        for (double latitude = south; ; latitude += height) {
+            double cellLat = Math.min(latitude, north);
+
+            for (double longitude = west; ; longitude += width) {
+                cells.add(encode(cellLat, wrapLongitude(Math.min(longitude, unwrappedEast)), precision));
+                if (longitude >= unwrappedEast) {
+                    break;
+                }
+            }
+            if (latitude >= north) {
+                break;
+            }
+        }
+
+        return cells;
+    }
+
+
+    /**
+     * Returns the last string in the prefix range of a geohash, for use with Query.endAt().
+     * '~' sorts after every base32 character
+     * @param prefix A geohash prefix
+     * @return The end of the range of geohashes starting with prefix
+     */
+    public static String rangeEnd(String prefix) {
+        return prefix + "~";
+    }
+
+
+    // Wrap a longitude that went past the antimeridian back into [-180, 180]
+    private static double wrapLongitude(double longitude) {
+        if (longitude > 180) {
+            return longitude - 360;
+        }
+        else if (longitude < -180) {
+            return longitude + 360;
+        }
+        return longitude;
+    }
+}
@@ -0,0 +1,353 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A copy of the Firestore documents this phone has seen, and the queue of writes that haven't
+ * reached Firestore yet, in a local SQLite database. Documents are stored as JSON, with the fields
+ * we look them up by copied into their own columns. Not thread safe on its own, so RequestRepository
+ * only calls it from its own thread
+ */
+/// Android Developers, Save data using SQLite
+/// https://developer.android.com/training/data-storage/sqlite
+public class LocalStore extends SQLiteOpenHelper {
+    private static final String TAG = "OMW/LocalStore";   // Use this tag for calling Log.d()
+    private static final String DATABASE_NAME = "omw.db";
+    private static final int DATABASE_VERSION = 1;
+
+    public static final String OPERATION_SET = "SET";
+    public static final String OPERATION_UPDATE = "UPDATE";
+
+
+    /**
+     * A write waiting in the outbox
+     */
+    public static class OutboxEntry {
+        public final long id;
+        public final String collection;
+        public final String documentId;
+        public final String operation;
+        public final Map<String, Object> data;
+        public final int attempts;
+        public final long nextAttemptAt;
+
+        OutboxEntry(long id, String collection, String documentId, String operation, Map<String, Object> data, int attempts, long nextAttemptAt) {
+            this.id = id;
+            this.collection = collection;
+            this.documentId = documentId;
+            this.operation = operation;
+            this.data = data;
+            this.attempts = attempts;
+            this.nextAttemptAt = nextAttemptAt;
+        }
+    }
+
+
+    /**
+     * Constructor for LocalStore
+     * @param context Any context. Only the application context is kept
+     */
+    public LocalStore(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE documents ("
+                + "collection TEXT NOT NULL, "
+                + "documentId TEXT NOT NULL, "
+                + "requestId TEXT, "
+                + "driverId TEXT, "
+                + "status TEXT, "
+                + "timeAccepted INTEGER, "
+                + "data TEXT NOT NULL, "
+                + "PRIMARY KEY (collection, documentId))");
+        db.execSQL("CREATE INDEX documents_requestId ON documents (requestId)");
+        db.execSQL("CREATE INDEX documents_history ON documents (driverId, status, timeAccepted)");
+
+        db.execSQL("CREATE TABLE outbox ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "collection TEXT NOT NULL, "
+                + "documentId TEXT NOT NULL, "
+                + "operation TEXT NOT NULL, "
+                + "data TEXT NOT NULL, "
+                + "attempts INTEGER NOT NULL DEFAULT 0, "
+                + "nextAttemptAt INTEGER NOT NULL DEFAULT 0)");
+    }
+
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Nothing to migrate yet
+    }
+
+
+    /**
+     * Saves a document, replacing any earlier copy
+     * @param collection The Firestore collection of the document
+     * @param documentId The ID of the document
+     * @param data The fields of the document
+     */
+    public void putDocument(String collection, String documentId, Map<String, Object> data) {
+        ContentValues values = new ContentValues();
+        values.put("collection", collection);
+        values.put("documentId", documentId);
+        values.put("requestId", stringField(data, "requestID"));
+        values.put("driverId", stringField(data, "driverId"));
+        values.put("status", stringField(data, "status"));
+        values.put("timeAccepted", longField(data, "timeAccepted"));
+        values.put("data", toJson(data));
+
+        getWritableDatabase().insertWithOnConflict("documents", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+
+    /**
+     * Changes some fields of a saved document, the same way a Firestore update would.
+     * If the document isn't saved yet, it is saved with only these fields
+     * @param collection The Firestore collection of the document
+     * @param documentId The ID of the document
+     * @param fields The fields to change
+     */
+    public void mergeDocument(String collection, String documentId, Map<String, Object> fields) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Map<String, Object> data = getDocument(collection, documentId);
+            if (data == null) {
+                data = new HashMap<>();
+            }
+            data.putAll(fields);
+            putDocument(collection, documentId, data);
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+        }
+    }
+
+
+    /**
+     * Returns the fields of a saved document
+     * @param collection The Firestore collection of the document
+     * @param documentId The ID of the document
+     * @return The fields of the document, or null if it isn't saved
+     */
+    public Map<String, Object> getDocument(String collection, String documentId) {
+        Cursor cursor = getReadableDatabase().query(
+                "documents",
+                new String[] {"data"},
+                "collection = ? AND documentId = ?",
+                new String[] {collection, documentId},
+                null, null, null
+        );
+        try {
+            return cursor.moveToFirst() ? fromJson(cursor.getString(0)) : null;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Returns the saved completed rides of a driver, newest first
+     * @param driverId The userId of the driver
+     * @param limit The most rides to return
+     * @return The fields of each ride
+     */
+    public List<Map<String, Object>> completedRequestsForDriver(String driverId, int limit) {
+        Cursor cursor = getReadableDatabase().query(
+                "documents",
+                new String[] {"data"},
+                "collection = ? AND driverId = ? AND status = ?",
+                new String[] {"riderRequests", driverId, "COMPLETE"},
+                null, null, "timeAccepted DESC", Integer.toString(limit)
+        );
+        try {
+            List<Map<String, Object>> requests = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                requests.add(fromJson(cursor.getString(0)));
+            }
+            return requests;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Adds a write to the end of the outbox. It is kept until removeFromOutbox() is called, even
+     * if the app is closed
+     * @param collection The Firestore collection of the document
+     * @param documentId The ID of the document
+     * @param operation OPERATION_SET or OPERATION_UPDATE
+     * @param data The fields to write
+     */
+    public void addToOutbox(String collection, String documentId, String operation, Map<String, Object> data) {
+        ContentValues values = new ContentValues();
+        values.put("collection", collection);
+        values.put("documentId", documentId);
+        values.put("operation", operation);
+        values.put("data", toJson(data));
+        getWritableDatabase().insert("outbox", null, values);
+    }
+
+
+    /**
+     * Returns the oldest writes in the outbox, in the order they were made
+     * @param limit The most writes to return
+     * @return The writes. Empty if the outbox is empty
+     */
+    public List<OutboxEntry> peekOutbox(int limit) {
+        List<OutboxEntry> entries = new ArrayList<>();
+        Cursor cursor = getReadableDatabase().query(
+                "outbox",
+                new String[] {"id", "collection", "documentId", "operation", "data", "attempts", "nextAttemptAt"},
+                null, null, null, null, "id ASC", String.valueOf(limit)
+        );
+        try {
+            while (cursor.moveToNext()) {
+                entries.add(new OutboxEntry(
+                        cursor.getLong(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(3),
+                        fromJson(cursor.getString(4)),
+                        cursor.getInt(5),
+                        cursor.getLong(6)
+                ));
+            }
+        }
+        finally {
+            cursor.close();
+        }
+        return entries;
+    }
+
+
+    /**
+     * Removes a write from the outbox once it has reached Firestore, or can never succeed
+     * @param id The id of the OutboxEntry
+     */
+    public void removeFromOutbox(long id) {
+        getWritableDatabase().delete("outbox", "id = ?", new String[] {Long.toString(id)});
+    }
+
+
+    /**
+     * Records a failed attempt at a write
+     * @param id The id of the OutboxEntry
+     * @param attempts The number of attempts made so far
+     * @param nextAttemptAt When to try again, in milliseconds since the epoch
+     */
+    public void rescheduleOutbox(long id, int attempts, long nextAttemptAt) {
+        ContentValues values = new ContentValues();
+        values.put("attempts", attempts);
+        values.put("nextAttemptAt", nextAttemptAt);
+        getWritableDatabase().update("outbox", values, "id = ?", new String[] {Long.toString(id)});
+    }
+
+
+    /**
+     * Checks if a document has writes in the outbox that haven't reached Firestore yet
+     * @param collection The Firestore collection of the document
+     * @param documentId The ID of the document
+     * @return True if there is at least one waiting write for the document
+     */
+    public boolean hasPendingWrites(String collection, String documentId) {
+        Cursor cursor = getReadableDatabase().query(
+                "outbox",
+                new String[] {"id"},
+                "collection = ? AND documentId = ?",
+                new String[] {collection, documentId},
+                null, null, null, "1"
+        );
+        try {
+            return cursor.moveToFirst();
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * Makes every write in the outbox ready to try right away, for when the connection comes back
+     */
+    public void resetOutboxBackoff() {
+        ContentValues values = new ContentValues();
+        values.put("nextAttemptAt", 0);
+        getWritableDatabase().update("outbox", values, null, null);
+    }
+
+
+    private static String stringField(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return (value instanceof String) ? (String) value : null;
+    }
+
+    private static Long longField(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return (value instanceof Number) ? ((Number) value).longValue() : null;
+    }
+
+
+    // Firestore fields are strings, numbers, booleans and nulls, which JSON can hold directly
+    private static String toJson(Map<String, Object> data) {
+        JSONObject json = new JSONObject();
+        try {
+            for (Map.Entry<String, Object> field : data.entrySet()) {
+                json.put(field.getKey(), field.getValue() == null ? JSONObject.NULL : field.getValue());
+            }
+        }
+        catch (JSONException e) {
+            throw new IllegalArgumentException("Document can't be stored locally", e);
+        }
+        return json.toString();
+    }
+
+
+    // Whole numbers come back from JSON as Integer, so widen them to the Long Firestore uses
+    private static Map<String, Object> fromJson(String string) {
+        Map<String, Object> data = new HashMap<>();
+        try {
+            JSONObject json = new JSONObject(string);
+            Iterator<String> keys = json.keys();
+
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object value = json.get(key);
+
+                if (value == JSONObject.NULL) {
+                    value = null;
+                }
+                else if (value instanceof Integer) {
+                    value = ((Integer) value).longValue();
+                }
+                data.put(key, value);
+            }
+        }
+        catch (JSONException e) {
+            Log.w(TAG, "Skipping unreadable local document", e);
+        }
+        return data;
+    }
+}
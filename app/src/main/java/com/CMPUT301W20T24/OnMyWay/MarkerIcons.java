@@ -0,0 +1,185 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.HashMap;
+
+
+/**
+ * The marker icons of every map in the app. Each drawable is decoded once and each drawn icon is
+ * made once, then the same BitmapDescriptor is handed out for every marker that uses it. Drawn
+ * icons are labelled with a count or price rounded to a few steps, so only a handful ever exist.
+ * Only use this from the main thread
+ */
+public class MarkerIcons {
+    private static final int CLUSTER_ICON_DP = 40;      // Diameter of a cluster marker
+    private static final int PRICE_TEXT_DP = 12;        // Text size of the price above a pin
+    private static final int PRICE_PADDING_DP = 4;      // Space around the price inside its bubble
+
+    private static HashMap<Integer, Bitmap> drawables = new HashMap<>();        // By drawable resource
+    private static HashMap<String, BitmapDescriptor> icons = new HashMap<>();   // By what they show
+
+
+    /**
+     * Returns the icon of a marker drawable
+     * @param context Used to load the drawable the first time
+     * @param drawableRes A bitmap drawable, such as R.drawable.ic_end_location_marker
+     * @return The same BitmapDescriptor every time for the same drawable
+     */
+    public static BitmapDescriptor get(Context context, int drawableRes) {
+        String key = "drawable/" + drawableRes;
+        BitmapDescriptor icon = icons.get(key);
+        if (icon == null) {
+            icon = BitmapDescriptorFactory.fromBitmap(drawable(context, drawableRes));
+            icons.put(key, icon);
+        }
+        return icon;
+    }
+
+
+    /**
+     * Returns a filled circle with the rounded number of requests it stands for in it
+     * @param context Used for the screen density the first time
+     * @param color The color of the circle
+     * @param size The number of requests in the cluster
+     * @return The same BitmapDescriptor for every cluster with the same label and color
+     */
+    public static BitmapDescriptor cluster(Context context, int color, int size) {
+        String label = clusterLabel(size);
+        String key = "cluster/" + color + "/" + label;
+        BitmapDescriptor icon = icons.get(key);
+        if (icon != null) {
+            return icon;
+        }
+
+        float density = context.getResources().getDisplayMetrics().density;
+        int diameter = (int) (CLUSTER_ICON_DP * density);
+        Bitmap bitmap = Bitmap.createBitmap(diameter, diameter, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        paint.setColor(Color.WHITE);
+        canvas.drawCircle(diameter / 2f, diameter / 2f, diameter / 2f, paint);
+        paint.setColor(color);
+        canvas.drawCircle(diameter / 2f, diameter / 2f, diameter / 2f - 2 * density, paint);
+
+        paint.setColor(Color.WHITE);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(14 * density);
+        paint.setFakeBoldText(true);
+        canvas.drawText(label, diameter / 2f, diameter / 2f - (paint.descent() + paint.ascent()) / 2, paint);
+
+        icon = BitmapDescriptorFactory.fromBitmap(bitmap);
+        icons.put(key, icon);
+        return icon;
+    }
+
+
+    /**
+     * Returns a pin drawable with the rounded price of a ride in a bubble above it. Anchor markers
+     * using it at (0.5, 1), the tip of the pin
+     * @param context Used to load the drawable and for the screen density the first time
+     * @param drawableRes The pin drawable, such as R.drawable.ic_blue_location_marker
+     * @param color The color of the price bubble
+     * @param cents The offered price in cents
+     * @return The same BitmapDescriptor for every pin with the same label, drawable and color
+     */
+    public static BitmapDescriptor pricePin(Context context, int drawableRes, int color, long cents) {
+        String label = priceLabel(cents);
+        String key = "price/" + drawableRes + "/" + color + "/" + label;
+        BitmapDescriptor icon = icons.get(key);
+        if (icon != null) {
+            return icon;
+        }
+
+        float density = context.getResources().getDisplayMetrics().density;
+        Bitmap pin = drawable(context, drawableRes);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(PRICE_TEXT_DP * density);
+        paint.setFakeBoldText(true);
+
+        float padding = PRICE_PADDING_DP * density;
+        float bubbleWidth = paint.measureText(label) + 4 * padding;
+        float bubbleHeight = paint.descent() - paint.ascent() + 2 * padding;
+        int width = (int) Math.ceil(Math.max(pin.getWidth(), bubbleWidth));
+        int height = (int) Math.ceil(bubbleHeight + padding) + pin.getHeight();
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        RectF bubble = new RectF((width - bubbleWidth) / 2, 0, (width + bubbleWidth) / 2, bubbleHeight);
+        paint.setColor(color);
+        canvas.drawRoundRect(bubble, bubbleHeight / 2, bubbleHeight / 2, paint);
+        paint.setColor(Color.WHITE);
+        canvas.drawText(label, width / 2f, bubbleHeight / 2 - (paint.descent() + paint.ascent()) / 2, paint);
+
+        canvas.drawBitmap(pin, (width - pin.getWidth()) / 2f, height - pin.getHeight(), null);
+
+        icon = BitmapDescriptorFactory.fromBitmap(bitmap);
+        icons.put(key, icon);
+        return icon;
+    }
+
+
+    /**
+     * Rounds a count down to a few steps, so only a handful of cluster icons are ever drawn
+     * @param size The number of requests in a cluster
+     * @return The label shown on the cluster
+     */
+    static String clusterLabel(int size) {
+        if (size < 10) {
+            return Integer.toString(size);
+        }
+        else if (size < 25) {
+            return "10+";
+        }
+        else if (size < 50) {
+            return "25+";
+        }
+        else if (size < 100) {
+            return "50+";
+        }
+        return "100+";
+    }
+
+
+    /**
+     * Rounds a price to a few steps, so only a few dozen price pins are ever drawn. Prices under
+     * $10 are rounded to the nearest dollar, higher ones down to $5 and then $10 steps
+     * @param cents The price in cents
+     * @return The label shown above the pin
+     */
+    static String priceLabel(long cents) {
+        long dollars = cents / 100;
+        if (dollars < 10) {
+            return "$" + (cents + 50) / 100;
+        }
+        else if (dollars < 50) {
+            return "$" + (dollars / 5 * 5) + "+";
+        }
+        else if (dollars < 100) {
+            return "$" + (dollars / 10 * 10) + "+";
+        }
+        return "$100+";
+    }
+
+
+    private static Bitmap drawable(Context context, int drawableRes) {
+        Bitmap bitmap = drawables.get(drawableRes);
+        if (bitmap == null) {
+            bitmap = BitmapFactory.decodeResource(context.getResources(), drawableRes);
+            drawables.put(drawableRes, bitmap);
+        }
+        return bitmap;
+    }
+}
@@ -1,26 +1,40 @@
 package com.CMPUT301W20T24.OnMyWay;
 
+/**
+ * The tag of a pickup marker, holding what the driver map needs to know about an open request.
+ * PickupMarkerManager keeps one per document and updates it in place when the document changes,
+ * so coordinates and the amount are kept as primitives instead of new boxed values every time
+ */
 public class MarkerStoreObject {
 
-        private String documentId;
+        private final String documentId;
         private String driverUsername;
-        private Double endLatitude;
-        private Double endLongitude;
-        private float paymentAmount;
+        private double endLatitude;
+        private double endLongitude;
+        private long paymentCents;
+        private String paymentCurrency;
         private String requestId;
         private String riderUsername;
-        private Double startLatitude;
-        private Double startLongitude;
+        private double startLatitude;
+        private double startLongitude;
         private String status;
         private String startAddressName;
         private String endAddressName;
 
-    public MarkerStoreObject(String documentId, String driverUsername, Double endLatitude, Double endLongitude, float paymentAmount, String requestId, String riderUsername, Double startLatitude, Double startLongitude, String status, String startAddressName, String endAddressName) {
+    public MarkerStoreObject(String documentId) {
         this.documentId = documentId;
+    }
+
+
+    /**
+     * Replaces every field at once with the fields of a newer copy of the request
+     */
+    void update(String driverUsername, double endLatitude, double endLongitude, long paymentCents, String paymentCurrency, String requestId, String riderUsername, double startLatitude, double startLongitude, String status, String startAddressName, String endAddressName) {
         this.driverUsername = driverUsername;
         this.endLatitude = endLatitude;
         this.endLongitude = endLongitude;
-        this.paymentAmount = paymentAmount;
+        this.paymentCents = paymentCents;
+        this.paymentCurrency = paymentCurrency;
         this.requestId = requestId;
         this.riderUsername = riderUsername;
         this.startLatitude = startLatitude;
@@ -30,99 +44,63 @@ public class MarkerStoreObject {
         this.endAddressName = endAddressName;
     }
 
-    public String getDocumentId() {
-        return documentId;
+    /**
+     * Replaces every field with the fields of another tag of the same request
+     */
+    void copyFrom(MarkerStoreObject other) {
+        update(other.driverUsername, other.endLatitude, other.endLongitude, other.paymentCents, other.paymentCurrency, other.requestId, other.riderUsername, other.startLatitude, other.startLongitude, other.status, other.startAddressName, other.endAddressName);
     }
 
-    public void setDocumentId(String documentId) {
-        this.documentId = documentId;
+    public String getDocumentId() {
+        return documentId;
     }
 
     public String getDriverUsername() {
         return driverUsername;
     }
 
-    public void setDriverUsername(String driverUsername) {
-        this.driverUsername = driverUsername;
-    }
-
-    public Double getEndLatitude() {
+    public double getEndLatitude() {
         return endLatitude;
     }
 
-    public void setEndLatitude(Double endLatitude) {
-        this.endLatitude = endLatitude;
-    }
-
-    public Double getEndLongitude() {
+    public double getEndLongitude() {
         return endLongitude;
     }
 
-    public void setEndLongitude(Double endLongitude) {
-        this.endLongitude = endLongitude;
+    public long getPaymentCents() {
+        return paymentCents;
     }
 
-    public float getPaymentAmount() {
-        return paymentAmount;
-    }
-
-    public void setPaymentAmount(float paymentAmount) {
-        this.paymentAmount = paymentAmount;
+    // Only made when a dialog shows the amount, so markers don't each keep a Money
+    public Money getPaymentAmount() {
+        return new Money(paymentCents, paymentCurrency);
     }
 
     public String getRequestId() {
         return requestId;
     }
 
-    public void setRequestId(String requestId) {
-        this.requestId = requestId;
-    }
-
     public String getRiderUsername() {
         return riderUsername;
     }
 
-    public void setRiderUsername(String riderUsername) {
-        this.riderUsername = riderUsername;
-    }
-
-    public Double getStartLatitude() {
+    public double getStartLatitude() {
         return startLatitude;
     }
 
-    public void setStartLatitude(Double startLatitude) {
-        this.startLatitude = startLatitude;
-    }
-
-    public Double getStartLongitude() {
+    public double getStartLongitude() {
         return startLongitude;
     }
 
-    public void setStartLongitude(Double startLongitude) {
-        this.startLongitude = startLongitude;
-    }
-
     public String getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
-        this.status = status;
-    }
-
     public String getStartAddressName() {
         return startAddressName;
     }
 
-    public void setStartAddressName(String startAddressName) {
-        this.startAddressName = startAddressName;
-    }
-
     public String getEndAddressName() {
         return endAddressName;
     }
-
-    public void setEndAddressName(String endAddressName) {
-        this.endAddressName = endAddressName;
-    }
 }
@@ -0,0 +1,153 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+
+/**
+ * An amount of money, stored as a whole number of cents so adding and comparing amounts is exact.
+ * Firestore stores the cents as an integer, so amounts are never parsed from strings or floats
+ */
+public final class Money implements Comparable<Money> {
+    public static final String DEFAULT_CURRENCY = "CAD";   // Every fare in the app is in Canadian dollars
+
+    private final long cents;
+    private final String currency;
+
+
+    /**
+     * Constructor for Money
+     * @param cents The amount in cents. Can't be negative
+     * @param currency The ISO 4217 code of the currency, like "CAD"
+     */
+    public Money(long cents, String currency) {
+        if (cents < 0) {
+            throw new IllegalArgumentException("An amount of money can't be negative");
+        }
+        if (currency == null || currency.length() != 3) {
+            throw new IllegalArgumentException("currency must be a three letter code");
+        }
+        this.cents = cents;
+        this.currency = currency;
+    }
+
+
+    /**
+     * Makes an amount in the default currency
+     * @param cents The amount in cents
+     * @return The Money
+     */
+    public static Money ofCents(long cents) {
+        return new Money(cents, DEFAULT_CURRENCY);
+    }
+
+
+    /**
+     * Reads an amount typed by a user or stored by an older version of the app, like "12.5",
+     * "12.50" or "$12.50". Fractions of a cent are rounded to the nearest cent
+     * @param text The amount in dollars
+     * @return The Money in the default currency
+     * @throws IllegalArgumentException If the text isn't an amount
+     */
+    public static Money parse(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("The amount is null");
+        }
+
+        String amount = text.trim();
+        if (amount.startsWith("$")) {
+            amount = amount.substring(1).trim();
+        }
+
+        try {
+            BigDecimal dollars = new BigDecimal(amount);
+            return ofCents(dollars.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact());
+        }
+        catch (ArithmeticException e) {
+            throw new IllegalArgumentException("The amount is too large: " + text);
+        }
+    }
+
+
+    public long getCents() {
+        return cents;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+
+    /**
+     * Adds two amounts of the same currency
+     * @param other The amount to add
+     * @return The sum
+     */
+    public Money plus(Money other) {
+        checkSameCurrency(other);
+        return new Money(cents + other.cents, currency);
+    }
+
+
+    /**
+     * Returns the amount with a dollar sign, like "$12.50", for showing to the user
+     * @return The formatted amount
+     */
+    public String format() {
+        return appendDollars(new StringBuilder(12).append('$')).toString();
+    }
+
+
+    /**
+     * Returns the amount in dollars without a sign, like "12.50", which parse() reads back
+     * @return The amount in dollars
+     */
+    @Override
+    public String toString() {
+        return appendDollars(new StringBuilder(12)).toString();
+    }
+
+
+    @Override
+    public int compareTo(Money other) {
+        checkSameCurrency(other);
+        return Long.compare(cents, other.cents);
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money other = (Money) o;
+        return cents == other.cents && currency.equals(other.currency);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(cents) + currency.hashCode();
+    }
+
+
+    // Write the amount as dollars and two digits of cents, without going through a float
+    private StringBuilder appendDollars(StringBuilder builder) {
+        long remainder = cents % 100;
+        builder.append(cents / 100).append('.');
+        if (remainder < 10) {
+            builder.append('0');
+        }
+        return builder.append(remainder);
+    }
+
+
+    private void checkSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Can't mix " + currency + " and " + other.currency);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.List;
+
+
+/**
+ * Implement this interface and onNearbyRequestsPulled will be called after the open requests
+ * near a location are fetched. It is called on a background thread, so decode the documents there
+ * and only post the result to the main thread
+ */
+/// StackOverflow post by Rupesh
+/// Author: https://stackoverflow.com/users/787438/rupesh
+/// Answer: https://stackoverflow.com/questions/994840/how-to-create-our-own-listener-interface-in-android
+public interface NearbyRequestsPulledListener {
+    void onNearbyRequestsPulled(List<DocumentSnapshot> nearbyRequests);
+}
@@ -0,0 +1,71 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+
+/**
+ * The text inside the QR code a rider shows to pay a driver. It holds the requestID and the amount
+ * as a whole number of cents, like "abc-123;1250;CAD", so the driver's phone reads the exact amount
+ */
+public class PaymentCode {
+    private static final String SEPARATOR = ";";
+
+    private final String requestId;
+    private final Money amount;
+
+
+    public PaymentCode(String requestId, Money amount) {
+        if (requestId == null || requestId.isEmpty()) {
+            throw new IllegalArgumentException("requestId can't be empty");
+        }
+        if (amount == null) {
+            throw new IllegalArgumentException("amount can't be null");
+        }
+        this.requestId = requestId;
+        this.amount = amount;
+    }
+
+
+    /**
+     * Reads the text of a scanned QR code. Codes made by older versions of the app, like
+     * "abc-123; 12.50", are read too
+     * @param text The text of the QR code
+     * @return The PaymentCode
+     * @throws IllegalArgumentException If the text isn't a payment code
+     */
+    public static PaymentCode decode(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("The QR code is empty");
+        }
+
+        String[] parts = text.split(SEPARATOR);
+        if (parts.length == 3) {
+            try {
+                return new PaymentCode(parts[0], new Money(Long.parseLong(parts[1]), parts[2]));
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("The amount in the QR code isn't a number: " + text);
+            }
+        }
+        else if (parts.length == 2) {
+            return new PaymentCode(parts[0].trim(), Money.parse(parts[1]));    // Amount in dollars
+        }
+        throw new IllegalArgumentException("Not a payment code: " + text);
+    }
+
+
+    /**
+     * Returns the text to put in the QR code
+     * @return The encoded payment
+     */
+    public String encode() {
+        return requestId + SEPARATOR + amount.getCents() + SEPARATOR + amount.getCurrency();
+    }
+
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+}
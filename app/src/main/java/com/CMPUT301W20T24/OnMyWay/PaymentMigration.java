@@ -0,0 +1,106 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * One-time tool that rewrites the "paymentAmount" of older requests, stored in dollars as a
+ * string like "12.50", into the whole number of cents that pushRequestInfo() stores now. Amounts
+ * that can't be read are left alone and logged. Run it once from a debug build with
+ * new PaymentMigration().run(); running it again does nothing
+ */
+public class PaymentMigration {
+    private static final String TAG = "OMW/PaymentMigration";   // Use this tag for calling Log.d()
+
+    private FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private CollectionReference requests = db.collection("riderRequests");
+
+
+    /**
+     * Works out the new amount of every request that still has an amount in dollars
+     * @param legacyAmountByDocumentId The "paymentAmount" field of every request that has one, by document ID
+     * @return The amount to store for each document, by document ID. Unreadable amounts are left out
+     */
+    public static Map<String, Money> plan(Map<String, Object> legacyAmountByDocumentId) {
+        Map<String, Money> plan = new LinkedHashMap<>();
+
+        // Sorted so the same collection always gives the same plan
+        for (Map.Entry<String, Object> entry : new TreeMap<>(legacyAmountByDocumentId).entrySet()) {
+            Object amount = entry.getValue();
+            if (!(amount instanceof String || amount instanceof Number)) {
+                continue;
+            }
+            try {
+                plan.put(entry.getKey(), Money.parse(amount.toString()));
+            }
+            catch (IllegalArgumentException e) {
+                Log.d(TAG, "Leaving unreadable amount " + amount + " in " + entry.getKey());
+            }
+        }
+
+        return plan;
+    }
+
+
+    /**
+     * Reads every request and rewrites the ones with an amount in dollars. The writes go through
+     * WritePipeline, so they are sent in batches
+     * @return A Task with the number of requests rewritten
+     */
+    public Task<Integer> run() {
+        return requests.get().continueWithTask(new Continuation<QuerySnapshot, Task<Integer>>() {
+            @Override
+            public Task<Integer> then(@NonNull Task<QuerySnapshot> task) throws Exception {
+                Map<String, Object> legacyAmounts = new HashMap<>();
+                for (DocumentSnapshot document : task.getResult().getDocuments()) {
+                    if (document.contains("paymentAmount")) {
+                        legacyAmounts.put(document.getId(), document.get("paymentAmount"));
+                    }
+                }
+
+                final Map<String, Money> plan = plan(legacyAmounts);
+                WritePipeline writePipeline = WritePipeline.getInstance();
+                List<Task<Void>> writes = new ArrayList<>();
+
+                for (Map.Entry<String, Money> entry : plan.entrySet()) {
+                    Map<String, Object> fields = new HashMap<>();
+                    fields.put("paymentCents", entry.getValue().getCents());
+                    fields.put("paymentCurrency", entry.getValue().getCurrency());
+                    fields.put("paymentAmount", FieldValue.delete());
+                    writes.add(writePipeline.update(requests.document(entry.getKey()), fields));
+                }
+                writePipeline.flush();
+
+                Log.d(TAG, "Rewriting the amounts of " + plan.size() + " requests");
+
+                return Tasks.whenAll(writes).continueWith(new Continuation<Void, Integer>() {
+                    @Override
+                    public Integer then(@NonNull Task<Void> writeTask) throws Exception {
+                        if (!writeTask.isSuccessful()) {
+                            throw writeTask.getException();
+                        }
+                        return plan.size();
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,159 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Groups pickup points that would overlap on the map into clusters. The map is cut into a grid of
+ * square cells CELL_SIZE map pixels wide, and every cell with points in it is one cluster. A grid
+ * is built the first time a zoom level is shown and then kept up to date as points are added,
+ * moved or removed, so zooming back to a level or applying a snapshot never regroups every point
+ */
+/// Google Maps Platform, Map and tile coordinates
+/// https://developers.google.com/maps/documentation/javascript/coordinates
+public class PickupClusterer {
+    public static final int CELL_SIZE = 96;                 // Width of a cell in map pixels at its zoom
+    public static final int MAX_CLUSTER_ZOOM = 17;          // Closer than this every point is shown on its own
+    private static final int TILE_SIZE = 256;               // Width of the world in map pixels at zoom 0
+    private static final double MAX_LATITUDE = 85.05112878; // Web Mercator stops here
+
+    /**
+     * The points in one cell of the grid
+     */
+    public static class Cluster {
+        public final long cellKey;
+        private final Set<String> members = new LinkedHashSet<>();
+        private double latitudeSum;
+        private double longitudeSum;
+
+        Cluster(long cellKey) {
+            this.cellKey = cellKey;
+        }
+
+        public int size() {
+            return members.size();
+        }
+
+        public Set<String> getMembers() {
+            return members;
+        }
+
+        // The average position of the points, where the cluster is drawn
+        public double getLatitude() {
+            return latitudeSum / members.size();
+        }
+
+        public double getLongitude() {
+            return longitudeSum / members.size();
+        }
+    }
+
+
+    private Map<String, double[]> points = new HashMap<>();                 // documentId to {latitude, longitude}
+    private Map<Integer, Map<Long, Cluster>> gridsByZoom = new HashMap<>();  // Only zoom levels shown so far
+
+
+    /**
+     * Adds a point, or moves it if it is already there. Every grid built so far is updated
+     * @param id The documentId of the request
+     * @param latitude The latitude of the pickup location
+     * @param longitude The longitude of the pickup location
+     */
+    public void put(String id, double latitude, double longitude) {
+        double[] point = points.get(id);
+        if (point != null) {
+            if (point[0] == latitude && point[1] == longitude) {
+                return;
+            }
+            remove(id);
+        }
+
+        points.put(id, new double[] {latitude, longitude});
+        for (Map.Entry<Integer, Map<Long, Cluster>> grid : gridsByZoom.entrySet()) {
+            addToGrid(grid.getValue(), grid.getKey(), id, latitude, longitude);
+        }
+    }
+
+
+    /**
+     * Removes a point. Every grid built so far is updated
+     * @param id The documentId of the request
+     */
+    public void remove(String id) {
+        double[] point = points.remove(id);
+        if (point == null) {
+            return;
+        }
+
+        for (Map.Entry<Integer, Map<Long, Cluster>> grid : gridsByZoom.entrySet()) {
+            long cellKey = cellKey(grid.getKey(), point[0], point[1]);
+            Cluster cluster = grid.getValue().get(cellKey);
+
+            cluster.members.remove(id);
+            cluster.latitudeSum -= point[0];
+            cluster.longitudeSum -= point[1];
+            if (cluster.members.isEmpty()) {
+                grid.getValue().remove(cellKey);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the clusters at a zoom level, building its grid if this is the first time it is needed
+     * @param zoom The zoom level of the camera. Fractions are rounded down
+     * @return The clusters, each with at least one point
+     */
+    public Collection<Cluster> clustersAt(float zoom) {
+        int level = Math.max(0, Math.min((int) Math.floor(zoom), MAX_CLUSTER_ZOOM + 1));
+        Map<Long, Cluster> grid = gridsByZoom.get(level);
+
+        if (grid == null) {
+            grid = new HashMap<>();
+            for (Map.Entry<String, double[]> point : points.entrySet()) {
+                addToGrid(grid, level, point.getKey(), point.getValue()[0], point.getValue()[1]);
+            }
+            gridsByZoom.put(level, grid);
+        }
+        return grid.values();
+    }
+
+
+    public int size() {
+        return points.size();
+    }
+
+
+    private static void addToGrid(Map<Long, Cluster> grid, int zoom, String id, double latitude, double longitude) {
+        long cellKey = cellKey(zoom, latitude, longitude);
+        Cluster cluster = grid.get(cellKey);
+
+        if (cluster == null) {
+            cluster = new Cluster(cellKey);
+            grid.put(cellKey, cluster);
+        }
+        cluster.members.add(id);
+        cluster.latitudeSum += latitude;
+        cluster.longitudeSum += longitude;
+    }
+
+
+    // The cell a point falls in at a zoom level. Past MAX_CLUSTER_ZOOM cells are one map pixel
+    // wide, so only points drawn on top of each other share one
+    private static long cellKey(int zoom, double latitude, double longitude) {
+        double worldSize = TILE_SIZE * Math.pow(2, zoom);
+        double cellSize = (zoom > MAX_CLUSTER_ZOOM) ? 1 : CELL_SIZE;
+
+        double sinLatitude = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        double x = (longitude + 180) / 360 * worldSize;
+        double y = (0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI)) * worldSize;
+
+        long cellX = (long) Math.floor(x / cellSize);
+        long cellY = (long) Math.floor(y / cellSize);
+        return (cellX << 32) ^ (cellY & 0xFFFFFFFFL);
+    }
+}
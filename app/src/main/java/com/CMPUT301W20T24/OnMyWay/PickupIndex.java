@@ -0,0 +1,270 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * The open requests of the driver map and what their markers should look like, kept off the main
+ * thread. Documents are decoded and grouped into clusters here, and render() returns only what
+ * changed since the last render as a Delta, which PickupMarkerManager applies on the main thread.
+ * Each request's tag is decoded in place, and the tags handed out in a Delta are copies, so the
+ * main thread never reads a tag this class is writing to. The open requests around the driver,
+ * which come from their own query and need not be on screen, are ranked by how soon the driver
+ * could pick them up, see RideMatcher. Not thread-safe: use it from one thread
+ */
+public class PickupIndex {
+    public static final int RANKED_RIDES = 10;             // How many of the best rides RideMatcher keeps
+    public static final double MATCH_RADIUS_KM = 22;       // Requests further away are never the best next ride
+
+    /**
+     * A cluster marker as it should be drawn, with the area of its requests to zoom in on when tapped
+     */
+    public static class ClusterView {
+        public final long cellKey;
+        public final int size;
+        public final double latitude;
+        public final double longitude;
+        public final double south;
+        public final double west;
+        public final double north;
+        public final double east;
+
+        ClusterView(long cellKey, int size, double latitude, double longitude, double south, double west, double north, double east) {
+            this.cellKey = cellKey;
+            this.size = size;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+        }
+    }
+
+
+    /**
+     * The marker changes since the last render
+     */
+    public static class Delta {
+        public final List<MarkerStoreObject> singles = new ArrayList<>();   // New or changed single requests
+        public final List<String> removedSingles = new ArrayList<>();       // By documentId
+        public final List<ClusterView> clusters = new ArrayList<>();         // New or changed clusters
+        public final List<Long> removedClusters = new ArrayList<>();         // By cellKey
+
+        public int size() {
+            return singles.size() + removedSingles.size() + clusters.size() + removedClusters.size();
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+    }
+
+
+    private Map<String, MarkerStoreObject> openRequests = new HashMap<>();   // By documentId
+    private PickupClusterer clusterer = new PickupClusterer();
+    private Set<String> changed = new HashSet<>();                             // Decoded since the last render
+    private RideMatcher matcher = new RideMatcher(RANKED_RIDES, MATCH_RADIUS_KM);
+    private Map<String, MarkerStoreObject> nearbyRequests = new HashMap<>();  // The requests matcher ranks, by documentId
+
+    // What the main thread was last told to show
+    private Set<String> shownSingles = new HashSet<>();
+    private Map<Long, ClusterView> shownClusters = new HashMap<>();
+
+
+    /**
+     * Adds or updates a request from its document. Requests that are malformed or no longer open
+     * are removed instead
+     * @param documentId The ID of the document
+     * @param data The fields of the document
+     */
+    public void upsert(String documentId, Map<String, Object> data) {
+        MarkerStoreObject tag = DocumentCodec.decodeMarker(documentId, data, openRequests.get(documentId));
+
+        if (tag == null || !"INCOMPLETE".equals(tag.getStatus())) {
+            remove(documentId);   // Only open requests get a pickup marker
+            return;
+        }
+
+        openRequests.put(documentId, tag);
+        clusterer.put(documentId, tag.getStartLatitude(), tag.getStartLongitude());
+        changed.add(documentId);
+    }
+
+
+    /**
+     * Removes a request. Its marker is removed by the next render()
+     * @param documentId The ID of the document
+     */
+    public void remove(String documentId) {
+        openRequests.remove(documentId);
+        clusterer.remove(documentId);
+        changed.remove(documentId);
+    }
+
+
+    /**
+     * Removes the requests whose pickup location is outside every given cell
+     * @param cells Geohash prefixes of the same length. An empty prefix keeps every request
+     */
+    public void retainCells(Set<String> cells) {
+        if (cells.contains("")) {
+            return;
+        }
+
+        int precision = cells.isEmpty() ? 1 : cells.iterator().next().length();
+        Iterator<MarkerStoreObject> requests = openRequests.values().iterator();
+        while (requests.hasNext()) {
+            MarkerStoreObject request = requests.next();
+            if (!cells.contains(Geohash.encode(request.getStartLatitude(), request.getStartLongitude(), precision))) {
+                clusterer.remove(request.getDocumentId());
+                changed.remove(request.getDocumentId());
+                requests.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Works out the markers changed since the last render for the clusters at a zoom level, and
+     * then assumes the main thread shows them
+     * @param zoomLevel The zoom level of the camera, rounded down
+     * @return The changes. Empty if nothing on the map has to change
+     */
+    public Delta render(int zoomLevel) {
+        Delta delta = new Delta();
+        Set<String> singles = new HashSet<>();
+        Set<Long> clusters = new HashSet<>();
+
+        for (PickupClusterer.Cluster cluster : clusterer.clustersAt(zoomLevel)) {
+            if (cluster.size() == 1) {
+                String documentId = cluster.getMembers().iterator().next();
+                singles.add(documentId);
+
+                if (!shownSingles.contains(documentId) || changed.contains(documentId)) {
+                    delta.singles.add(copyOf(documentId));
+                }
+            }
+            else {
+                clusters.add(cluster.cellKey);
+
+                ClusterView shown = shownClusters.get(cluster.cellKey);
+                if (shown == null || shown.size != cluster.size() || shown.latitude != cluster.getLatitude() || shown.longitude != cluster.getLongitude()) {
+                    ClusterView view = clusterView(cluster);
+                    delta.clusters.add(view);
+                    shownClusters.put(cluster.cellKey, view);
+                }
+            }
+        }
+
+        Iterator<String> shownSingleIds = shownSingles.iterator();
+        while (shownSingleIds.hasNext()) {
+            String documentId = shownSingleIds.next();
+            if (!singles.contains(documentId)) {
+                delta.removedSingles.add(documentId);
+                shownSingleIds.remove();
+            }
+        }
+        shownSingles.addAll(singles);
+
+        Iterator<Long> shownCellKeys = shownClusters.keySet().iterator();
+        while (shownCellKeys.hasNext()) {
+            Long cellKey = shownCellKeys.next();
+            if (!clusters.contains(cellKey)) {
+                delta.removedClusters.add(cellKey);
+                shownCellKeys.remove();
+            }
+        }
+
+        changed.clear();
+        return delta;
+    }
+
+
+    /**
+     * Finds the open request the driver could pick up soonest. The requests come from a query
+     * around the driver, see DBManager.nearbyOpenRequests(), so the answer doesn't depend on where
+     * the map is looking. They replace the requests given last time, and only the ones that
+     * changed are ranked again
+     * @param driverLatitude The latitude of the driver
+     * @param driverLongitude The longitude of the driver
+     * @param nearby The fields of the open requests within MATCH_RADIUS_KM of the driver, by documentId
+     * @return The match, or null if no open request is within MATCH_RADIUS_KM
+     */
+    public RideMatcher.Match bestNextRide(double driverLatitude, double driverLongitude, Map<String, Map<String, Object>> nearby) {
+        Iterator<String> documentIds = nearbyRequests.keySet().iterator();
+        while (documentIds.hasNext()) {
+            String documentId = documentIds.next();
+            if (!nearby.containsKey(documentId)) {
+                matcher.remove(documentId);     // Accepted, cancelled, or the driver moved away from it
+                documentIds.remove();
+            }
+        }
+
+        for (Map.Entry<String, Map<String, Object>> document : nearby.entrySet()) {
+            String documentId = document.getKey();
+            MarkerStoreObject tag = DocumentCodec.decodeMarker(documentId, document.getValue(), nearbyRequests.get(documentId));
+            if (tag == null || !"INCOMPLETE".equals(tag.getStatus())) {
+                matcher.remove(documentId);
+                nearbyRequests.remove(documentId);
+                continue;
+            }
+            nearbyRequests.put(documentId, tag);
+            matcher.upsert(documentId, tag.getStartLatitude(), tag.getStartLongitude());
+        }
+
+        matcher.setDriverPosition(driverLatitude, driverLongitude);
+        return matcher.bestNextRide();
+    }
+
+
+    /**
+     * Records how long the road route from the driver to a pickup takes, see RideMatcher
+     */
+    public void recordPickupTime(String documentId, double driverLatitude, double driverLongitude, long seconds) {
+        matcher.recordPickupTime(documentId, driverLatitude, driverLongitude, seconds);
+    }
+
+
+    /**
+     * Returns a copy of an open request's tag, safe to hand to the main thread
+     * @param documentId The ID of the document
+     * @return The copy, or null if the request isn't open on the map or near the driver
+     */
+    public MarkerStoreObject copyOf(String documentId) {
+        MarkerStoreObject request = openRequests.get(documentId);
+        if (request == null) {
+            request = nearbyRequests.get(documentId);
+        }
+        if (request == null) {
+            return null;
+        }
+        MarkerStoreObject copy = new MarkerStoreObject(documentId);
+        copy.copyFrom(request);
+        return copy;
+    }
+
+
+    public int size() {
+        return openRequests.size();
+    }
+
+
+    private ClusterView clusterView(PickupClusterer.Cluster cluster) {
+        double south = 90, west = 180, north = -90, east = -180;
+        for (String documentId : cluster.getMembers()) {
+            MarkerStoreObject request = openRequests.get(documentId);
+            south = Math.min(south, request.getStartLatitude());
+            north = Math.max(north, request.getStartLatitude());
+            west = Math.min(west, request.getStartLongitude());
+            east = Math.max(east, request.getStartLongitude());
+        }
+        return new ClusterView(cluster.cellKey, cluster.size(), cluster.getLatitude(), cluster.getLongitude(), south, west, north, east);
+    }
+}
@@ -0,0 +1,374 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+
+/**
+ * Keeps the pickup markers on the driver map in sync with the open requests in Firestore.
+ * Snapshots are decoded, clustered and compared with what is on the map by a PickupIndex on
+ * SnapshotExecutor's thread, and only the resulting marker changes are posted to the main thread.
+ * Markers are indexed by documentId, so each snapshot only adds, moves or removes the markers
+ * whose documents actually changed, and each marker's MarkerStoreObject tag is updated in place.
+ * Requests close enough to overlap at the current zoom are drawn as one cluster marker with a
+ * count, which zooms in on its requests when tapped. See PickupClusterer. Single requests show
+ * their rounded price above the pin. Every icon comes from MarkerIcons, so none is drawn per marker.
+ * The open requests around the driver are also ranked by pickup time, so the driver can ask for
+ * the best next ride wherever the map is looking
+ */
+public class PickupMarkerManager {
+    private static final String TAG = "OMW/PickupMarkerMana...";   // Use this tag for calling Log.d()
+    private static final int CLUSTER_PADDING_DP = 64;              // Space around a cluster's requests after tapping it
+    private static final long SLOW_DELTA_MILLIS = 8;               // Half a frame. Applying a delta slower than this is logged
+
+    private Context context;
+    private GoogleMap map;
+    private int pinDrawable;
+    private int markerColor;
+    private float density;
+
+    private Executor executor = SnapshotExecutor.get();
+    private Handler mainHandler = new Handler(Looper.getMainLooper());
+    private PickupIndex index = new PickupIndex();     // Only touched on executor
+    private volatile int zoomLevel;                      // Written on the main thread, read on executor
+
+    // Only touched on the main thread
+    private HashMap<String, Marker> markerIndex = new HashMap<>();     // Markers of single requests
+    private HashMap<Long, Marker> clusterMarkers = new HashMap<>();    // Markers of clusters, by cell
+    private String focusedDocumentId;       // The request the driver is looking at, if any
+    private boolean focusedRemoved;         // Whether its marker is only kept because it is focused
+
+
+    /**
+     * Constructor for PickupMarkerManager. Call this on the main thread
+     * @param context Used to load and draw the marker icons
+     * @param map The map to draw pickup markers on
+     * @param pinDrawable The pin drawn under the price of every pickup marker
+     * @param markerColor The color of price bubbles and cluster markers
+     */
+    public PickupMarkerManager(Context context, GoogleMap map, int pinDrawable, int markerColor) {
+        this.context = context;
+        this.map = map;
+        this.pinDrawable = pinDrawable;
+        this.markerColor = markerColor;
+        this.density = context.getResources().getDisplayMetrics().density;
+        this.zoomLevel = (int) Math.floor(map.getCameraPosition().zoom);
+    }
+
+
+    /**
+     * Returns the executor snapshot listeners feeding applyChanges() should be registered with
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+
+    /**
+     * Applies only the changed documents of a snapshot. The first snapshot from a listener reports
+     * every document as ADDED, so no separate initial load is needed. Call this on getExecutor()
+     * @param snapshot A QuerySnapshot from a listener on the riderRequests collection
+     */
+    public void applyChanges(QuerySnapshot snapshot) {
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            DocumentSnapshot document = change.getDocument();
+
+            switch (change.getType()) {
+                case ADDED:
+                case MODIFIED:
+                    index.upsert(document.getId(), document.getData());
+                    break;
+                case REMOVED:
+                    index.remove(document.getId());
+                    break;
+            }
+        }
+        post(index.render(zoomLevel));
+    }
+
+
+    /**
+     * Forgets the requests whose pickup location is outside every given cell. Used when the map
+     * stops listening to some cells, since Firestore doesn't report their documents as removed.
+     * Requests in cells that are still listened to keep their markers and tags
+     * @param cells Geohash prefixes of the same length. An empty prefix keeps every request
+     */
+    public void retainCells(final Set<String> cells) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                index.retainCells(cells);
+                post(index.render(zoomLevel));
+            }
+        });
+    }
+
+
+    /**
+     * Regroups the markers if the camera moved to another zoom level. Call this when the camera stops
+     */
+    public void onCameraIdle() {
+        int level = (int) Math.floor(map.getCameraPosition().zoom);
+        if (level != zoomLevel) {
+            zoomLevel = level;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    post(index.render(zoomLevel));
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Finds the open request the driver could pick up soonest, among the requests near the driver
+     * @param latitude The latitude of the driver
+     * @param longitude The longitude of the driver
+     * @param nearbyRequests The open requests within PickupIndex.MATCH_RADIUS_KM of the driver,
+     *                       from DBManager.nearbyOpenRequests()
+     * @param listener Called on the main thread with the request
+     */
+    public void findBestNextRide(final double latitude, final double longitude, List<DocumentSnapshot> nearbyRequests, final BestNextRideListener listener) {
+        final Map<String, Map<String, Object>> nearby = new HashMap<>();
+        for (DocumentSnapshot document : nearbyRequests) {
+            nearby.put(document.getId(), document.getData());
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final RideMatcher.Match match = index.bestNextRide(latitude, longitude, nearby);
+                final MarkerStoreObject request = (match == null) ? null : index.copyOf(match.documentId);
+
+                // Posted after any delta still waiting, so a single request already has its marker
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onBestNextRide(request, (match == null) ? 0 : match.pickupSeconds);
+                    }
+                });
+            }
+        });
+    }
+
+
+    /**
+     * Records how long the road route from the driver to a pickup takes, so rides are ranked with
+     * it instead of an estimate. Can be called from any thread
+     * @param documentId The ID of the request being picked up
+     * @param route The route from the driver to the pickup location
+     * @param driverLatitude The latitude the route starts at
+     * @param driverLongitude The longitude the route starts at
+     */
+    public void recordPickupRoute(final String documentId, final RouteChoice route, final double driverLatitude, final double driverLongitude) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                index.recordPickupTime(documentId, driverLatitude, driverLongitude, route.getDurationSeconds());
+            }
+        });
+    }
+
+
+    /**
+     * Returns the marker of a single request
+     * @param documentId The ID of the request's document
+     * @return The marker, or null if the request is drawn inside a cluster or isn't on the map
+     */
+    public Marker getMarker(String documentId) {
+        return markerIndex.get(documentId);
+    }
+
+
+    /**
+     * Zooms in on the requests of a cluster marker
+     * @param marker The marker that was tapped
+     * @return True if it was a cluster marker, false if it was some other marker
+     */
+    public boolean onClusterClick(Marker marker) {
+        if (!(marker.getTag() instanceof PickupIndex.ClusterView)) {
+            return false;
+        }
+
+        PickupIndex.ClusterView cluster = (PickupIndex.ClusterView) marker.getTag();
+        if (cluster.south == cluster.north && cluster.west == cluster.east) {
+            // Every request is at the same spot, so there is no area to fit. Zoom in past clustering
+            map.animateCamera(CameraUpdateFactory.newLatLngZoom(new LatLng(cluster.north, cluster.east), PickupClusterer.MAX_CLUSTER_ZOOM + 1));
+        }
+        else {
+            LatLngBounds area = new LatLngBounds(new LatLng(cluster.south, cluster.west), new LatLng(cluster.north, cluster.east));
+            map.animateCamera(CameraUpdateFactory.newLatLngBounds(area, (int) (CLUSTER_PADDING_DP * density)));
+        }
+        return true;
+    }
+
+
+    /**
+     * Hides every pickup marker except the given one, while the driver is viewing a request.
+     * Markers added while a request is focused stay hidden until clearFocus() is called
+     * @param marker The pickup marker the driver tapped
+     */
+    public void focus(Marker marker) {
+        focusedDocumentId = ((MarkerStoreObject) marker.getTag()).getDocumentId();
+        focusedRemoved = false;
+
+        for (Marker otherMarker : markerIndex.values()) {
+            otherMarker.setVisible(otherMarker.equals(marker));
+        }
+        for (Marker clusterMarker : clusterMarkers.values()) {
+            clusterMarker.setVisible(false);
+        }
+    }
+
+
+    /**
+     * Shows every open pickup marker again, and drops the previously focused marker if its
+     * request was accepted, completed or cancelled in the meantime
+     */
+    public void clearFocus() {
+        if (focusedRemoved) {
+            Marker marker = markerIndex.remove(focusedDocumentId);
+            if (marker != null) {
+                marker.remove();
+            }
+        }
+        focusedDocumentId = null;
+        focusedRemoved = false;
+
+        for (Marker marker : markerIndex.values()) {
+            marker.setVisible(true);
+        }
+        for (Marker clusterMarker : clusterMarkers.values()) {
+            clusterMarker.setVisible(true);
+        }
+    }
+
+
+    // Hand a delta to the main thread, unless there is nothing to change. Runs on executor
+    private void post(final PickupIndex.Delta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                applyDelta(delta);
+            }
+        });
+    }
+
+
+    // Bring the markers in line with a delta. The time this takes is the main thread's share of
+    // a snapshot, so slow ones are logged
+    private void applyDelta(PickupIndex.Delta delta) {
+        long start = SystemClock.elapsedRealtime();
+
+        for (String documentId : delta.removedSingles) {
+            if (documentId.equals(focusedDocumentId)) {
+                focusedRemoved = true;  // The focused marker stays until clearFocus()
+                continue;
+            }
+            Marker marker = markerIndex.remove(documentId);
+            if (marker != null) {
+                marker.remove();
+            }
+        }
+        for (Long cellKey : delta.removedClusters) {
+            Marker marker = clusterMarkers.remove(cellKey);
+            if (marker != null) {
+                marker.remove();
+            }
+        }
+        for (MarkerStoreObject request : delta.singles) {
+            showSingle(request);
+        }
+        for (PickupIndex.ClusterView cluster : delta.clusters) {
+            showCluster(cluster);
+        }
+
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        if (elapsed > SLOW_DELTA_MILLIS) {
+            Log.d(TAG, "Applying " + delta.size() + " marker changes took " + elapsed + "ms");
+        }
+    }
+
+
+    // Add a single request's marker, or update the marker and its tag in place
+    private void showSingle(MarkerStoreObject request) {
+        String documentId = request.getDocumentId();
+        Marker marker = markerIndex.get(documentId);
+
+        if (marker == null) {
+            marker = map.addMarker(
+                    new MarkerOptions()
+                            .position(new LatLng(request.getStartLatitude(), request.getStartLongitude()))
+                            .title("Pickup")
+                            .icon(MarkerIcons.pricePin(context, pinDrawable, markerColor, request.getPaymentCents()))
+                            .anchor(0.5f, 1f)
+                            .visible(focusedDocumentId == null)
+            );
+            marker.setTag(request);
+            markerIndex.put(documentId, marker);
+            return;
+        }
+
+        if (documentId.equals(focusedDocumentId)) {
+            focusedRemoved = false;
+        }
+
+        MarkerStoreObject tag = (MarkerStoreObject) marker.getTag();
+        if (tag.getStartLatitude() != request.getStartLatitude() || tag.getStartLongitude() != request.getStartLongitude()) {
+            marker.setPosition(new LatLng(request.getStartLatitude(), request.getStartLongitude()));
+        }
+        if (!MarkerIcons.priceLabel(tag.getPaymentCents()).equals(MarkerIcons.priceLabel(request.getPaymentCents()))) {
+            marker.setIcon(MarkerIcons.pricePin(context, pinDrawable, markerColor, request.getPaymentCents()));
+        }
+        tag.copyFrom(request);
+    }
+
+
+    private void showCluster(PickupIndex.ClusterView cluster) {
+        Marker marker = clusterMarkers.get(cluster.cellKey);
+
+        if (marker == null) {
+            marker = map.addMarker(
+                    new MarkerOptions()
+                            .position(new LatLng(cluster.latitude, cluster.longitude))
+                            .icon(MarkerIcons.cluster(context, markerColor, cluster.size))
+                            .anchor(0.5f, 0.5f)
+                            .visible(focusedDocumentId == null)
+            );
+            clusterMarkers.put(cluster.cellKey, marker);
+        }
+        else {
+            PickupIndex.ClusterView shown = (PickupIndex.ClusterView) marker.getTag();
+            if (!MarkerIcons.clusterLabel(shown.size).equals(MarkerIcons.clusterLabel(cluster.size))) {
+                marker.setIcon(MarkerIcons.cluster(context, markerColor, cluster.size));
+            }
+            if (shown.latitude != cluster.latitude || shown.longitude != cluster.longitude) {
+                marker.setPosition(new LatLng(cluster.latitude, cluster.longitude));
+            }
+        }
+        marker.setTag(cluster);
+    }
+}
@@ -0,0 +1,33 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.model.LatLng;
+
+
+/**
+ * A named place and where it is, offered to the rider as a search suggestion
+ */
+public class Place {
+    private final String name;
+    private final LatLng location;
+
+
+    /**
+     * Constructor for Place
+     * @param name The name of the place, as it is shown to the rider
+     * @param location Where the place is
+     */
+    public Place(String name, LatLng location) {
+        this.name = name;
+        this.location = location;
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+
+    public LatLng getLocation() {
+        return location;
+    }
+}
@@ -0,0 +1,127 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Suggests places as the rider types in a search bar. Keystrokes are debounced, so only a pause
+ * in typing looks anything up. Places the rider has used before are suggested from a PlaceTrie
+ * straight away, and the geocoder is only asked for more when those don't fill the list and
+ * enough has been typed. Each keystroke cancels the lookup started for an older one, so stale
+ * suggestions are never shown. Use it on the main thread
+ */
+public class PlaceAutocomplete {
+    public static final int MAX_SUGGESTIONS = 5;
+    private static final long DEBOUNCE_MILLIS = 300;     // A pause in typing this long looks the text up
+    private static final int MIN_LOOKUP_LENGTH = 3;     // Shorter prefixes only use the history
+
+    private PlaceTrie history;
+    private GeocodingService geocodingService;
+    private Handler handler = new Handler(Looper.getMainLooper());
+
+    private Runnable pending;                     // Waiting for the rider to stop typing
+    private GeocodingService.Lookup lookup;       // Running in the geocoder
+
+
+    /**
+     * Constructor for PlaceAutocomplete
+     * @param history The places the rider has used before. Can be shared by several search bars
+     * @param geocodingService Suggests places that aren't in the history
+     */
+    public PlaceAutocomplete(PlaceTrie history, GeocodingService geocodingService) {
+        this.history = history;
+        this.geocodingService = geocodingService;
+    }
+
+
+    /**
+     * Suggests places for the text of a search bar once the rider stops typing. Call this from
+     * onQueryTextChange(). The listener may be called twice, first with the places from the
+     * history and then with the geocoder's places added
+     * @param query The text of the search bar
+     * @param listener Called with the places to suggest
+     */
+    public void onQueryTextChange(final String query, final PlaceSuggestionsListener listener) {
+        cancel();
+        pending = new Runnable() {
+            @Override
+            public void run() {
+                pending = null;
+                suggest(query, listener);
+            }
+        };
+        handler.postDelayed(pending, DEBOUNCE_MILLIS);
+    }
+
+
+    /**
+     * Drops suggestions that haven't been shown yet. Call this when the query is submitted
+     */
+    public void cancel() {
+        if (pending != null) {
+            handler.removeCallbacks(pending);
+            pending = null;
+        }
+        if (lookup != null) {
+            lookup.cancel();
+            lookup = null;
+        }
+    }
+
+
+    /**
+     * Records that the rider picked a suggestion, so it ranks higher next time and its pin is
+     * placed without looking it up again
+     * @param place The suggestion that was picked
+     */
+    public void choose(Place place) {
+        cancel();
+        history.add(place);
+        geocodingService.remember(place);
+    }
+
+
+    private void suggest(String query, final PlaceSuggestionsListener listener) {
+        final List<Place> places = history.suggest(query, MAX_SUGGESTIONS);
+        listener.onSuggestions(places);
+
+        if (places.size() >= MAX_SUGGESTIONS || GeocodingService.normalize(query).length() < MIN_LOOKUP_LENGTH) {
+            return;
+        }
+
+        lookup = geocodingService.suggest(query, MAX_SUGGESTIONS, new PlaceSuggestionsListener() {
+            @Override
+            public void onSuggestions(List<Place> found) {
+                lookup = null;
+                if (!found.isEmpty()) {
+                    listener.onSuggestions(merge(places, found));
+                }
+            }
+        });
+    }
+
+
+    // The history's places, then the geocoder's places that aren't already suggested
+    private static List<Place> merge(List<Place> known, List<Place> found) {
+        List<Place> merged = new ArrayList<>(known);
+        Set<String> names = new HashSet<>();
+        for (Place place : known) {
+            names.add(GeocodingService.normalize(place.getName()));
+        }
+        for (Place place : found) {
+            if (merged.size() >= MAX_SUGGESTIONS) {
+                break;
+            }
+            if (names.add(GeocodingService.normalize(place.getName()))) {
+                merged.add(place);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,15 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.List;
+
+
+/**
+ * Implement this interface and onSuggestions will be called, on the main thread, with the places
+ * suggested for what the rider has typed. It is not called for lookups that were cancelled
+ */
+/// StackOverflow post by Rupesh
+/// Author: https://stackoverflow.com/users/787438/rupesh
+/// Answer: https://stackoverflow.com/questions/994840/how-to-create-our-own-listener-interface-in-android
+public interface PlaceSuggestionsListener {
+    void onSuggestions(List<Place> places);     // Empty if nothing matches
+}
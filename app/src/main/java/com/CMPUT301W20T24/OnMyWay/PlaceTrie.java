@@ -0,0 +1,122 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+/**
+ * The places a rider has used before, searchable by prefix. Names are keyed the way
+ * GeocodingService normalizes queries, so "West Edmonton Mall" and "west edmonton mall." are one
+ * place. Each place counts how often it was added, and suggest() returns the most used places
+ * first. Not thread-safe: use it from one thread
+ */
+public class PlaceTrie {
+
+    private static class Node {
+        private Map<Character, Node> children = new HashMap<>();
+        private Place place;        // Set if a place ends here
+        private int uses;
+    }
+
+
+    // Most used first, then alphabetical
+    private static final Comparator<Node> RANKING = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            if (a.uses != b.uses) {
+                return Integer.compare(b.uses, a.uses);
+            }
+            return a.place.getName().compareToIgnoreCase(b.place.getName());
+        }
+    };
+
+    private Node root = new Node();
+    private int size;
+
+
+    /**
+     * Adds a place, or counts one more use of it. A place added again takes the newer name and location
+     * @param place The place
+     */
+    public void add(Place place) {
+        String key = GeocodingService.normalize(place.getName());
+        if (key.isEmpty()) {
+            return;
+        }
+
+        Node node = root;
+        for (int i = 0; i < key.length(); ++i) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                child = new Node();
+                node.children.put(key.charAt(i), child);
+            }
+            node = child;
+        }
+
+        if (node.place == null) {
+            ++size;
+        }
+        node.place = place;
+        ++node.uses;
+    }
+
+
+    /**
+     * Returns the most used places whose names start with a prefix
+     * @param prefix What the rider has typed so far. An empty prefix suggests nothing
+     * @param limit The most places to return
+     * @return The places, most used first
+     */
+    public List<Place> suggest(String prefix, int limit) {
+        String key = GeocodingService.normalize(prefix);
+        Node node = key.isEmpty() ? null : root;
+        for (int i = 0; node != null && i < key.length(); ++i) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        // Keep the best places seen so far in a min-heap of at most limit entries, whose head is
+        // the worst of them, so the whole subtree is never sorted
+        PriorityQueue<Node> best = new PriorityQueue<>(limit, Collections.reverseOrder(RANKING));
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.pop();
+            if (current.place != null) {
+                best.add(current);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            for (Node child : current.children.values()) {
+                stack.push(child);
+            }
+        }
+
+        List<Node> ranked = new ArrayList<>(best);
+        Collections.sort(ranked, RANKING);
+        List<Place> places = new ArrayList<>(ranked.size());
+        for (Node rankedNode : ranked) {
+            places.add(rankedNode.place);
+        }
+        return places;
+    }
+
+
+    /**
+     * Returns the number of different places
+     */
+    public int size() {
+        return size;
+    }
+}
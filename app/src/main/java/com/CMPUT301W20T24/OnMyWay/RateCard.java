@@ -0,0 +1,62 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+
+/**
+ * The prices a FareEngine quotes rides with. All amounts are in cents of the default currency.
+ * A ride costs the base fare plus its distance and time, multiplied by the surge, and never less
+ * than the minimum fare
+ */
+public final class RateCard {
+    // The prices the app has always charged: a dollar per kilometre, and at least $7.99
+    public static final RateCard DEFAULT = new RateCard(0, 100, 0, 799, 3.0);
+
+    private final long baseCents;
+    private final long perKmCents;
+    private final long perMinuteCents;
+    private final long minimumCents;
+    private final double maxSurge;
+
+
+    /**
+     * Constructor for RateCard
+     * @param baseCents Charged for every ride
+     * @param perKmCents Charged for each kilometre driven
+     * @param perMinuteCents Charged for each minute driven
+     * @param minimumCents The least a ride costs, after surge
+     * @param maxSurge The highest surge multiplier this card allows. At least 1
+     */
+    public RateCard(long baseCents, long perKmCents, long perMinuteCents, long minimumCents, double maxSurge) {
+        if (baseCents < 0 || perKmCents < 0 || perMinuteCents < 0 || minimumCents < 0) {
+            throw new IllegalArgumentException("A rate card can't have negative prices");
+        }
+        if (!(maxSurge >= 1)) {
+            throw new IllegalArgumentException("maxSurge must be at least 1");
+        }
+        this.baseCents = baseCents;
+        this.perKmCents = perKmCents;
+        this.perMinuteCents = perMinuteCents;
+        this.minimumCents = minimumCents;
+        this.maxSurge = maxSurge;
+    }
+
+
+    public long getBaseCents() {
+        return baseCents;
+    }
+
+    public long getPerKmCents() {
+        return perKmCents;
+    }
+
+    public long getPerMinuteCents() {
+        return perMinuteCents;
+    }
+
+    public long getMinimumCents() {
+        return minimumCents;
+    }
+
+    public double getMaxSurge() {
+        return maxSurge;
+    }
+}
@@ -22,7 +22,7 @@ public class Request {
     private double endLongitude;
     private double endLatitude;
 
-    private String paymentAmount;
+    private Money paymentAmount;
     private String status;
 
     private RequestTime timeCreated;  // The time when the request was created by a rider
@@ -39,7 +39,7 @@ public class Request {
      * @param endLocationName The human-friendly name of the end location for a request
      * @param endLongitude The longitude of the end location, stored as a long
      * @param endLatitude The latitude of the end location, stored as a long
-     * @param paymentAmount The amount that will be charged for this request, stored as a string
+     * @param paymentAmount The amount that will be charged for this request
      * @param status The status of the current request. A string that is one of:
      *               "INCOMPLETE, "ACTIVE", "COMPLETE", OR "CANCELLED"
      * @param timeCreated The time a request was first created, given as a long representing
@@ -58,7 +58,7 @@ public class Request {
             String endLocationName,
             double endLongitude,
             double endLatitude,
-            String paymentAmount,
+            Money paymentAmount,
             String status,
             Long timeCreated,
             Long timeAccepted
@@ -99,6 +99,16 @@ public class Request {
         return requestId;
     }
 
+    // Used by DocumentCodec so a request read back from Firestore keeps the ID it was stored with
+    void setRequestId(String requestId) {
+        if (requestId == null) {
+            throw new IllegalArgumentException("requestId can't be null");
+        }
+        else {
+            this.requestId = requestId;
+        }
+    }
+
     public String getRiderId() {
         return riderId;
     }
@@ -197,12 +207,17 @@ public class Request {
         this.endLatitude = endLatitude;
     }
 
-    public String getPaymentAmount() {
+    public Money getPaymentAmount() {
         return paymentAmount;
     }
 
-    public void setPaymentAmount(String paymentAmount) {
-        this.paymentAmount = paymentAmount;
+    public void setPaymentAmount(Money paymentAmount) {
+        if (paymentAmount == null) {
+            throw new IllegalArgumentException("paymentAmount can't be null");
+        }
+        else {
+            this.paymentAmount = paymentAmount;
+        }
     }
 
     public String getStatus() {
@@ -294,4 +309,18 @@ public class Request {
             return getTimeAccepted().getTimeElapsed();
         }
     }
+
+    /**
+     * Writes the elapsed time since a ride was accepted into a char array, without allocating
+     * @param buffer Where to write. Must hold at least RequestTime.ELAPSED_BUFFER_SIZE chars
+     * @return The number of chars written, starting at index 0
+     */
+    public int writeElapsedTime(char[] buffer) {
+        if (timeAccepted == null) {
+            throw new NullPointerException("The ride hasn't been accepted yet. You can't call writeElapsedTime() on it");
+        }
+        else {
+            return getTimeAccepted().writeTimeElapsed(RequestTime.nowSeconds(), buffer);
+        }
+    }
 }
@@ -0,0 +1,12 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+
+/**
+ * Implement this interface and onRequestAccepted will be called with the outcome of DBManager.acceptRequest()
+ */
+/// StackOverflow post by Rupesh
+/// Author: https://stackoverflow.com/users/787438/rupesh
+/// Answer: https://stackoverflow.com/questions/994840/how-to-create-our-own-listener-interface-in-android
+public interface RequestAcceptedListener {
+    void onRequestAccepted(AcceptResult result);
+}
@@ -0,0 +1,220 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * One-time tool that moves requests created with add() (under a random document ID) to documents
+ * keyed by their requestID field, which is how pushRequestInfo() stores them now. If a request was
+ * stored more than once, the copy furthest along (COMPLETE, then ACTIVE, then CANCELLED, then
+ * INCOMPLETE) is written under the requestID and the others are deleted. Requests written before
+ * the geohash field existed get one, so the driver map's per-cell queries find them.
+ * Run it once from a debug build with new RequestMigration().run(); running it again does nothing
+ */
+public class RequestMigration {
+    private static final String TAG = "OMW/RequestMigration";   // Use this tag for calling Log.d()
+    private static final int MAX_BATCH_WRITES = 500;             // Firestore's limit per batch
+
+    private FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private CollectionReference requests = db.collection("riderRequests");
+
+
+    /**
+     * What the migration will do
+     */
+    public static class Plan {
+        public final Map<String, String> moves = new LinkedHashMap<>();   // Old document ID to requestID
+        public final List<String> deletions = new ArrayList<>();          // Document IDs to delete
+    }
+
+
+    /**
+     * Works out which documents to move and which to delete
+     * @param requestIdByDocumentId The requestID field of every request document, by document ID
+     * @param statusByDocumentId The status field of every request document, by document ID
+     * @return The moves and deletions. A moved document is not also listed in deletions, and a
+     *         document under its requestID is never deleted, only overwritten by a move
+     */
+    public static Plan plan(Map<String, String> requestIdByDocumentId, Map<String, String> statusByDocumentId) {
+        // Sorted so the same collection always gives the same plan
+        Map<String, List<String>> documentsByRequestId = new TreeMap<>();
+        for (String documentId : new TreeMap<>(requestIdByDocumentId).keySet()) {
+            String requestId = requestIdByDocumentId.get(documentId);
+            if (requestId == null || requestId.isEmpty()) {
+                continue;   // Nothing to key it by, so leave it where it is
+            }
+            if (!documentsByRequestId.containsKey(requestId)) {
+                documentsByRequestId.put(requestId, new ArrayList<String>());
+            }
+            documentsByRequestId.get(requestId).add(documentId);
+        }
+
+        Plan plan = new Plan();
+
+        for (Map.Entry<String, List<String>> entry : documentsByRequestId.entrySet()) {
+            String requestId = entry.getKey();
+            List<String> documentIds = entry.getValue();
+
+            // The copy furthest along wins. Among equals, one already under its requestId is kept
+            // where it is, so nothing has to move
+            String keep = null;
+            for (String documentId : documentIds) {
+                int rank = statusRank(statusByDocumentId.get(documentId));
+                int keepRank = (keep == null) ? -1 : statusRank(statusByDocumentId.get(keep));
+                if (rank > keepRank || (rank == keepRank && documentId.equals(requestId))) {
+                    keep = documentId;
+                }
+            }
+            if (!keep.equals(requestId)) {
+                plan.moves.put(keep, requestId);    // Overwrites a copy under the requestId that is behind
+            }
+
+            for (String documentId : documentIds) {
+                if (!documentId.equals(keep) && !documentId.equals(requestId)) {
+                    plan.deletions.add(documentId);
+                }
+            }
+        }
+
+        return plan;
+    }
+
+
+    /**
+     * Works out the geohash field a request document is missing
+     * @param data The fields of the document
+     * @return The geohash of its pickup location, or null if it already has one or has no pickup location
+     */
+    public static String missingGeohash(Map<String, Object> data) {
+        if (data.get("geohash") != null) {
+            return null;
+        }
+        Object latitude = data.get("startLatitude");
+        Object longitude = data.get("startLongitude");
+        if (!(latitude instanceof Number) || !(longitude instanceof Number)) {
+            return null;
+        }
+        return Geohash.encode(((Number) latitude).doubleValue(), ((Number) longitude).doubleValue(), Geohash.STORED_PRECISION);
+    }
+
+
+    /**
+     * Reads every request and applies the plan in batches. Each move is written in the same batch
+     * as the deletion of its old document, so a request is never lost or left in two places
+     * @return A Task with the number of documents moved
+     */
+    public Task<Integer> run() {
+        return requests.get().continueWithTask(new Continuation<QuerySnapshot, Task<Integer>>() {
+            @Override
+            public Task<Integer> then(@NonNull Task<QuerySnapshot> task) throws Exception {
+                Map<String, DocumentSnapshot> documents = new HashMap<>();
+                Map<String, String> requestIds = new HashMap<>();
+                Map<String, String> statuses = new HashMap<>();
+
+                for (DocumentSnapshot document : task.getResult().getDocuments()) {
+                    documents.put(document.getId(), document);
+                    requestIds.put(document.getId(), document.getString("requestID"));
+                    statuses.put(document.getId(), document.getString("status"));
+                }
+
+                final Plan plan = plan(requestIds, statuses);
+                List<Task<Void>> commits = new ArrayList<>();
+                WriteBatch batch = db.batch();
+                int writes = 0;
+
+                for (Map.Entry<String, String> move : plan.moves.entrySet()) {
+                    if (writes + 2 > MAX_BATCH_WRITES) {
+                        commits.add(batch.commit());
+                        batch = db.batch();
+                        writes = 0;
+                    }
+                    Map<String, Object> data = new HashMap<>(documents.get(move.getKey()).getData());
+                    String geohash = missingGeohash(data);
+                    if (geohash != null) {
+                        data.put("geohash", geohash);
+                    }
+                    batch.set(requests.document(move.getValue()), data);
+                    batch.delete(requests.document(move.getKey()));
+                    writes += 2;
+                }
+
+                // Documents that stay where they are only need the geohash they are missing
+                int backfills = 0;
+                for (DocumentSnapshot document : documents.values()) {
+                    String geohash = missingGeohash(document.getData());
+                    if (geohash == null || plan.moves.containsKey(document.getId()) || plan.deletions.contains(document.getId())) {
+                        continue;
+                    }
+                    if (writes + 1 > MAX_BATCH_WRITES) {
+                        commits.add(batch.commit());
+                        batch = db.batch();
+                        writes = 0;
+                    }
+                    batch.update(requests.document(document.getId()), "geohash", geohash);
+                    writes += 1;
+                    ++backfills;
+                }
+
+                for (String documentId : plan.deletions) {
+                    if (writes + 1 > MAX_BATCH_WRITES) {
+                        commits.add(batch.commit());
+                        batch = db.batch();
+                        writes = 0;
+                    }
+                    batch.delete(requests.document(documentId));
+                    writes += 1;
+                }
+
+                if (writes > 0) {
+                    commits.add(batch.commit());
+                }
+
+                Log.d(TAG, "Moving " + plan.moves.size() + " requests, deleting " + plan.deletions.size() + " duplicates and adding "
+                        + backfills + " geohashes");
+
+                return Tasks.whenAll(commits).continueWith(new Continuation<Void, Integer>() {
+                    @Override
+                    public Integer then(@NonNull Task<Void> commitTask) throws Exception {
+                        if (!commitTask.isSuccessful()) {
+                            throw commitTask.getException();
+                        }
+                        return plan.moves.size();
+                    }
+                });
+            }
+        });
+    }
+
+
+    // How far along a request is. Higher numbers win when a request was stored more than once
+    private static int statusRank(String status) {
+        if ("COMPLETE".equals(status)) {
+            return 3;
+        }
+        else if ("ACTIVE".equals(status)) {
+            return 2;
+        }
+        else if ("CANCELLED".equals(status)) {
+            return 1;
+        }
+        return 0;
+    }
+}
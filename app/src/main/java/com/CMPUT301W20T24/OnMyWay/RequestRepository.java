@@ -0,0 +1,361 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * Sits between the activities and DBManager so the app keeps working with a poor connection.
+ * Reads are answered from LocalStore right away and refreshed from Firestore after. Writes are
+ * saved to LocalStore and to an outbox, which is sent to Firestore in order, retrying with backoff
+ * until each write succeeds. The writes waiting in the outbox are sent together, so WritePipeline
+ * can put them in one batch. The outbox is kept across app restarts
+ */
+public class RequestRepository {
+    private static final String TAG = "OMW/RequestRepository";   // Use this tag for calling Log.d()
+    private static final int HISTORY_LIMIT = 50;                   // Most past rides shown in driver history
+    private static final int MAX_WRITES_IN_FLIGHT = 50;            // Most outbox writes sent at once
+    private static RequestRepository instance;
+
+    private LocalStore store;
+    private DBManager dbManager = new DBManager();
+    private RetryPolicy retryPolicy = new RetryPolicy(2000, 5 * 60 * 1000);
+    private Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Every LocalStore call and all outbox state is confined to this thread
+    private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private int writesInFlight;
+    private ScheduledFuture<?> scheduledDrain;
+
+    private Runnable drainOutbox = new Runnable() {
+        @Override
+        public void run() {
+            drainOutbox();
+        }
+    };
+
+
+    /**
+     * Returns the repository shared by the whole app, creating it the first time
+     * @param context Any context. Only the application context is kept
+     * @return The RequestRepository
+     */
+    public static synchronized RequestRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new RequestRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+
+    private RequestRepository(Context context) {
+        store = new LocalStore(context);
+
+        // Retry everything right away when a connection comes back, instead of waiting out the backoff
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            connectivityManager.registerNetworkCallback(
+                    new NetworkRequest.Builder().addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET).build(),
+                    new ConnectivityManager.NetworkCallback() {
+                        @Override
+                        public void onAvailable(Network network) {
+                            executor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    store.resetOutboxBackoff();
+                                    drainOutbox();
+                                }
+                            });
+                        }
+                    }
+            );
+        }
+
+        executor.execute(drainOutbox);  // Send anything left over from the last time the app ran
+    }
+
+
+    /**
+     * Saves a user's profile on the phone and queues it for Firestore
+     * @param user The User to save
+     */
+    public void pushUser(User user) {
+        enqueue("users", user.getUserId(), LocalStore.OPERATION_SET, DBManager.userToMap(user));
+    }
+
+
+    /**
+     * Saves a new request on the phone and queues it for Firestore. The request is stored under
+     * its requestId, so sending it twice after a retry doesn't create two documents
+     * @param request The Request to save
+     */
+    public void pushRequest(Request request) {
+        enqueue("riderRequests", request.getRequestId(), LocalStore.OPERATION_SET, DBManager.requestToMap(request));
+    }
+
+
+    /**
+     * Marks a request as cancelled on the phone and queues the change for Firestore
+     * @param requestId The requestID of the request
+     */
+    public void cancelRequest(String requestId) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("status", "CANCELLED");
+        enqueue("riderRequests", requestId, LocalStore.OPERATION_UPDATE, fields);
+    }
+
+
+    /**
+     * Marks a request as completed on the phone and queues the change for Firestore
+     * @param documentId The document ID of the request
+     * @param driverId The userId of the driver
+     */
+    public void completeRequest(String documentId, String driverId) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("driverId", driverId);
+        fields.put("status", "COMPLETE");
+        enqueue("riderRequests", documentId, LocalStore.OPERATION_UPDATE, fields);
+    }
+
+
+    /**
+     * Loads the completed rides of a driver. The listener is called on the main thread with the
+     * rides saved on the phone, then again once Firestore answers
+     * @param driverId The userId of the driver
+     * @param listener Called with the rides, newest first
+     */
+    public void loadDriverHistory(final String driverId, final DriverHistoryLoadedListener listener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliverHistory(driverId, listener);
+
+                dbManager.completedRequestsForDriver(driverId).get().addOnSuccessListener(executor, new OnSuccessListener<QuerySnapshot>() {
+                    @Override
+                    public void onSuccess(QuerySnapshot queryDocumentSnapshots) {
+                        for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
+                            saveUnlessPending("riderRequests", document.getId(), document.getData());
+                        }
+                        deliverHistory(driverId, listener);
+                    }
+                });
+            }
+        });
+    }
+
+
+    /**
+     * Loads the profile of the logged in user into UserRequestState. If it is saved on the phone,
+     * the listener is called right away; otherwise it is called once Firestore answers. Either way
+     * the saved copy is refreshed from Firestore
+     * @param listener Called once, on the main thread, after the current user is set
+     */
+    public void loadCurrentUser(final CurrentUserInfoPulledListener listener) {
+        final String userId = dbManager.getFirebaseUser().getUid();
+        final boolean[] delivered = {false};   // Only touched on the main thread
+
+        final UserInfoPulledListener deliver = new UserInfoPulledListener() {
+            @Override
+            public void onUserInfoPulled(User user) {
+                if (delivered[0]) {
+                    return;
+                }
+                delivered[0] = true;
+                UserRequestState.setCurrentUser(user);
+                listener.onCurrentUserInfoPulled();
+            }
+        };
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final User cachedUser = userFromMap(userId, store.getDocument("users", userId));
+
+                if (cachedUser != null) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            deliver.onUserInfoPulled(cachedUser);
+                        }
+                    });
+                }
+            }
+        });
+
+        DBManager userFetcher = new DBManager();
+        userFetcher.setUserInfoPulledListener(new UserInfoPulledListener() {
+            @Override
+            public void onUserInfoPulled(final User user) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        saveUnlessPending("users", user.getUserId(), DBManager.userToMap(user));
+                    }
+                });
+                deliver.onUserInfoPulled(user);
+            }
+        });
+        userFetcher.fetchUserInfo(userId);
+    }
+
+
+    // Save a write and queue it, from any thread
+    private void enqueue(final String collection, final String documentId, final String operation, final Map<String, Object> data) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                saveAndQueue(collection, documentId, operation, data);
+            }
+        });
+    }
+
+
+    // Apply a write to the local copy, add it to the outbox and start sending. Runs on executor
+    private void saveAndQueue(String collection, String documentId, String operation, Map<String, Object> data) {
+        if (operation.equals(LocalStore.OPERATION_SET)) {
+            store.putDocument(collection, documentId, data);
+        }
+        else {
+            store.mergeDocument(collection, documentId, data);
+        }
+        store.addToOutbox(collection, documentId, operation, data);
+        drainOutbox();
+    }
+
+
+    // Save a document from Firestore, unless we have a write for it that hasn't been sent yet,
+    // which would be undone by the older copy. Runs on executor
+    private void saveUnlessPending(String collection, String documentId, Map<String, Object> data) {
+        if (data != null && !store.hasPendingWrites(collection, documentId)) {
+            store.putDocument(collection, documentId, data);
+        }
+    }
+
+
+    // Send every write in the outbox that is due, oldest first, unless some are already being sent.
+    // They are sent together so they go out in one batch. Runs on executor
+    private void drainOutbox() {
+        if (writesInFlight > 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (LocalStore.OutboxEntry entry : store.peekOutbox(MAX_WRITES_IN_FLIGHT)) {
+            long wait = entry.nextAttemptAt - now;
+            if (wait > 0) {
+                // Writes after this one wait too, so they are never sent before it
+                if (writesInFlight == 0) {
+                    scheduleDrain(wait);
+                }
+                break;
+            }
+            send(entry);
+        }
+    }
+
+
+    // Send one write from the outbox and deal with its result. Runs on executor
+    private void send(final LocalStore.OutboxEntry entry) {
+        writesInFlight++;
+        Task<Void> write = entry.operation.equals(LocalStore.OPERATION_SET)
+                ? dbManager.setDocument(entry.collection, entry.documentId, entry.data)
+                : dbManager.updateDocument(entry.collection, entry.documentId, entry.data);
+
+        write.addOnCompleteListener(executor, new OnCompleteListener<Void>() {
+            @Override
+            public void onComplete(@NonNull Task<Void> task) {
+                writesInFlight--;
+
+                if (task.isSuccessful()) {
+                    store.removeFromOutbox(entry.id);
+                }
+                else if (isPermanentFailure(task.getException())) {
+                    // Retrying would fail the same way and hold up every write behind this one
+                    Log.w(TAG, "Dropping write to " + entry.collection + "/" + entry.documentId, task.getException());
+                    store.removeFromOutbox(entry.id);
+                }
+                else {
+                    int attempts = entry.attempts + 1;
+                    long delay = retryPolicy.delayMillis(attempts);
+                    Log.d(TAG, "Write to " + entry.documentId + " failed, retrying in " + delay + "ms");
+                    store.rescheduleOutbox(entry.id, attempts, System.currentTimeMillis() + delay);
+                }
+
+                drainOutbox();
+            }
+        });
+    }
+
+
+    private void scheduleDrain(long delayMillis) {
+        if (scheduledDrain != null) {
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrain = executor.schedule(drainOutbox, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+
+    private static boolean isPermanentFailure(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            return false;
+        }
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case NOT_FOUND:
+            case PERMISSION_DENIED:
+            case INVALID_ARGUMENT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+
+    // Read the saved history and hand it to the listener on the main thread. Runs on executor
+    private void deliverHistory(String driverId, final DriverHistoryLoadedListener listener) {
+        final ArrayList<DriverHistoryInfo> history = new ArrayList<>();
+
+        for (Map<String, Object> request : store.completedRequestsForDriver(driverId, HISTORY_LIMIT)) {
+            DriverHistoryInfo row = DocumentCodec.decodeHistory((String) request.get("requestID"), request);
+            if (row != null) {
+                history.add(row);
+            }
+        }
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onDriverHistoryLoaded(history);
+            }
+        });
+    }
+
+
+    // Build a User from its saved fields, or return null if it isn't saved or is incomplete
+    private static User userFromMap(String userId, Map<String, Object> data) {
+        return (data == null) ? null : DocumentCodec.decodeUser(userId, data);
+    }
+}
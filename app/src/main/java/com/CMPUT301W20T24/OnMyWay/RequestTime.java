@@ -1,19 +1,34 @@
 package com.CMPUT301W20T24.OnMyWay;
 
+import java.text.DateFormatSymbols;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 
 
 /**
- * A class that stores a date/time for a request
+ * A class that stores a date/time for a request. It only holds a long, so it is cheap to create.
+ * The formatters are shared by every RequestTime
  * @author John
  */
 public class RequestTime {
-    private long secondsSinceEpoch; // Stores the time in this format
-    private Calendar calendar = Calendar.getInstance();
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("MMMM d', 'y' at 'h':'m", Locale.US);
-    private SimpleDateFormat timeFormat = new SimpleDateFormat("a", Locale.US);
+    /**
+     * The size of a char array big enough for writeTimeElapsed(), whatever the time
+     */
+    public static final int ELAPSED_BUFFER_SIZE = 24;
+
+    // SimpleDateFormat isn't thread safe, so every thread gets its own, made the first time it's needed
+    private static final ThreadLocal<SimpleDateFormat> dateFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            DateFormatSymbols symbols = DateFormatSymbols.getInstance(Locale.US);
+            symbols.setAmPmStrings(new String[] {"am", "pm"});
+            return new SimpleDateFormat("MMMM d', 'y' at 'h':'mma", symbols);
+        }
+    };
+
+    private final long secondsSinceEpoch; // Stores the time in this format
 
 
     /**
@@ -21,7 +36,7 @@ public class RequestTime {
      * @author John
      */
     public RequestTime() {
-        this.secondsSinceEpoch = calendar.getTime().getTime() / 1000;
+        this.secondsSinceEpoch = nowSeconds();
     }
 
 
@@ -51,7 +66,6 @@ public class RequestTime {
     }
 
 
-
     /**
      * Returns the difference between the current time and the time stored in the RequestTime object.
      * The result is a string formatted like like "mm:ss"
@@ -59,11 +73,38 @@ public class RequestTime {
      * @author John
      */
     public String getTimeElapsed() {
-        long timeDiffSeconds = new RequestTime().toLong() - secondsSinceEpoch;
-        long minutes = timeDiffSeconds / 60;
-        long seconds = timeDiffSeconds % 60;
+        char[] buffer = new char[ELAPSED_BUFFER_SIZE];
+        return new String(buffer, 0, writeTimeElapsed(nowSeconds(), buffer));
+    }
+
 
-        return minutes + ":" + String.format(Locale.US, "%02d", seconds);
+    /**
+     * Writes the time elapsed between this time and the given time into a char array, formatted
+     * like "mm:ss". Nothing is allocated, so a timer can call this every tick with the same array
+     * and pass it to TextView.setText(char[], int, int)
+     * @param nowSeconds The current time, in seconds since Jan 1, 1970
+     * @param buffer Where to write. Must hold at least ELAPSED_BUFFER_SIZE chars
+     * @return The number of chars written, starting at index 0
+     */
+    public int writeTimeElapsed(long nowSeconds, char[] buffer) {
+        long timeDiffSeconds = Math.max(0, nowSeconds - secondsSinceEpoch);   // The clock may have been set back
+        long minutes = timeDiffSeconds / 60;
+        int seconds = (int) (timeDiffSeconds % 60);
+
+        // Write the minutes backwards from the end of the array, then move them to the front
+        int start = buffer.length;
+        do {
+            buffer[--start] = (char) ('0' + minutes % 10);
+            minutes /= 10;
+        } while (minutes > 0);
+
+        int length = buffer.length - start;
+        System.arraycopy(buffer, start, buffer, 0, length);
+
+        buffer[length++] = ':';
+        buffer[length++] = (char) ('0' + seconds / 10);
+        buffer[length++] = (char) ('0' + seconds % 10);
+        return length;
     }
 
 
@@ -72,11 +113,28 @@ public class RequestTime {
      * @return The date/time as a String, in the format, "April 1, 2020 at 3:46pm"
      * @author John
      */
-    //
     public String getDate() {
-        calendar.setTimeInMillis(secondsSinceEpoch * 1000);
+        return getDate(TimeZone.getDefault());
+    }
+
+
+    /**
+     * Returns the stored date/time as a String in a given time zone, formatted like "April 1, 2020 at 3:46pm"
+     * @param zone The time zone to show the date/time in
+     * @return The date/time as a String, in the format, "April 1, 2020 at 3:46pm"
+     */
+    public String getDate(TimeZone zone) {
+        SimpleDateFormat format = dateFormat.get();
+        format.setTimeZone(zone);   // Set every time, since the formatter is shared and the phone's zone can change
+        return format.format(new Date(secondsSinceEpoch * 1000));
+    }
+
 
-        return dateFormat.format(calendar.getTime().getTime()) +
-                timeFormat.format(calendar.getTime().getTime()).toLowerCase();
+    /**
+     * Returns the current time in the format RequestTime stores
+     * @return The number of seconds since Jan 1, 1970
+     */
+    public static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
     }
 }
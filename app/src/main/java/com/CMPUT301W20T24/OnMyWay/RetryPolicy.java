@@ -0,0 +1,60 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.Random;
+
+
+/**
+ * Exponential backoff with jitter for retrying failed writes. The delay doubles with every
+ * failed attempt up to a maximum, and a random part spreads out retries from many phones that
+ * lost their connection at the same time
+ */
+/// AWS Architecture Blog, Exponential Backoff And Jitter
+/// https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/
+public class RetryPolicy {
+    private long baseDelayMillis;
+    private long maxDelayMillis;
+    private Random random = new Random();
+
+
+    /**
+     * Constructor for RetryPolicy
+     * @param baseDelayMillis The delay after the first failure
+     * @param maxDelayMillis The longest delay between two attempts
+     */
+    public RetryPolicy(long baseDelayMillis, long maxDelayMillis) {
+        if (baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Delays must be positive and max must be at least base");
+        }
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+
+    /**
+     * Returns how long to wait before the next attempt
+     * @param failedAttempts The number of attempts that have failed so far, at least 1
+     * @return A delay in milliseconds between half and all of the exponential delay
+     */
+    public long delayMillis(int failedAttempts) {
+        return delayMillis(failedAttempts, random.nextDouble());
+    }
+
+
+    /**
+     * Returns how long to wait before the next attempt, with the random part given
+     * @param failedAttempts The number of attempts that have failed so far, at least 1
+     * @param jitter A number between 0 and 1
+     * @return A delay in milliseconds between half and all of the exponential delay
+     */
+    public long delayMillis(int failedAttempts, double jitter) {
+        long delay = maxDelayMillis;
+
+        // Shifting by 62 or more would overflow, and would be past the maximum anyway
+        int exponent = Math.max(failedAttempts, 1) - 1;
+        if (exponent < 62 && baseDelayMillis <= (maxDelayMillis >> exponent)) {
+            delay = baseDelayMillis << exponent;
+        }
+
+        return delay / 2 + (long) (jitter * (delay / 2));
+    }
+}
@@ -0,0 +1,302 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+/**
+ * Ranks open requests by how soon a driver could pick them up. Pickup points are indexed by
+ * geohash cell, so only the requests in the cells around the driver are scored. A request's
+ * pickup time comes from the road route when one was recorded with recordPickupTime(), and is
+ * otherwise estimated from the straight-line distance. Recorded times are kept in a RouteCache
+ * keyed by the snapped driver and pickup positions, so small moves of the driver reuse them.
+ * Estimates are cheap, so they are worked out again each time instead of taking cache space.
+ * The best K requests are kept in a heap that is updated as requests arrive, change or leave,
+ * and only rebuilt when the driver moves or one of the best K gets worse or leaves.
+ * Not thread-safe: use it from one thread
+ */
+public class RideMatcher {
+    private static final int INDEX_PRECISION = 5;         // Cells about 5km wide
+    private static final double ROAD_FACTOR = 1.4;        // City roads are about this much longer than a straight line
+    private static final double KM_PER_HOUR = 30;         // Average city speed for estimates
+    private static final int CACHED_TIMES = 512;
+    private static final long TIME_TTL_MILLIS = 10 * 60 * 1000;   // Traffic changes, so measured times expire
+
+    private final int k;
+    private final double radiusKm;
+
+    private Map<String, Pickup> pickups = new HashMap<>();                 // By documentId
+    private TreeMap<String, Set<String>> cells = new TreeMap<>();          // documentIds by geohash cell
+    private RouteCache<Long> pickupTimes = new RouteCache<>(CACHED_TIMES, TIME_TTL_MILLIS);
+
+    private boolean hasDriver;
+    private double driverLatitude;
+    private double driverLongitude;
+    private String driverKey;       // The driver's position snapped to the RouteCache grid
+    private PriorityQueue<Match> best = new PriorityQueue<>(11, Collections.reverseOrder(Match.SOONEST_FIRST));
+    private Map<String, Match> inBest = new HashMap<>();     // The matches in best, by documentId
+
+
+    /**
+     * A request a driver could pick up, and how long getting to it would take
+     */
+    public static class Match {
+        // Soonest pickup first. Ties go to the documentId so the order is stable
+        static final Comparator<Match> SOONEST_FIRST = new Comparator<Match>() {
+            @Override
+            public int compare(Match a, Match b) {
+                if (a.pickupSeconds != b.pickupSeconds) {
+                    return Long.compare(a.pickupSeconds, b.pickupSeconds);
+                }
+                return a.documentId.compareTo(b.documentId);
+            }
+        };
+
+        public final String documentId;
+        public final long pickupSeconds;
+
+        Match(String documentId, long pickupSeconds) {
+            this.documentId = documentId;
+            this.pickupSeconds = pickupSeconds;
+        }
+    }
+
+
+    private static class Pickup {
+        final double latitude;
+        final double longitude;
+        final String cell;
+
+        Pickup(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.cell = Geohash.encode(latitude, longitude, INDEX_PRECISION);
+        }
+    }
+
+
+    /**
+     * Constructor for RideMatcher
+     * @param k How many of the best requests to keep ranked
+     * @param radiusKm Requests further than this from the driver are never matched
+     */
+    public RideMatcher(int k, double radiusKm) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        this.k = k;
+        this.radiusKm = radiusKm;
+    }
+
+
+    /**
+     * Adds an open request, or moves its pickup location
+     * @param documentId The ID of the request's document
+     * @param latitude The latitude of the pickup location
+     * @param longitude The longitude of the pickup location
+     */
+    public void upsert(String documentId, double latitude, double longitude) {
+        Pickup old = pickups.get(documentId);
+        if (old != null && old.latitude == latitude && old.longitude == longitude) {
+            return;
+        }
+        if (old != null) {
+            unindex(documentId, old);
+        }
+
+        Pickup pickup = new Pickup(latitude, longitude);
+        pickups.put(documentId, pickup);
+        Set<String> cell = cells.get(pickup.cell);
+        if (cell == null) {
+            cell = new HashSet<>();
+            cells.put(pickup.cell, cell);
+        }
+        cell.add(documentId);
+
+        if (hasDriver) {
+            rescore(documentId, pickup);
+        }
+    }
+
+
+    /**
+     * Removes a request that was accepted, cancelled or left the area being listened to
+     * @param documentId The ID of the request's document
+     */
+    public void remove(String documentId) {
+        Pickup old = pickups.remove(documentId);
+        if (old == null) {
+            return;
+        }
+        unindex(documentId, old);
+        if (inBest.containsKey(documentId)) {
+            rebuild();      // The next best request has to be found among the rest
+        }
+    }
+
+
+    /**
+     * Moves the driver. The ranking is only rebuilt if the driver left their RouteCache grid cell
+     * @param latitude The latitude of the driver
+     * @param longitude The longitude of the driver
+     */
+    public void setDriverPosition(double latitude, double longitude) {
+        String key = RouteCache.key(latitude, longitude, 0, 0);
+        driverLatitude = latitude;
+        driverLongitude = longitude;
+        if (hasDriver && key.equals(driverKey)) {
+            return;
+        }
+        hasDriver = true;
+        driverKey = key;
+        rebuild();
+    }
+
+
+    /**
+     * Records how long the road route from the driver to a request's pickup location takes, so it
+     * is used instead of the estimate. The request is ranked again right away
+     * @param documentId The ID of the request's document
+     * @param driverLatitude The latitude the route starts at
+     * @param driverLongitude The longitude the route starts at
+     * @param seconds How long the route takes, from the Directions API
+     */
+    public void recordPickupTime(String documentId, double driverLatitude, double driverLongitude, long seconds) {
+        Pickup pickup = pickups.get(documentId);
+        if (pickup == null) {
+            return;     // It was accepted or cancelled while the route was being fetched
+        }
+
+        pickupTimes.put(RouteCache.key(driverLatitude, driverLongitude, pickup.latitude, pickup.longitude), seconds);
+        if (hasDriver) {
+            rescore(documentId, pickup);
+        }
+    }
+
+
+    /**
+     * Returns the request the driver could pick up soonest
+     * @return The best match, or null if no request is in range or the driver's position is unknown
+     */
+    public Match bestNextRide() {
+        Match soonest = null;
+        for (Match match : best) {
+            if (soonest == null || Match.SOONEST_FIRST.compare(match, soonest) < 0) {
+                soonest = match;
+            }
+        }
+        return soonest;
+    }
+
+
+    /**
+     * Returns the best K requests
+     * @return The matches, soonest pickup first
+     */
+    public List<Match> topMatches() {
+        List<Match> matches = new ArrayList<>(best);
+        Collections.sort(matches, Match.SOONEST_FIRST);
+        return matches;
+    }
+
+
+    public int size() {
+        return pickups.size();
+    }
+
+
+    // Score every request in the cells around the driver and keep the best K
+    private void rebuild() {
+        best.clear();
+        inBest.clear();
+        if (!hasDriver) {
+            return;
+        }
+
+        for (String documentId : candidates()) {
+            offer(score(documentId, pickups.get(documentId)));
+        }
+    }
+
+
+    // The requests in the index cells that cover the search circle. The covering cells can be
+    // longer or shorter than the index's, so shorter ones take every index cell they contain
+    private Set<String> candidates() {
+        Set<String> candidates = new LinkedHashSet<>();
+        for (String cover : Geohash.coveringCells(driverLatitude, driverLongitude, radiusKm)) {
+            String prefix = cover.length() > INDEX_PRECISION ? cover.substring(0, INDEX_PRECISION) : cover;
+            for (Set<String> cell : cells.subMap(prefix, true, Geohash.rangeEnd(prefix), true).values()) {
+                candidates.addAll(cell);
+            }
+        }
+        return candidates;
+    }
+
+
+    // Score one request again after it or its pickup time changed
+    private void rescore(String documentId, Pickup pickup) {
+        Match match = score(documentId, pickup);
+        Match previous = inBest.get(documentId);
+        if (previous != null && (match == null || match.pickupSeconds > previous.pickupSeconds)) {
+            rebuild();      // It got worse, so a request outside the best K may now beat it
+        }
+        else {
+            if (previous != null) {
+                best.remove(previous);
+                inBest.remove(documentId);
+            }
+            offer(match);
+        }
+    }
+
+
+    // Put a match in the best K if it beats the worst of them
+    private void offer(Match match) {
+        if (match == null) {
+            return;
+        }
+        if (best.size() >= k) {
+            if (Match.SOONEST_FIRST.compare(match, best.peek()) >= 0) {
+                return;
+            }
+            inBest.remove(best.poll().documentId);
+        }
+        best.add(match);
+        inBest.put(match.documentId, match);
+    }
+
+
+    // How long the driver would take to reach a pickup, or null if it is out of range
+    private Match score(String documentId, Pickup pickup) {
+        double km = Utilities.haversineKm(driverLatitude, driverLongitude, pickup.latitude, pickup.longitude);
+        if (km > radiusKm) {
+            return null;
+        }
+
+        Long seconds = pickupTimes.get(RouteCache.key(driverLatitude, driverLongitude, pickup.latitude, pickup.longitude));
+        if (seconds == null) {
+            seconds = Math.round(km * ROAD_FACTOR / KM_PER_HOUR * 3600);
+        }
+        return new Match(documentId, seconds);
+    }
+
+
+    private void unindex(String documentId, Pickup pickup) {
+        Set<String> cell = cells.get(pickup.cell);
+        if (cell != null) {
+            cell.remove(documentId);
+            if (cell.isEmpty()) {
+                cells.remove(pickup.cell);
+            }
+        }
+    }
+}
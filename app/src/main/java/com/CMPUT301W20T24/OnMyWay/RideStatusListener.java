@@ -0,0 +1,15 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+
+/**
+ * Implement this interface to be told when the ride a RideStatusWatcher follows moves on. Each
+ * method is called at most once per ride
+ */
+/// StackOverflow post by Rupesh
+/// Author: https://stackoverflow.com/users/787438/rupesh
+/// Answer: https://stackoverflow.com/questions/994840/how-to-create-our-own-listener-interface-in-android
+public interface RideStatusListener {
+    void onDriverAccepted(String driverId);
+    void onRideCompleted();
+    void onRideCancelled();
+}
@@ -0,0 +1,87 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+
+/**
+ * Follows the status of one ride from its request document and runs each change of status once.
+ * A ride only moves forward, INCOMPLETE to ACTIVE to COMPLETE or CANCELLED, so snapshots that
+ * repeat the current status or an earlier one are ignored. So are snapshots of writes this phone
+ * hasn't sent yet, which only echo what it already knows
+ */
+public class RideStatusWatcher {
+    private static final String[] ORDER = {"INCOMPLETE", "ACTIVE", "COMPLETE"};
+
+    private RideStatusListener listener;
+    private String status = "INCOMPLETE";
+
+
+    /**
+     * Constructor for RideStatusWatcher. The ride starts out INCOMPLETE
+     * @param listener Called once for each change of status
+     */
+    public RideStatusWatcher(RideStatusListener listener) {
+        this.listener = listener;
+    }
+
+
+    /**
+     * Applies a snapshot of the request document
+     * @param status The status field of the document
+     * @param driverId The driverId field of the document
+     * @param hasPendingWrites Whether the snapshot includes writes not yet sent to Firestore
+     * @return True if the status changed and the listener was called
+     */
+    public boolean onSnapshot(String status, String driverId, boolean hasPendingWrites) {
+        if (hasPendingWrites || status == null || rank(status) <= rank(this.status)) {
+            return false;
+        }
+
+        // A ride that was accepted and completed between two snapshots still shows the driver first
+        if (status.equals("COMPLETE") && this.status.equals("INCOMPLETE") && driverId != null) {
+            listener.onDriverAccepted(driverId);
+        }
+
+        this.status = status;
+        switch (status) {
+            case "ACTIVE":
+                listener.onDriverAccepted(driverId);
+                break;
+            case "COMPLETE":
+                listener.onRideCompleted();
+                break;
+            case "CANCELLED":
+                listener.onRideCancelled();
+                break;
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the last status applied
+     */
+    public String getStatus() {
+        return status;
+    }
+
+
+    /**
+     * Returns whether the ride is over, after which every snapshot is ignored
+     */
+    public boolean isFinished() {
+        return status.equals("COMPLETE") || status.equals("CANCELLED");
+    }
+
+
+    // How far along a status is. CANCELLED ends a ride like COMPLETE does. Unknown statuses never win
+    private static int rank(String status) {
+        if (status.equals("CANCELLED")) {
+            return ORDER.length - 1;
+        }
+        for (int i = 0; i < ORDER.length; ++i) {
+            if (ORDER[i].equals(status)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,11 +1,9 @@
 package com.CMPUT301W20T24.OnMyWay;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.location.Address;
-import android.location.Geocoder;
+import android.database.MatrixCursor;
 import android.location.Location;
 import android.os.Bundle;
 import android.os.Handler;
@@ -17,6 +15,7 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.SearchView;
+import android.widget.SimpleCursorAdapter;
 import android.widget.Toast;
 
 import androidx.annotation.Nullable;
@@ -30,30 +29,23 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
-import com.google.android.gms.maps.model.BitmapDescriptor;
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.maps.model.Polyline;
-import com.google.android.gms.maps.model.PolylineOptions;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
-import com.google.maps.DirectionsApiRequest;
-import com.google.maps.GeoApiContext;
-import com.google.maps.internal.PolylineEncoding;
-import com.google.maps.model.DirectionsResult;
-import com.google.maps.model.DirectionsRoute;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+
 /**
  * A map for the user to create a request and specify the start and end locations.
  * @author Manpreet Grewal and Payas Singh
@@ -62,7 +54,7 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
     private static final String TAG = "OMW/RiderMapActivity";   // Use for calling Log.d()
 
     private GoogleMap mMap;
-    private GeoApiContext geoApi;
+    private DirectionsService directionsService;
     private FusedLocationProviderClient fusedLocationProviderClient;
     private Location currentLocation;
 
@@ -86,14 +78,17 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
 
     private Marker startLocationMarker;
     private Marker endLocationMarker;
-    private Polyline polyline_rider;
-    private Polyline polyline_destination;
+    private RouteOverlay route;
 
 
     // Instantiating DBManager()
     private DBManager dbManager;
 
-    private String newCost;
+    private Money newCost;
+    private FareEngine fareEngine = new FareEngine(RateCard.DEFAULT);
+    private DemandDensityService demandDensity;     // The surge where a ride starts
+    private Money routeFare;        // The fare along the route shown, null until the directions arrive
+    private int routeRequest;       // Counts directions requests, so results that arrive after a newer one are dropped
 
     private Request riderRequest;
 
@@ -104,6 +99,44 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
     private String requestID;
     private String driverUsername;
     private ListenerRegistration driverListener;
+    private RideStatusWatcher rideStatusWatcher;
+
+    private GeocodingService geocodingService;
+    private GeocodingService.Lookup startLookup;
+    private GeocodingService.Lookup endLookup;
+
+    private PlaceTrie placeHistory = new PlaceTrie();     // Shared by both search bars
+    private PlaceAutocomplete startAutocomplete;
+    private PlaceAutocomplete endAutocomplete;
+
+    // Runs each change of the ride's status once, updating the screen in place
+    private RideStatusListener rideStatusListener = new RideStatusListener() {
+        @Override
+        public void onDriverAccepted(String driverId) {
+            driverUsername = driverId;
+            if (showRiderSeesDriverAccept == null) {
+                showRiderSeesDriverAccept = ShowRiderSeesDriverAccept.newInstance();
+            }
+            if (!showRiderSeesDriverAccept.isAdded()) {
+                showRiderSeesDriverAccept.show(fm);
+            }
+        }
+
+        @Override
+        public void onRideCompleted() {
+            showQRFragment = ShowQRFragment.newInstance(null);
+            showQRFragment.show(fm);
+            endRide();
+            showSearchLocationLayout();
+        }
+
+        @Override
+        public void onRideCancelled() {
+            Toast.makeText(getApplicationContext(), "Your request has been cancelled", Toast.LENGTH_SHORT).show();
+            endRide();
+            showSearchLocationLayout();
+        }
+    };
 
     // Disable back button for this activity
     @Override
@@ -120,6 +153,23 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
 
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        DirectionsService.release();
+        demandDensity.stop();
+
+        // Lookups still running would otherwise call back into a destroyed activity
+        if (startLookup != null) {
+            startLookup.cancel();
+        }
+        if (endLookup != null) {
+            endLookup.cancel();
+        }
+        startAutocomplete.cancel();
+        endAutocomplete.cancel();
+    }
+
     // LONGPRESS BACK BUTTON TO GO BACK TO THE MAIN ACTIVITY FOR TESTING. REMOVE THIS LATER
 
     /// StackOverflow post by oemel09
@@ -146,7 +196,11 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_rider_map);
         dbManager = new DBManager();
+        demandDensity = new DemandDensityService(dbManager);
+        demandDensity.start();
         fm = getSupportFragmentManager();
+        directionsService = DirectionsService.acquire(getString(R.string.google_api_key));
+        geocodingService = GeocodingService.getInstance(this);
 
         //SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager().findFragmentById(R.id.riderMap);
         //mapFragment.getMapAsync(this);
@@ -159,6 +213,12 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
         startSearchView = findViewById(R.id.startLocationSearchBar);
         endSearchView = findViewById(R.id.endLocationSearchBar);
 
+        startAutocomplete = new PlaceAutocomplete(placeHistory, geocodingService);
+        endAutocomplete = new PlaceAutocomplete(placeHistory, geocodingService);
+        final PlaceSuggestionsListener startSuggestions = attachSuggestions(startSearchView, startAutocomplete);
+        final PlaceSuggestionsListener endSuggestions = attachSuggestions(endSearchView, endAutocomplete);
+        loadPlaceHistory();
+
         searchLocationLayout = findViewById(R.id.searchLocationLayout);
         editPriceLayout = findViewById(R.id.editPriceLayout);
         viewCurrentRequestLayout = findViewById(R.id.viewCurrentRequestLayout);
@@ -177,111 +237,31 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
             @Override
             public void onClick(View view) {
                 if (startLocationMarker == null || endLocationMarker == null) {
-                    if (setStartPinPosition() && setEndPinPosition()) { }
-                    else {
-                        Log.d(TAG, "Request invalid. START or END location not specified/stored.");
-                        Toast.makeText(getApplicationContext(), "Request Invalid. You must specify a start and end location!", Toast.LENGTH_SHORT).show();
-
-                        return;
-                    }
-                }
-
-
-                // Calculate a price estimate for the ride depending on the start and end locations
-                String priceEstimate = calculatePrice(
-                        startLocationMarker.getPosition().longitude,
-                        startLocationMarker.getPosition().latitude,
-                        endLocationMarker.getPosition().longitude,
-                        endLocationMarker.getPosition().latitude
-                );
-
-                // Once "request ride" button is clicked, create a dialogue which shows the
-                // rider a price estimate and gives the rider the option to edit the price
-                showEditPriceLayout();
-
-
-
-                EditText editPrice = findViewById(R.id.editPrice);
-                editPrice.setText(priceEstimate);
-
-                // When "confirm" button is clicked, store the new price in firestore
-                final Button confirmButton = findViewById(R.id.confirmPriceButton);
-                confirmButton.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View v) {
-                        newCost = editPrice.getText().toString();
-
-                        float newCostFloat = Float.parseFloat(newCost);
-                        float priceEstimateFloat = Float.parseFloat(priceEstimate);
-                        if(newCostFloat<priceEstimateFloat){
-                            Toast.makeText(getApplicationContext(), "Please enter a value higher than your base price of $"+ priceEstimate, Toast.LENGTH_LONG).show();
+                    // Look up whichever pins are missing, then try again once the lookups finish
+                    placeMissingPins(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (startLocationMarker != null && endLocationMarker != null) {
+                                confirmRequest();
+                            }
+                            else {
+                                Log.d(TAG, "Request invalid. START or END location not specified/stored.");
+                                Toast.makeText(getApplicationContext(), "Request Invalid. You must specify a start and end location!", Toast.LENGTH_SHORT).show();
+                            }
                         }
-                        else {
-                            riderRequest = new Request(
-                                    UserRequestState.getCurrentUser().getUserId(),
-                                    null,
-                                    startLocationName,
-                                    startLocationMarker.getPosition().longitude,
-                                    startLocationMarker.getPosition().latitude,
-                                    endLocationName,
-                                    endLocationMarker.getPosition().longitude,
-                                    endLocationMarker.getPosition().latitude,
-                                    newCost,
-                                    "INCOMPLETE",
-                                    null,
-                                    null
-                            );
-
-                            UserRequestState.setCurrentRequest(riderRequest);
-                            UserRequestState.updateCurrentRequest();
-                            // dbManager.pushRequestInfo(riderRequest); // Potentially causing duplicates?
-
-                            // get the request id of the current request
-                            requestID = UserRequestState.getCurrentRequest().getRequestId();
-
-                            Toast.makeText(getApplicationContext(), "Woo! Your ride is confirmed", Toast.LENGTH_SHORT).show();
-
-                            showCurrentRequestLayout();
-
-                            /// https://www.youtube.com/watch?v=LfkhFCDnkS0&list=PLrnPJCHvNZuDrSqu-dKdDi3Q6nM-VUyxD&index=4
-                            driverListener = dbManager.getRequests().whereEqualTo("requestID", riderRequest.getRequestId()).addSnapshotListener(new EventListener<QuerySnapshot>() {
-                                @Override
-                                public void onEvent(@Nullable QuerySnapshot queryDocumentSnapshots, @Nullable FirebaseFirestoreException e) {
-                                    if(e != null){
-                                        Toast.makeText(getApplicationContext(),"Error with database update", Toast.LENGTH_SHORT).show();
-                                    }
-
-                                    else{
-                                        List<DocumentSnapshot> documentList = queryDocumentSnapshots.getDocuments();
-                                        for (DocumentSnapshot documentSnapshot : documentList){
-                                            if(documentSnapshot.getString("status").equals("COMPLETE")){
-                                                showQRFragment = ShowQRFragment.newInstance(null);
-                                                showQRFragment.show(fm);
-                                                driverListener.remove();
-                                                UserRequestState.cancelCurrentRequest();
-                                                driverUsername = null;
-                                                recreate();
-                                            }
-                                            else if(documentSnapshot.getString("status").equals("ACTIVE")){
-                                                showRiderSeesDriverAccept = ShowRiderSeesDriverAccept.newInstance();
-                                                showRiderSeesDriverAccept.show(fm);
-                                                driverUsername = documentSnapshot.getString("driverId");
-                                            }
-                                        }
-                                    }
+                    });
+                    return;
+                }
 
-                                }
-                            });
-                        }
-                    }
-                });
+                confirmRequest();
             }
         });
 
         startSearchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                setStartPinPosition();
+                startAutocomplete.cancel();
+                setStartPinPosition(null);
                 endSearchView.requestFocus();
 
                 return false;
@@ -289,14 +269,16 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                return false;
+                startAutocomplete.onQueryTextChange(newText, startSuggestions);
+                return true;
             }
         });
 
         endSearchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                setEndPinPosition();
+                endAutocomplete.cancel();
+                setEndPinPosition(null);
                 confirmRequestButton.requestFocus();
 
                 return false;
@@ -304,7 +286,8 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                return false;
+                endAutocomplete.onQueryTextChange(newText, endSuggestions);
+                return true;
             }
         });
 
@@ -320,6 +303,103 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
         });
     }
 
+    // Show the price estimate of the ride between the two pins, and send the request once the
+    // rider confirms a price
+    private void confirmRequest() {
+        // Price the ride along its route, which was quoted on the directions thread. If the
+        // directions haven't arrived yet, estimate it from the straight-line distance
+        LatLng start = startLocationMarker.getPosition();
+        LatLng end = endLocationMarker.getPosition();
+        final Money priceEstimate = routeFare != null ? routeFare : fareEngine.estimate(
+                start.latitude,
+                start.longitude,
+                end.latitude,
+                end.longitude,
+                demandDensity.surgeAt(start.latitude, start.longitude)
+        );
+
+        // Once "request ride" button is clicked, create a dialogue which shows the
+        // rider a price estimate and gives the rider the option to edit the price
+        showEditPriceLayout();
+
+
+
+        EditText editPrice = findViewById(R.id.editPrice);
+        editPrice.setText(priceEstimate.toString());
+
+        // When "confirm" button is clicked, store the new price in firestore
+        final Button confirmButton = findViewById(R.id.confirmPriceButton);
+        confirmButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                try {
+                    newCost = Money.parse(editPrice.getText().toString());
+                }
+                catch (IllegalArgumentException e) {
+                    Toast.makeText(getApplicationContext(), "Please enter an amount like " + priceEstimate, Toast.LENGTH_LONG).show();
+                    return;
+                }
+
+                if(newCost.compareTo(priceEstimate) < 0){
+                    Toast.makeText(getApplicationContext(), "Please enter a value higher than your base price of " + priceEstimate.format(), Toast.LENGTH_LONG).show();
+                }
+                else {
+                    riderRequest = new Request(
+                            UserRequestState.getCurrentUser().getUserId(),
+                            null,
+                            startLocationName,
+                            startLocationMarker.getPosition().longitude,
+                            startLocationMarker.getPosition().latitude,
+                            endLocationName,
+                            endLocationMarker.getPosition().longitude,
+                            endLocationMarker.getPosition().latitude,
+                            newCost,
+                            "INCOMPLETE",
+                            null,
+                            null
+                    );
+
+                    UserRequestState.setCurrentRequest(riderRequest);
+                    UserRequestState.updateCurrentRequest();
+                    // dbManager.pushRequestInfo(riderRequest); // Potentially causing duplicates?
+
+                    // get the request id of the current request
+                    requestID = UserRequestState.getCurrentRequest().getRequestId();
+
+                    Toast.makeText(getApplicationContext(), "Woo! Your ride is confirmed", Toast.LENGTH_SHORT).show();
+
+                    showCurrentRequestLayout();
+
+                    /// https://www.youtube.com/watch?v=LfkhFCDnkS0&list=PLrnPJCHvNZuDrSqu-dKdDi3Q6nM-VUyxD&index=4
+                    if (driverListener != null) {
+                        driverListener.remove();
+                    }
+                    rideStatusWatcher = new RideStatusWatcher(rideStatusListener);
+                    driverListener = dbManager.listenToRequest(riderRequest.getRequestId(), new EventListener<DocumentSnapshot>() {
+                        @Override
+                        public void onEvent(@Nullable DocumentSnapshot documentSnapshot, @Nullable FirebaseFirestoreException e) {
+                            if(e != null){
+                                Toast.makeText(getApplicationContext(),"Error with database update", Toast.LENGTH_SHORT).show();
+                            }
+
+                            // The request doesn't exist until the outbox has sent it. Repeated
+                            // statuses and echoes of our own writes are dropped by the watcher
+                            else if(documentSnapshot != null && documentSnapshot.exists()){
+                                rideStatusWatcher.onSnapshot(
+                                        documentSnapshot.getString("status"),
+                                        documentSnapshot.getString("driverId"),
+                                        documentSnapshot.getMetadata().hasPendingWrites()
+                                );
+                            }
+
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+
     /**
      * Finds the rider's current location, 'currentLocation'
      * @author: Mahin, John, Neel
@@ -346,17 +426,31 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
 
 
     public void cancelRide() {
-        mMap.clear();
-        startLocationMarker = null;
-        endLocationMarker = null;
-        // TODO: UPDATE STATE HERE
-        UserRequestState.cancelCurrentRequest();
-        // TODO: PUSH CHANGES TO FIREBASE
-        dbManager.cancelRequest(requestID);
+        RequestRepository.getInstance(this).cancelRequest(requestID);
         Toast.makeText(getApplicationContext(), "Your request has been cancelled", Toast.LENGTH_SHORT).show();
         Log.d(TAG, "Request cancelled");
-        driverListener.remove();
+        endRide();
+    }
+
+
+    // Clear a finished or cancelled ride from the map and the app state, so the rider can request
+    // another one without the activity and map being recreated
+    private void endRide() {
+        if (driverListener != null) {
+            driverListener.remove();
+            driverListener = null;
+        }
+        UserRequestState.cancelCurrentRequest();
         driverUsername = null;
+
+        route.remove();
+        mMap.clear();
+        startLocationMarker = null;
+        endLocationMarker = null;
+        routeFare = null;
+        ++routeRequest;     // Directions still on their way belong to this ride
+        startSearchView.setQuery("", false);
+        endSearchView.setQuery("", false);
     }
 
 
@@ -382,103 +476,209 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
 
 
     private void showSearchLocationLayout() {
-        showRiderRequestFragment.dismiss(); // Dismiss dialog fragment
+        if (showRiderRequestFragment != null && showRiderRequestFragment.isAdded()) {
+            showRiderRequestFragment.dismiss(); // Dismiss dialog fragment
+        }
         searchLocationLayout.setVisibility(View.VISIBLE);
         viewCurrentRequestLayout.setVisibility(View.GONE);
     }
 
 
-    // Get text from EditText and find the location on a map
-    private boolean setStartPinPosition() {
+    // Look up the place typed in the start search bar and put the start pin there. onDone is run
+    // once the lookup finishes, unless a newer search replaced it
+    private void setStartPinPosition(final Runnable onDone) {
         startLocationName = startSearchView.getQuery().toString();
-        List<Address> startLocationList;
-        Geocoder geocoder = new Geocoder(RiderMapActivity.this);
-        BitmapDescriptor startLocationIcon = BitmapDescriptorFactory
-                .fromResource(R.drawable.ic_start_location_marker);
-
-        try {
-            startLocationList = geocoder.getFromLocationName(startLocationName, 1);
-            if (startLocationList.size() != 0) {
-                Address startAddress = startLocationList.get(0);
-                LatLng latLng = new LatLng(startAddress.getLatitude(), startAddress.getLongitude());
-                startLocationMarker = mMap.addMarker(
-                        new MarkerOptions()
-                                .position(latLng)
-                                .title(startLocationName)
-                                .icon(startLocationIcon)
-                );
-                mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(latLng, 10));
-            } else if (startLocationMarker != null && startLocationList.size() != 0) {
-                startLocationMarker.remove();
-                Address startAddress = startLocationList.get(0);
-                LatLng latLng = new LatLng(startAddress.getLatitude(), startAddress.getLongitude());
-                startLocationMarker = mMap.addMarker(
-                        new MarkerOptions()
-                                .position(latLng)
-                                .title(startLocationName)
-                                .icon(startLocationIcon)
-                );
-
-                mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(latLng, 10));
-            } else {
-                Toast.makeText(getApplicationContext(), "Invalid start location.", Toast.LENGTH_SHORT).show();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (startLookup != null) {
+            startLookup.cancel();   // A new search replaces one that is still running
         }
 
-        if (endLocationMarker != null && startLocationMarker != null) {
-            calculateDirections();
-        }
+        startLookup = geocodingService.geocode(startLocationName, new GeocodeListener() {
+            @Override
+            public void onGeocoded(com.google.maps.model.LatLng location) {
+                if (location == null) {
+                    Toast.makeText(getApplicationContext(), "Invalid start location.", Toast.LENGTH_SHORT).show();
+                }
+                else {
+                    if (startLocationMarker != null) {
+                        startLocationMarker.remove();
+                    }
+                    startLocationMarker = addPin(location, startLocationName, R.drawable.ic_start_location_marker);
+                }
+                onPinLookupFinished(onDone);
+            }
 
-        return startLocationMarker != null;   // Return true if startLocationMarker exists now
+            @Override
+            public void onGeocodeFailed(Exception e) {
+                Toast.makeText(getApplicationContext(), "Couldn't look up the start location. Check your connection.", Toast.LENGTH_SHORT).show();
+                onPinLookupFinished(onDone);
+            }
+        });
     }
 
 
-    // Get text from EditText and find the location on a map
-    private boolean setEndPinPosition() {
+    // Look up the place typed in the end search bar and put the end pin there. onDone is run
+    // once the lookup finishes, unless a newer search replaced it
+    private void setEndPinPosition(final Runnable onDone) {
         endLocationName = endSearchView.getQuery().toString();
-        List<Address> endLocationList;
-        BitmapDescriptor endLocationIcon = BitmapDescriptorFactory
-                .fromResource(R.drawable.ic_end_location_marker);
-
-        Geocoder geocoder = new Geocoder(RiderMapActivity.this);
-        try {
-            endLocationList = geocoder.getFromLocationName(endLocationName, 1);
-            if (endLocationMarker == null && endLocationList.size() != 0) {
-                Address endAddress = endLocationList.get(0);
-                LatLng latLng = new LatLng(endAddress.getLatitude(), endAddress.getLongitude());
-                endLocationMarker = mMap.addMarker(
-                        new MarkerOptions()
-                                .position(latLng)
-                                .title(endLocationName)
-                                .icon(endLocationIcon)
-                );
-                mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(latLng, 10));
-            } else if (endLocationMarker != null && endLocationList.size() != 0) {
-                endLocationMarker.remove();
-                Address endAddress = endLocationList.get(0);
-                LatLng latLng = new LatLng(endAddress.getLatitude(), endAddress.getLongitude());
-                endLocationMarker = mMap.addMarker(
-                        new MarkerOptions()
-                                .position(latLng)
-                                .title(endLocationName)
-                                .icon(endLocationIcon)
-                );
-
-                mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(latLng, 10));
-            } else {
-                Toast.makeText(getApplicationContext(), "Invalid end location.", Toast.LENGTH_SHORT).show();
+        if (endLookup != null) {
+            endLookup.cancel();     // A new search replaces one that is still running
+        }
+
+        endLookup = geocodingService.geocode(endLocationName, new GeocodeListener() {
+            @Override
+            public void onGeocoded(com.google.maps.model.LatLng location) {
+                if (location == null) {
+                    Toast.makeText(getApplicationContext(), "Invalid end location.", Toast.LENGTH_SHORT).show();
+                }
+                else {
+                    if (endLocationMarker != null) {
+                        endLocationMarker.remove();
+                    }
+                    endLocationMarker = addPin(location, endLocationName, R.drawable.ic_end_location_marker);
+                }
+                onPinLookupFinished(onDone);
+            }
+
+            @Override
+            public void onGeocodeFailed(Exception e) {
+                Toast.makeText(getApplicationContext(), "Couldn't look up the end location. Check your connection.", Toast.LENGTH_SHORT).show();
+                onPinLookupFinished(onDone);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        });
+    }
+
+
+    // Look up the start and then the end pin if they are missing, then run then
+    private void placeMissingPins(final Runnable then) {
+        if (startLocationMarker == null) {
+            setStartPinPosition(new Runnable() {
+                @Override
+                public void run() {
+                    if (startLocationMarker != null) {
+                        placeMissingPins(then);
+                    }
+                    else {
+                        then.run();
+                    }
+                }
+            });
         }
+        else if (endLocationMarker == null) {
+            setEndPinPosition(then);
+        }
+        else {
+            then.run();
+        }
+    }
 
+
+    // Show suggested places in a list under a search bar, and submit the one the rider taps.
+    // Returns the listener that fills the list
+    private PlaceSuggestionsListener attachSuggestions(final SearchView searchView, final PlaceAutocomplete autocomplete) {
+        final String[] columns = {"_id", "name"};
+        final SimpleCursorAdapter adapter = new SimpleCursorAdapter(
+                this,
+                android.R.layout.simple_list_item_1,
+                null,
+                new String[] {"name"},
+                new int[] {android.R.id.text1},
+                0
+        );
+        final List<Place> shown = new ArrayList<>();
+        searchView.setSuggestionsAdapter(adapter);
+
+        searchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+            @Override
+            public boolean onSuggestionSelect(int position) {
+                return false;
+            }
+
+            @Override
+            public boolean onSuggestionClick(int position) {
+                if (position >= shown.size()) {
+                    return false;
+                }
+                Place place = shown.get(position);
+                autocomplete.choose(place);
+                searchView.setQuery(place.getName(), true);     // Found in memory, so the pin drops at once
+                return true;
+            }
+        });
+
+        return new PlaceSuggestionsListener() {
+            @Override
+            public void onSuggestions(List<Place> places) {
+                shown.clear();
+                shown.addAll(places);
+
+                MatrixCursor cursor = new MatrixCursor(columns, places.size());
+                for (int i = 0; i < places.size(); ++i) {
+                    cursor.addRow(new Object[] {i, places.get(i).getName()});
+                }
+                adapter.changeCursor(cursor);
+            }
+        };
+    }
+
+
+    // Fill the search suggestions with the start and end places of the rider's past requests. The
+    // documents are decoded off the main thread, and placeHistory is only touched on it
+    private void loadPlaceHistory() {
+        User user = UserRequestState.getCurrentUser();
+        if (user == null) {
+            return;
+        }
+
+        dbManager.requestsForRider(user.getUserId()).get()
+                .addOnSuccessListener(SnapshotExecutor.get(), new OnSuccessListener<QuerySnapshot>() {
+                    @Override
+                    public void onSuccess(QuerySnapshot snapshot) {
+                        final List<Place> places = new ArrayList<>();
+                        for (QueryDocumentSnapshot document : snapshot) {
+                            Request request = DocumentCodec.decodeRequest(document.getId(), document.getData());
+                            if (request == null) {
+                                continue;
+                            }
+                            places.add(new Place(request.getStartLocationName(),
+                                    new com.google.maps.model.LatLng(request.getStartLatitude(), request.getStartLongitude())));
+                            places.add(new Place(request.getEndLocationName(),
+                                    new com.google.maps.model.LatLng(request.getEndLatitude(), request.getEndLongitude())));
+                        }
+
+                        runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                for (Place place : places) {
+                                    placeHistory.add(place);    // Picking one remembers where it is
+                                }
+                            }
+                        });
+                    }
+                });
+    }
+
+
+    // Drop a pin at a place that was looked up and move the camera to it
+    private Marker addPin(com.google.maps.model.LatLng location, String title, int drawableRes) {
+        LatLng latLng = new LatLng(location.lat, location.lng);
+        Marker marker = mMap.addMarker(
+                new MarkerOptions()
+                        .position(latLng)
+                        .title(title)
+                        .icon(MarkerIcons.get(this, drawableRes))
+        );
+        mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(latLng, 10));
+        return marker;
+    }
+
+
+    private void onPinLookupFinished(Runnable onDone) {
         if (endLocationMarker != null && startLocationMarker != null) {
             calculateDirections();
         }
-
-        return endLocationMarker != null;   // Return true if endLocationMarker exists now
+        if (onDone != null) {
+            onDone.run();
+        }
     }
 
 
@@ -496,24 +696,36 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
         LatLng current_coordinates = new LatLng(currentLocation.getLatitude(), currentLocation.getLongitude());
         mMap.moveCamera(CameraUpdateFactory.newLatLng(current_coordinates));
         mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(current_coordinates,15));
+
+        route = new RouteOverlay(
+                mMap,
+                getApplicationContext().getResources().getColor(R.color.colorPolyline),
+                getApplicationContext().getResources().getColor(R.color.colorPolylineAlternative)
+        );
+
+        // Tapping the route shows or hides the other routes the Directions API suggested
+        mMap.setOnPolylineClickListener(new GoogleMap.OnPolylineClickListener() {
+            @Override
+            public void onPolylineClick(Polyline polyline) {
+                route.onPolylineClick(polyline);
+            }
+        });
     }
 
 
     /// YouTube video by CodingWithMitch: Calculating Directions with Google Directions API
     /// https://www.youtube.com/watch?v=f47L1SL5S0o&list=PLgCYzUzKIBE-SZUrVOsbYMzH7tPigT3gi&index=19
     private void calculateDirections() {
+        routeFare = null;   // The old route's fare no longer applies
+        final int request = ++routeRequest;
         com.google.maps.model.LatLng destination = new com.google.maps.model.LatLng(endLocationMarker.getPosition().latitude, endLocationMarker.getPosition().longitude);
 
-        geoApi = new GeoApiContext.Builder().apiKey(getString(R.string.google_api_key)).build();
-        DirectionsApiRequest directions = new DirectionsApiRequest(geoApi);
+        final com.google.maps.model.LatLng origin = new com.google.maps.model.LatLng(startLocationMarker.getPosition().latitude, startLocationMarker.getPosition().longitude);
 
-        directions.alternatives(true);
-        directions.origin(new com.google.maps.model.LatLng(startLocationMarker.getPosition().latitude, startLocationMarker.getPosition().longitude));
-
-        directions.destination(String.valueOf(destination)).setCallback(new com.google.maps.PendingResult.Callback<DirectionsResult>() {
+        directionsService.getDirections(origin, destination, new com.google.maps.PendingResult.Callback<RouteChoice>() {
             @Override
-            public void onResult(DirectionsResult result) {
-                addPolylinesToMap(result);
+            public void onResult(RouteChoice choice) {
+                addPolylinesToMap(choice, origin, request);
             }
 
             @Override
@@ -526,64 +738,27 @@ public class RiderMapActivity extends AppCompatActivity implements OnMapReadyCal
 
     /// YouTube video by CodingWithMitch: Adding Polylines to a Google Map
     /// https://www.youtube.com/watch?v=xl0GwkLNpNI&list=PLgCYzUzKIBE-SZUrVOsbYMzH7tPigT3gi&index=20
-    private void addPolylinesToMap(final DirectionsResult result) {
+    private void addPolylinesToMap(final RouteChoice choice, com.google.maps.model.LatLng origin, final int request) {
+        // The route was scored and decoded on the directions thread, so the main thread only draws it
+        if (choice == null) {
+            return;
+        }
+        final double surge = demandDensity.surgeAt(origin.lat, origin.lng);
+        final Money fare = fareEngine.quote(choice, surge);
+        if (surge > 1) {
+            Log.d(TAG, "Quoting with a surge of " + surge);
+        }
+
         new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @SuppressLint("ResourceType")
             @Override
             public void run() {
-                Log.d(TAG, "run: result routes: " + result.routes.length);
-
-                for (DirectionsRoute route : result.routes) {
-                    Log.d(TAG, "run: leg: " + route.legs[0].toString());
-                    List<com.google.maps.model.LatLng> decodedPath = PolylineEncoding.decode(route.overviewPolyline.getEncodedPath());
-
-                    List<LatLng> newDecodedPath = new ArrayList<>();
-
-                    // This loops through all the LatLng coordinates of ONE polyline.
-                    for (com.google.maps.model.LatLng latLng : decodedPath) {
-                        newDecodedPath.add(new LatLng(latLng.lat, latLng.lng));
-                    }
-
-                    if (polyline_rider != null) {
-                        polyline_rider.remove();
-                    }
-
-                    polyline_rider = mMap.addPolyline(
-                            new PolylineOptions()
-                                    .addAll(newDecodedPath)
-                                    .color(getApplicationContext()
-                                            .getResources()
-                                            .getColor(R.color.colorPolyline)
-                                    )
-                                    .clickable(true)
-                                    .width(10));
-
+                if (request != routeRequest) {
+                    return;     // A pin moved or the ride ended while these directions were on their way
                 }
+                Log.d(TAG, "run: chose a " + choice.getDistanceMeters() + "m route out of " + (choice.getAlternatives().size() + 1));
+                route.show(choice);
+                routeFare = fare;
             }
         });
     }
-
-
-
-    // This method calculates a price estimate for the rider depending on the distance
-    // between the start and end locations
-    public String calculatePrice(Double startLong, Double startLat, Double endLong, Double endLat) {
-        // define the start and end locations
-        Location startLocation = new Location("startLocation");
-        startLocation.setLatitude(startLat);
-        startLocation.setLongitude(startLong);
-
-        Location endLocation = new Location("endLocation");
-        endLocation.setLatitude(endLat);
-        endLocation.setLongitude(endLong);
-
-        // calculate the price estimate
-        double distanceInKms = startLocation.distanceTo(endLocation) / 1000;
-
-        if (distanceInKms <= 10) {
-            distanceInKms = 7.99;
-        }
-
-        return String.format("%.2f", distanceInKms);
-    }
 }
@@ -0,0 +1,115 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * An in-memory LRU cache of routes. Origins and destinations are snapped to a grid of about
+ * GRID_METRES before being used as a key, so looking at the same ride again (or a ride starting
+ * a few metres away) reuses the route instead of calling the Directions API. Entries expire
+ * after a fixed time so traffic-dependent routes don't go stale
+ * @param <V> The type of route stored
+ */
+public class RouteCache<V> {
+    public static final double GRID_METRES = 50;
+    private static final double METRES_PER_DEGREE = 111320;
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry<V>> entries;
+
+    private static class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+
+    /**
+     * Constructor for RouteCache
+     * @param capacity The most routes kept. The least recently used route is dropped past this
+     * @param ttlMillis How long a route stays valid after it is stored, in milliseconds
+     */
+    public RouteCache(final int capacity, long ttlMillis) {
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+
+        // An access-ordered LinkedHashMap keeps the least recently used entry first
+        this.entries = new LinkedHashMap<String, Entry<V>>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RouteCache.Entry<V>> eldest) {
+                return size() > RouteCache.this.capacity;
+            }
+        };
+    }
+
+
+    /**
+     * Builds the cache key for a route by snapping both ends to the grid
+     * @return A key shared by every route whose ends fall in the same grid cells
+     */
+    public static String key(double originLat, double originLon, double destinationLat, double destinationLon) {
+        return snap(originLat, originLon) + "|" + snap(destinationLat, destinationLon);
+    }
+
+
+    /**
+     * Returns the route stored for a key, or null if there isn't one or it has expired
+     * @param key A key from key()
+     * @return The cached route or null
+     */
+    public synchronized V get(String key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+        if (now() >= entry.expiresAt) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+
+    /**
+     * Stores a route, replacing any route already stored for the key
+     * @param key A key from key()
+     * @param value The route to store
+     */
+    public synchronized void put(String key, V value) {
+        entries.put(key, new Entry<>(value, now() + ttlMillis));
+    }
+
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+
+    // The current time. Tests override this to move time forward
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+
+    // Snap a coordinate to the grid. Longitude cells are widened away from the equator so they stay about GRID_METRES wide
+    private static String snap(double latitude, double longitude) {
+        double latStep = GRID_METRES / METRES_PER_DEGREE;
+        long latIndex = Math.round(latitude / latStep);
+        double cosLat = Math.max(Math.cos(Math.toRadians(latIndex * latStep)), 0.01);
+        long lonIndex = Math.round(longitude / (latStep / cosLat));
+
+        return latIndex + "," + lonIndex;
+    }
+}
@@ -0,0 +1,129 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.model.DirectionsLeg;
+import com.google.maps.model.DirectionsResult;
+import com.google.maps.model.DirectionsRoute;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The route picked out of the alternatives returned by the Directions API, along with the
+ * decoded geometry of the others. Built off the main thread, so drawing it is a single addPolyline()
+ */
+public class RouteChoice {
+    // Each extra kilometre costs as much as this many seconds of driving, so a slightly faster
+    // route that is much longer doesn't win
+    private static final double SECONDS_PER_EXTRA_KM = 30;
+
+    private RouteGeometry chosen;
+    private List<RouteGeometry> alternatives;
+    private long durationSeconds;
+    private long distanceMeters;
+
+
+    private RouteChoice(RouteGeometry chosen, List<RouteGeometry> alternatives, long durationSeconds, long distanceMeters) {
+        this.chosen = chosen;
+        this.alternatives = alternatives;
+        this.durationSeconds = durationSeconds;
+        this.distanceMeters = distanceMeters;
+    }
+
+
+    /**
+     * Scores every route in a result and decodes the geometry of each one
+     * @param result The result of a directions request
+     * @return The best route and its alternatives, or null if the result has no routes
+     */
+    public static RouteChoice choose(DirectionsResult result) {
+        if (result == null || result.routes == null || result.routes.length == 0) {
+            return null;
+        }
+
+        int best = 0;
+        double bestScore = Double.MAX_VALUE;
+
+        for (int i = 0; i < result.routes.length; ++i) {
+            double score = score(result.routes[i]);
+            if (score < bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+
+        List<RouteGeometry> alternatives = new ArrayList<>(result.routes.length - 1);
+        for (int i = 0; i < result.routes.length; ++i) {
+            if (i != best) {
+                alternatives.add(RouteGeometry.decode(result.routes[i].overviewPolyline.getEncodedPath()));
+            }
+        }
+
+        DirectionsRoute route = result.routes[best];
+        return new RouteChoice(
+                RouteGeometry.decode(route.overviewPolyline.getEncodedPath()),
+                alternatives,
+                durationSeconds(route),
+                distanceMeters(route)
+        );
+    }
+
+
+    /**
+     * Scores a route by its driving time, plus a penalty for its length. Lower is better
+     * @param route A route from a directions result
+     * @return The score of the route
+     */
+    public static double score(DirectionsRoute route) {
+        return durationSeconds(route) + SECONDS_PER_EXTRA_KM * distanceMeters(route) / 1000.0;
+    }
+
+
+    // Total time over every leg, using the time in traffic where the API gave one
+    private static long durationSeconds(DirectionsRoute route) {
+        long seconds = 0;
+        if (route.legs != null) {
+            for (DirectionsLeg leg : route.legs) {
+                if (leg.durationInTraffic != null) {
+                    seconds += leg.durationInTraffic.inSeconds;
+                }
+                else if (leg.duration != null) {
+                    seconds += leg.duration.inSeconds;
+                }
+            }
+        }
+        return seconds;
+    }
+
+
+    // Total distance over every leg
+    private static long distanceMeters(DirectionsRoute route) {
+        long meters = 0;
+        if (route.legs != null) {
+            for (DirectionsLeg leg : route.legs) {
+                if (leg.distance != null) {
+                    meters += leg.distance.inMeters;
+                }
+            }
+        }
+        return meters;
+    }
+
+
+    public RouteGeometry getChosen() {
+        return chosen;
+    }
+
+    public List<RouteGeometry> getAlternatives() {
+        return Collections.unmodifiableList(alternatives);
+    }
+
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getDistanceMeters() {
+        return distanceMeters;
+    }
+}
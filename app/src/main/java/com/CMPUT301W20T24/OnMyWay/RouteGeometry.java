@@ -0,0 +1,223 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+
+/**
+ * The points of a route, packed into a single int array of latitude/longitude pairs in units of
+ * 1e-5 degrees (the precision of Google's encoded polylines). Decoding goes straight from the
+ * encoded string into this array, without an object per point, and a geometry can be reused for
+ * the next route with decodeInto()
+ */
+/// Google Maps Platform, Encoded Polyline Algorithm Format
+/// https://developers.google.com/maps/documentation/utilities/polylinealgorithm
+public class RouteGeometry {
+    private static final double E5 = 1e5;
+    private static final double METRES_PER_DEGREE = 111320;
+    private static final double METRES_PER_PIXEL_AT_ZOOM_0 = 156543.03392;   // At the equator
+
+    private int[] points;   // Interleaved latitude and longitude, in 1e-5 degrees
+    private int size;       // The number of points, so points holds 2 * size values
+
+
+    /**
+     * Constructor for an empty RouteGeometry
+     * @param capacity The number of points to make room for
+     */
+    public RouteGeometry(int capacity) {
+        points = new int[Math.max(capacity, 1) * 2];
+    }
+
+
+    /**
+     * Decodes an encoded polyline into a new RouteGeometry
+     * @param encodedPath A polyline in Google's encoded polyline format
+     * @return The decoded route
+     */
+    public static RouteGeometry decode(String encodedPath) {
+        // Each point takes at least two characters, and usually about six
+        return decodeInto(encodedPath, new RouteGeometry(encodedPath.length() / 6 + 1));
+    }
+
+
+    /**
+     * Decodes an encoded polyline into an existing RouteGeometry, replacing its points.
+     * The geometry's array is only reallocated if the new route has more points than it can hold
+     * @param encodedPath A polyline in Google's encoded polyline format
+     * @param geometry The geometry to decode into
+     * @return geometry, for convenience
+     */
+    public static RouteGeometry decodeInto(String encodedPath, RouteGeometry geometry) {
+        int length = encodedPath.length();
+        int index = 0;
+        int latitude = 0;
+        int longitude = 0;
+
+        geometry.size = 0;
+
+        while (index < length) {
+            int result = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = encodedPath.charAt(index++) - 63;
+                result |= (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            latitude += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            result = 0;
+            shift = 0;
+            do {
+                b = encodedPath.charAt(index++) - 63;
+                result |= (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            longitude += (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+
+            geometry.addE5(latitude, longitude);
+        }
+
+        return geometry;
+    }
+
+
+    /**
+     * Returns the distance on the ground that one pixel covers at a zoom level. Passing this to
+     * simplify() removes detail that couldn't be seen at that zoom anyway
+     * @param zoom The map zoom level
+     * @param latitude The latitude of the route, since pixels cover less ground away from the equator
+     * @return The size of one pixel in metres
+     */
+    public static double metresPerPixel(double zoom, double latitude) {
+        return METRES_PER_PIXEL_AT_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+    }
+
+
+    /**
+     * Returns a simplified copy of the route using the Douglas-Peucker algorithm. Points are dropped
+     * as long as the line stays within toleranceMetres of the original. The first and last points
+     * are always kept
+     * @param toleranceMetres The largest distance the simplified line may be from the original
+     * @return A new RouteGeometry with the points that were kept
+     */
+    /// Wikipedia, Ramer-Douglas-Peucker algorithm
+    /// https://en.wikipedia.org/wiki/Ramer%E2%80%93Douglas%E2%80%93Peucker_algorithm
+    public RouteGeometry simplify(double toleranceMetres) {
+        if (size < 3) {
+            RouteGeometry copy = new RouteGeometry(size);
+            for (int i = 0; i < size; ++i) {
+                copy.addE5(points[2 * i], points[2 * i + 1]);
+            }
+            return copy;
+        }
+
+        // Project onto a flat plane in metres. Fine for the length of a city route
+        double longitudeScale = Math.cos(Math.toRadians(latitude(0))) * METRES_PER_DEGREE / E5;
+        double latitudeScale = METRES_PER_DEGREE / E5;
+        double toleranceSquared = toleranceMetres * toleranceMetres;
+
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        int kept = 2;
+
+        // Ranges still to check, as pairs of start and end indices. Avoids recursion on long routes
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = size - 1;
+
+        while (stackSize > 0) {
+            int end = stack[--stackSize];
+            int start = stack[--stackSize];
+
+            double startX = points[2 * start + 1] * longitudeScale;
+            double startY = points[2 * start] * latitudeScale;
+            double dx = points[2 * end + 1] * longitudeScale - startX;
+            double dy = points[2 * end] * latitudeScale - startY;
+            double segmentLengthSquared = dx * dx + dy * dy;
+
+            double furthestDistance = -1;
+            int furthest = -1;
+
+            for (int i = start + 1; i < end; ++i) {
+                double px = points[2 * i + 1] * longitudeScale - startX;
+                double py = points[2 * i] * latitudeScale - startY;
+                double distanceSquared;
+
+                if (segmentLengthSquared == 0) {
+                    distanceSquared = px * px + py * py;
+                }
+                else {
+                    double t = Math.max(0, Math.min(1, (px * dx + py * dy) / segmentLengthSquared));
+                    double ex = px - t * dx;
+                    double ey = py - t * dy;
+                    distanceSquared = ex * ex + ey * ey;
+                }
+
+                if (distanceSquared > furthestDistance) {
+                    furthestDistance = distanceSquared;
+                    furthest = i;
+                }
+            }
+
+            if (furthest != -1 && furthestDistance > toleranceSquared) {
+                keep[furthest] = true;
+                ++kept;
+
+                if (stackSize + 4 > stack.length) {
+                    int[] larger = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, larger, 0, stackSize);
+                    stack = larger;
+                }
+                stack[stackSize++] = start;
+                stack[stackSize++] = furthest;
+                stack[stackSize++] = furthest;
+                stack[stackSize++] = end;
+            }
+        }
+
+        RouteGeometry simplified = new RouteGeometry(kept);
+        for (int i = 0; i < size; ++i) {
+            if (keep[i]) {
+                simplified.addE5(points[2 * i], points[2 * i + 1]);
+            }
+        }
+        return simplified;
+    }
+
+
+    /**
+     * Adds a point to the end of the route
+     * @param latitude The latitude in degrees
+     * @param longitude The longitude in degrees
+     */
+    public void add(double latitude, double longitude) {
+        addE5((int) Math.round(latitude * E5), (int) Math.round(longitude * E5));
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+    public double latitude(int index) {
+        return points[2 * index] / E5;
+    }
+
+    public double longitude(int index) {
+        return points[2 * index + 1] / E5;
+    }
+
+
+    // Append a point given in 1e-5 degrees, growing the array if it's full
+    private void addE5(int latitude, int longitude) {
+        if (2 * size + 2 > points.length) {
+            int[] larger = new int[points.length * 2];
+            System.arraycopy(points, 0, larger, 0, 2 * size);
+            points = larger;
+        }
+        points[2 * size] = latitude;
+        points[2 * size + 1] = longitude;
+        ++size;
+    }
+}
@@ -0,0 +1,109 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.Polyline;
+
+import java.util.ArrayList;
+
+
+/**
+ * Draws one RouteChoice on a map. Only the chosen route gets a polyline; the alternatives are
+ * kept as geometry and drawn behind it when the user taps the route, then hidden on the next tap
+ */
+public class RouteOverlay {
+    private static final float ROUTE_WIDTH = 10;
+    private static final float ALTERNATIVE_WIDTH = 7;
+
+    private GoogleMap map;
+    private int routeColor;
+    private int alternativeColor;
+
+    private RouteChoice choice;
+    private Polyline routePolyline;
+    private ArrayList<Polyline> alternativePolylines = new ArrayList<>();
+
+
+    /**
+     * Constructor for RouteOverlay
+     * @param map The map to draw on
+     * @param routeColor The color of the chosen route
+     * @param alternativeColor The color of the alternatives, when they are shown
+     */
+    public RouteOverlay(GoogleMap map, int routeColor, int alternativeColor) {
+        this.map = map;
+        this.routeColor = routeColor;
+        this.alternativeColor = alternativeColor;
+    }
+
+
+    /**
+     * Replaces the route on the map. Must be called on the main thread
+     * @param choice The route to draw
+     */
+    public void show(RouteChoice choice) {
+        remove();
+        this.choice = choice;
+        routePolyline = map.addPolyline(
+                RoutePolylines.toPolylineOptions(choice.getChosen(), map.getCameraPosition().zoom)
+                        .color(routeColor)
+                        .clickable(true)
+                        .width(ROUTE_WIDTH)
+                        .zIndex(1)
+        );
+    }
+
+
+    /**
+     * Handles a tap on a polyline. A tap on the chosen route shows or hides the alternatives
+     * @param polyline The polyline that was tapped
+     * @return True if the polyline is this overlay's route
+     */
+    public boolean onPolylineClick(Polyline polyline) {
+        if (routePolyline != null && routePolyline.equals(polyline)) {
+            if (alternativePolylines.isEmpty()) {
+                showAlternatives();
+            }
+            else {
+                hideAlternatives();
+            }
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Removes the route and any alternatives from the map
+     */
+    public void remove() {
+        hideAlternatives();
+        if (routePolyline != null) {
+            routePolyline.remove();
+            routePolyline = null;
+        }
+        choice = null;
+    }
+
+
+    // Draw every alternative route behind the chosen one
+    private void showAlternatives() {
+        float zoom = map.getCameraPosition().zoom;
+
+        for (RouteGeometry alternative : choice.getAlternatives()) {
+            alternativePolylines.add(map.addPolyline(
+                    RoutePolylines.toPolylineOptions(alternative, zoom)
+                            .color(alternativeColor)
+                            .width(ALTERNATIVE_WIDTH)
+                            .zIndex(0)
+            ));
+        }
+    }
+
+
+    private void hideAlternatives() {
+        for (Polyline polyline : alternativePolylines) {
+            polyline.remove();
+        }
+        alternativePolylines.clear();
+    }
+}
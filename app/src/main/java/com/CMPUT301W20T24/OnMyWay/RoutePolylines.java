@@ -0,0 +1,36 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+
+/**
+ * Turns decoded routes into polylines for the maps. Routes are only simplified down to what the
+ * current zoom can show when they are drawn, so the map gets far fewer LatLng objects for long routes
+ */
+public class RoutePolylines {
+    private static final double TOLERANCE_PIXELS = 1;   // Detail smaller than a pixel can't be seen
+
+
+    /**
+     * Builds the PolylineOptions for a route, simplified for the zoom level it's drawn at
+     * @param route The decoded route
+     * @param zoom The current zoom level of the map
+     * @return PolylineOptions holding the simplified points. The caller sets the styling
+     */
+    public static PolylineOptions toPolylineOptions(RouteGeometry route, float zoom) {
+        PolylineOptions options = new PolylineOptions();
+
+        if (route.size() == 0) {
+            return options;
+        }
+
+        double tolerance = TOLERANCE_PIXELS * RouteGeometry.metresPerPixel(zoom, route.latitude(0));
+        RouteGeometry simplified = route.simplify(tolerance);
+
+        for (int i = 0; i < simplified.size(); ++i) {
+            options.add(new LatLng(simplified.latitude(i), simplified.longitude(i)));
+        }
+        return options;
+    }
+}
@@ -28,6 +28,7 @@ public class ShowDriverRequestFragment extends DialogFragment implements View.On
     private CancelRideButtonListener cancelRideButtonListener;
     private FragmentManager fm;
     private TextView textElapsedTime;
+    private char[] elapsedTime = new char[RequestTime.ELAPSED_BUFFER_SIZE];   // Reused every tick
 
 
     /// StackOverflow post by Dave.B
@@ -37,7 +38,8 @@ public class ShowDriverRequestFragment extends DialogFragment implements View.On
     private Runnable timerRunnable = new Runnable() {
         @Override
         public void run() {
-            textElapsedTime.setText(UserRequestState.getCurrentRequest().getElapsedTime());
+            int length = UserRequestState.getCurrentRequest().writeElapsedTime(elapsedTime);
+            textElapsedTime.setText(elapsedTime, 0, length);
 
             timerHandler.postDelayed(this, 1000);
         }
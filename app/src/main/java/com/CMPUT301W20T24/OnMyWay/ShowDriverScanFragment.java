@@ -146,9 +146,15 @@ public class ShowDriverScanFragment extends DialogFragment implements View.OnCli
                 if (data != null) {
                     Barcode barcode = data.getParcelableExtra("Barcode");
                     Point[] p = barcode.cornerPoints;
-                    String info = barcode.displayValue;
-                    String[] arrOfStr = info.split(";");
-                    money.setText("$" + arrOfStr[1]);
+                    PaymentCode paymentCode;
+                    try {
+                        paymentCode = PaymentCode.decode(barcode.displayValue);
+                    }
+                    catch (IllegalArgumentException e) {
+                        Log.d(TAG, "Scanned QR code is not a payment", e);
+                        return;
+                    }
+                    money.setText(paymentCode.getAmount().format());
                     scanQR.setVisibility(View.INVISIBLE);
                     accept_dialog.setVisibility(View.VISIBLE);
                     money.setVisibility(View.VISIBLE);
@@ -1,6 +1,5 @@
 package com.CMPUT301W20T24.OnMyWay;
 
-import android.app.Activity;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.os.Bundle;
@@ -65,8 +64,7 @@ public class ShowQRFragment extends DialogFragment implements View.OnClickListen
         request = UserRequestState.getCurrentRequest();
 
         args.putString("userId", user.getUserId());
-        args.putString("amount", request.getPaymentAmount());
-        args.putString("requestID", request.getRequestId());
+        args.putString("paymentCode", new PaymentCode(request.getRequestId(), request.getPaymentAmount()).encode());
 
         fragment.setArguments(args);
 
@@ -110,15 +108,9 @@ public class ShowQRFragment extends DialogFragment implements View.OnClickListen
         // get imageview
         qrCode= view.findViewById(R.id.QRcode);
 
-        //get the information that you have to put in the barcode and then convert that to a string
-        // with ';' separating every new field
-        // that string is "text"
+        // The text of the barcode holds the requestID and the amount in cents. See PaymentCode
         Bundle bundle = getArguments();
-        String amount = bundle.getString("amount", "-");
-        String requestID = bundle.getString("requestID","");
-
-
-        String text = requestID + "; " + amount;
+        String text = bundle.getString("paymentCode", "");
         MultiFormatWriter multiFormatWriter = new MultiFormatWriter();
         try {
             BitMatrix bitMatrix = multiFormatWriter.encode(text, BarcodeFormat.QR_CODE,400,400);
@@ -141,13 +133,11 @@ public class ShowQRFragment extends DialogFragment implements View.OnClickListen
     public void onClick(View view) {
         Log.d(TAG, "Button pressed");
         final int viewId = view.getId();
-        Activity parentActivity = getActivity();
 
         if (viewId == R.id.buttonBack) {
             Log.d(TAG, "Back button pressed");
 
-            this.dismiss(); // Close the dialog
-            parentActivity.recreate();
+            this.dismiss(); // Close the dialog. The rider's screen was already reset when the ride completed
         }else if(viewId == R.id.thumbs_up){
             downrating.setVisibility(View.INVISIBLE);
         }else if(viewId == R.id.thumbs_down){
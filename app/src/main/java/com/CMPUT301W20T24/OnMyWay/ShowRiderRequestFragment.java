@@ -29,6 +29,7 @@ public class ShowRiderRequestFragment extends DialogFragment implements View.OnC
     private CancelRideButtonListener cancelRideButtonListener;
     private FragmentManager fm;
     private TextView textElapsedTime;
+    private char[] elapsedTime = new char[RequestTime.ELAPSED_BUFFER_SIZE];   // Reused every tick
 
 
     /// StackOverflow post by Dave.B
@@ -38,7 +39,8 @@ public class ShowRiderRequestFragment extends DialogFragment implements View.OnC
     private Runnable timerRunnable = new Runnable() {
         @Override
         public void run() {
-            textElapsedTime.setText(UserRequestState.getCurrentRequest().getElapsedTime());
+            int length = UserRequestState.getCurrentRequest().writeElapsedTime(elapsedTime);
+            textElapsedTime.setText(elapsedTime, 0, length);
 
             timerHandler.postDelayed(this, 1000);
         }
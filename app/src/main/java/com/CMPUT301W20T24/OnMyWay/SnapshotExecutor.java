@@ -0,0 +1,44 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The background thread Firestore listeners are run on, so decoding, filtering and diffing
+ * whole collections doesn't hold up the main thread. There is only one thread, so the snapshots
+ * of a listener are still handled in the order they arrive. Results are posted back to the main
+ * thread by the caller. The thread stops when it has been idle for a while
+ */
+public class SnapshotExecutor {
+    private static final long IDLE_SECONDS = 30;
+    private static ThreadPoolExecutor executor;
+
+
+    /**
+     * Returns the shared executor, creating it the first time
+     * @return An Executor for addSnapshotListener() and addOnSuccessListener()
+     */
+    public static synchronized Executor get() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(
+                    1, 1,
+                    IDLE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "OMW-snapshots");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }
+            );
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
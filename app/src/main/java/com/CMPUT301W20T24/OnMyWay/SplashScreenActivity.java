@@ -19,7 +19,6 @@ public class SplashScreenActivity extends AppCompatActivity {
     // The tag can't be longer than 23 characters so it is cut off
     private static final String TAG = "OMW/SplashScreenActi...";   // Use this tag for calling Log.d()
     private Date startTime;
-    private DBManager dbManager;
 
 
     // Disable back button for this activity
@@ -66,7 +65,7 @@ public class SplashScreenActivity extends AppCompatActivity {
         }
 
         startTime = new Date(); // Record the start time of the activity
-        dbManager = new DBManager();
+        UserRequestState.init(this);
     }
 
 
@@ -78,8 +77,9 @@ public class SplashScreenActivity extends AppCompatActivity {
 
         // If user is logged in, fetch additional user info and go to a map activity
         if (UserRequestState.isLoggedIn()) {
-            dbManager.setCurrentUserInfoPulledListener(new CurrentUserInfoPulledListener() {
-                // This is called after fetchCurrentUserInfo() finishes
+            // Uses the profile saved on the phone if there is one, so this works without a connection
+            RequestRepository.getInstance(this).loadCurrentUser(new CurrentUserInfoPulledListener() {
+                // This is called once the current user is set
                 public void onCurrentUserInfoPulled() {
                     Log.d(TAG, "Info for current user pulled successfully");
 
@@ -98,8 +98,6 @@ public class SplashScreenActivity extends AppCompatActivity {
                     }
                 }
             });
-
-            dbManager.fetchCurrentUserInfo();   // Fetch additional info for the current user
         }
         else {
             Log.d(TAG, "Go to login page"); // Go to login page if user is not logged in
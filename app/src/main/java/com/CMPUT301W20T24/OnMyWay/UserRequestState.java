@@ -1,12 +1,13 @@
 package com.CMPUT301W20T24.OnMyWay;
 
+import android.content.Context;
 
 /**
  * Stores objects needed for the global state of the application
  * (objects shared between multiple activities, classes in the app simultaneously like
  * current user, current request, etc.). Has methods for updating values in the UserRequestState.
- * Later this will be modified to either fetch data from the database or offline,
- * depending on whether the user has an internet connection or not
+ * Changes are pushed through RequestRepository, so they are saved on the phone first and reach
+ * FireStore once there is a connection
  * @author John
  */
 public class UserRequestState {
@@ -14,8 +15,18 @@ public class UserRequestState {
     static private User currentUser;
     // Make a DBManager so we can interact with the database
     static private DBManager dbManager = new DBManager();
+    static private RequestRepository repository;
     static private Request currentRequest;
 
+    /**
+     * Sets up the repository used to save changes. Call this before pushing any changes
+     * @param context Any context. Only the application context is kept
+     */
+    static public void init(Context context) {
+        repository = RequestRepository.getInstance(context);
+    }
+
+
     /**
      * Returns the currently logged in user. This will be null if the user isn't logged in yet
      * @return A User object of the currently logged in User
@@ -33,7 +44,6 @@ public class UserRequestState {
      * @param newUser The User object we want to change currentUser to
      * @author John
      */
-    // TODO: Modify to allow data to be saved offline
     static public void setCurrentUser(User newUser) {
         if (currentUser == null) {
             currentUser = newUser;
@@ -43,13 +53,13 @@ public class UserRequestState {
 
 
     /**
-     * Calls DBManager to push user info to FireStore. To modify currentUser,
+     * Calls RequestRepository to push user info to FireStore. To modify currentUser,
      * use getCurrentUser() first to get and modify the current User, then call this method to push
      * the changes to the database
      * @author John
      */
     static public void updateCurrentUser() {
-        dbManager.pushUserInfo(getCurrentUser());
+        repository.pushUser(getCurrentUser());
     }
 
 
@@ -90,7 +100,7 @@ public class UserRequestState {
             currentRequest = newRequest;
     }
     static public void updateCurrentRequest() {
-        dbManager.pushRequestInfo(getCurrentRequest());
+        repository.pushRequest(getCurrentRequest());
     }
 
     static public void cancelCurrentRequest() {
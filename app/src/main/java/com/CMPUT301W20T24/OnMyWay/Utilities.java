@@ -6,6 +6,7 @@ import java.security.NoSuchAlgorithmException;
 
 public class Utilities {
     private static final String TAG = "OMW/Utilities";   // Use this tag for call Log.d()
+    private static final double EARTH_RADIUS_KM = 6371.0;  // Mean radius of the earth
 
     /**
      * Generates and returns the MD5 hash of a given string
@@ -126,4 +127,25 @@ public class Utilities {
             return doubleToCheck;
         }
     }
+
+
+    /**
+     * Returns the great-circle distance between two coordinates using the haversine formula
+     * @param startLatitude The latitude of the first coordinate
+     * @param startLongitude The longitude of the first coordinate
+     * @param endLatitude The latitude of the second coordinate
+     * @param endLongitude The longitude of the second coordinate
+     * @return The distance between the coordinates in kilometres
+     */
+    /// Movable Type Scripts, Calculate distance, bearing and more between Latitude/Longitude points
+    /// https://www.movable-type.co.uk/scripts/latlong.html
+    static public double haversineKm(double startLatitude, double startLongitude, double endLatitude, double endLongitude) {
+        double dLat = Math.toRadians(endLatitude - startLatitude);
+        double dLon = Math.toRadians(endLongitude - startLongitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(startLatitude)) * Math.cos(Math.toRadians(endLatitude))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
 }
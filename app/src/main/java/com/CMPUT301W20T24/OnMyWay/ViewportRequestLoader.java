@@ -0,0 +1,142 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Listens only to the open requests around what the driver can see. When the camera stops, the
+ * visible area plus a margin is covered with geohash cells and one listener is kept per cell.
+ * Cells that stay in view keep their listener, so small pans cost nothing, and requests in cells
+ * that leave the view are dropped from the map. When the driver zooms far out, one listener on
+ * the newest open requests is used instead of dozens of cells
+ */
+public class ViewportRequestLoader {
+    private static final String TAG = "OMW/ViewportRequestL...";   // Use this tag for calling Log.d()
+    private static final double MARGIN = 0.25;      // Fraction of the visible height and width added on each side
+    private static final int MAX_CELLS = 9;         // More cells than this and every open request is listened to
+    private static final String EVERYWHERE = "";    // Key of the listener used when zoomed far out
+
+    private DBManager dbManager;
+    private PickupMarkerManager pickupMarkerManager;
+    private Map<String, ListenerRegistration> cellListeners = new HashMap<>();   // By geohash cell
+
+
+    /**
+     * Constructor for ViewportRequestLoader
+     * @param dbManager Used to build the query of each cell
+     * @param pickupMarkerManager Receives the snapshots of every cell
+     */
+    public ViewportRequestLoader(DBManager dbManager, PickupMarkerManager pickupMarkerManager) {
+        this.dbManager = dbManager;
+        this.pickupMarkerManager = pickupMarkerManager;
+    }
+
+
+    /**
+     * Moves the listeners to the cells around the visible area. Call this when the camera stops
+     * @param visible The visible area of the map, from getProjection().getVisibleRegion()
+     */
+    public void onCameraIdle(LatLngBounds visible) {
+        double south = visible.southwest.latitude;
+        double west = visible.southwest.longitude;
+        double north = visible.northeast.latitude;
+        double east = visible.northeast.longitude;
+
+        double width = (east >= west) ? east - west : east + 360 - west;
+        double latMargin = (north - south) * MARGIN;
+        double lonMargin = width * MARGIN;
+
+        Set<String> cells = Collections.singleton(EVERYWHERE);
+        if (width + 2 * lonMargin < 360) {
+            Set<String> viewportCells = Geohash.coveringCells(
+                    Math.max(-90, south - latMargin),
+                    wrapLongitude(west - lonMargin),
+                    Math.min(90, north + latMargin),
+                    wrapLongitude(east + lonMargin)
+            );
+            if (viewportCells.size() <= MAX_CELLS) {
+                cells = viewportCells;
+            }
+        }
+
+        if (cells.equals(cellListeners.keySet())) {
+            return;
+        }
+
+        Iterator<Map.Entry<String, ListenerRegistration>> listeners = cellListeners.entrySet().iterator();
+        while (listeners.hasNext()) {
+            Map.Entry<String, ListenerRegistration> entry = listeners.next();
+            if (!cells.contains(entry.getKey())) {
+                entry.getValue().remove();
+                listeners.remove();
+            }
+        }
+        pickupMarkerManager.retainCells(cells);
+
+        for (String cell : cells) {
+            if (!cellListeners.containsKey(cell)) {
+                cellListeners.put(cell, listen(cell));
+            }
+        }
+        Log.d(TAG, "Listening to " + cells.size() + " cells");
+    }
+
+
+    /**
+     * Removes every listener. Call this when the map is destroyed
+     */
+    public void stop() {
+        for (ListenerRegistration listener : cellListeners.values()) {
+            listener.remove();
+        }
+        cellListeners.clear();
+    }
+
+
+    // Only the documents that changed since the last snapshot of a cell are applied to the map.
+    // Requests that leave the cell's query are reported as REMOVED. Snapshots are decoded on
+    // PickupMarkerManager's background thread, which posts only the marker changes back
+    private ListenerRegistration listen(String cell) {
+        EventListener<QuerySnapshot> listener = new EventListener<QuerySnapshot>() {
+            @Override
+            public void onEvent(@Nullable QuerySnapshot queryDocumentSnapshots, @Nullable FirebaseFirestoreException e) {
+                if (e != null) {
+                    Log.w(TAG, "Listen failed.", e);
+                    return;
+                }
+                pickupMarkerManager.applyChanges(queryDocumentSnapshots);
+            }
+        };
+
+        if (cell.equals(EVERYWHERE)) {
+            return dbManager.openRequests().addSnapshotListener(pickupMarkerManager.getExecutor(), listener);
+        }
+        return dbManager.openRequestsInCell(cell).addSnapshotListener(pickupMarkerManager.getExecutor(), listener);
+    }
+
+
+    // Wrap a longitude that went past the antimeridian back into [-180, 180]
+    private static double wrapLongitude(double longitude) {
+        if (longitude > 180) {
+            return longitude - 360;
+        }
+        else if (longitude < -180) {
+            return longitude + 360;
+        }
+        return longitude;
+    }
+}
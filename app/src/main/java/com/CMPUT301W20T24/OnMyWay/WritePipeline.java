@@ -0,0 +1,171 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ * Sends the writes made within a short window together in one WriteBatch, so a burst of writes
+ * (like a rating followed by a profile update, or a run of status changes) costs one round trip.
+ * Writes to the same document are collapsed by CoalescingWriteQueue. Each write still gets its
+ * own Task, which completes when the batch holding it is committed
+ */
+/// Google Firebase Docs, Transactions and batched writes
+/// https://firebase.google.com/docs/firestore/manage-data/transactions#batched-writes
+public class WritePipeline {
+    private static final String TAG = "OMW/WritePipeline";   // Use this tag for calling Log.d()
+    private static final long WINDOW_MILLIS = 200;           // How long to wait for more writes
+    private static final int MAX_BATCH_WRITES = 500;         // Firestore's limit per batch
+    private static WritePipeline instance;
+
+    private FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private CoalescingWriteQueue<TaskCompletionSource<Void>> queue = new CoalescingWriteQueue<>();
+    private Handler handler = new Handler(Looper.getMainLooper());
+
+    private Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+
+    /**
+     * Returns the pipeline shared by every DBManager, so writes from different screens are batched together
+     * @return The WritePipeline
+     */
+    public static synchronized WritePipeline getInstance() {
+        if (instance == null) {
+            instance = new WritePipeline();
+        }
+        return instance;
+    }
+
+
+    private WritePipeline() {}
+
+
+    /**
+     * Queues a write that replaces a whole document
+     * @param document The document to write
+     * @param data The fields of the document
+     * @return A Task that completes when the write is committed
+     */
+    public Task<Void> set(DocumentReference document, Map<String, Object> data) {
+        return enqueue(document, true, data);
+    }
+
+
+    /**
+     * Queues a write that changes some fields of an existing document
+     * @param document The document to write
+     * @param fields The fields to change
+     * @return A Task that completes when the write is committed
+     */
+    public Task<Void> update(DocumentReference document, Map<String, Object> fields) {
+        return enqueue(document, false, fields);
+    }
+
+
+    /**
+     * Sends everything queued right away instead of waiting for the window to end
+     */
+    public void flush() {
+        handler.removeCallbacks(flush);
+
+        List<CoalescingWriteQueue.Write<TaskCompletionSource<Void>>> writes;
+        while (!(writes = queue.drain(MAX_BATCH_WRITES)).isEmpty()) {
+            commit(writes);
+        }
+    }
+
+
+    private Task<Void> enqueue(DocumentReference document, boolean set, Map<String, Object> fields) {
+        TaskCompletionSource<Void> completion = new TaskCompletionSource<>();
+
+        if (queue.add(document.getPath(), set, fields, completion)) {
+            handler.postDelayed(flush, WINDOW_MILLIS);    // First write of a new window
+        }
+        return completion.getTask();
+    }
+
+
+    // Commit writes in one batch. A batch is all or nothing, so if it fails each write is sent on
+    // its own, and only the writes that really failed report a failure
+    private void commit(final List<CoalescingWriteQueue.Write<TaskCompletionSource<Void>>> writes) {
+        WriteBatch batch = db.batch();
+        for (CoalescingWriteQueue.Write<TaskCompletionSource<Void>> write : writes) {
+            addToBatch(batch, write);
+        }
+
+        batch.commit().addOnCompleteListener(new OnCompleteListener<Void>() {
+            @Override
+            public void onComplete(@NonNull Task<Void> task) {
+                if (task.isSuccessful()) {
+                    for (CoalescingWriteQueue.Write<TaskCompletionSource<Void>> write : writes) {
+                        complete(write, null);
+                    }
+                }
+                else if (writes.size() == 1) {
+                    complete(writes.get(0), task.getException());
+                }
+                else {
+                    Log.d(TAG, "Batch of " + writes.size() + " writes failed, sending them one at a time");
+                    for (CoalescingWriteQueue.Write<TaskCompletionSource<Void>> write : writes) {
+                        commitAlone(write);
+                    }
+                }
+            }
+        });
+    }
+
+
+    private void commitAlone(final CoalescingWriteQueue.Write<TaskCompletionSource<Void>> write) {
+        WriteBatch batch = db.batch();
+        addToBatch(batch, write);
+
+        batch.commit().addOnCompleteListener(new OnCompleteListener<Void>() {
+            @Override
+            public void onComplete(@NonNull Task<Void> task) {
+                complete(write, task.isSuccessful() ? null : task.getException());
+            }
+        });
+    }
+
+
+    private void addToBatch(WriteBatch batch, CoalescingWriteQueue.Write<TaskCompletionSource<Void>> write) {
+        DocumentReference document = db.document(write.path);
+        if (write.isSet()) {
+            batch.set(document, write.getFields());
+        }
+        else {
+            batch.update(document, write.getFields());
+        }
+    }
+
+
+    // Complete the Task of every logical write that was collapsed into this one
+    private static void complete(CoalescingWriteQueue.Write<TaskCompletionSource<Void>> write, Exception e) {
+        for (TaskCompletionSource<Void> completion : write.getCompletions()) {
+            if (e == null) {
+                completion.setResult(null);
+            }
+            else {
+                completion.setException(e);
+            }
+        }
+    }
+}
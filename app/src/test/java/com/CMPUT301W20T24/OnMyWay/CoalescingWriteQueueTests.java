@@ -0,0 +1,99 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.firebase.firestore.FieldValue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the CoalescingWriteQueue class. The method names here correspond to the ones they are testing
+ */
+public class CoalescingWriteQueueTests {
+    private static Map<String, Object> fields(Object... keysAndValues) {
+        Map<String, Object> fields = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            fields.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return fields;
+    }
+
+
+    @Test
+    void testAdd() {
+        CoalescingWriteQueue<Integer> queue = new CoalescingWriteQueue<>();
+
+        // Only the first write of a window should ask for a flush
+        assertTrue(queue.add("riderRequests/a", true, fields("status", "INCOMPLETE", "riderId", "r"), 1));
+        assertFalse(queue.add("riderRequests/a", false, fields("status", "ACTIVE"), 2));
+        assertFalse(queue.add("riderRequests/a", false, fields("driverId", "d"), 3));
+        assertFalse(queue.add("users/r", false, fields("upRatings", 1L), 4));
+        assertEquals(2, queue.size());
+
+        // Updates are merged into the set before them, and every write keeps its completion
+        CoalescingWriteQueue.Write<Integer> request = queue.drain(1).get(0);
+        assertTrue(request.isSet());
+        assertEquals(fields("status", "ACTIVE", "riderId", "r", "driverId", "d"), request.getFields());
+        assertEquals(Arrays.asList(1, 2, 3), request.getCompletions());
+
+        // A set replaces anything queued before it
+        queue.add("users/r", true, fields("firstName", "Ann"), 5);
+        CoalescingWriteQueue.Write<Integer> user = queue.drain(1).get(0);
+        assertTrue(user.isSet());
+        assertEquals(fields("firstName", "Ann"), user.getFields());
+        assertEquals(Arrays.asList(4, 5), user.getCompletions());
+
+        // Updates on their own stay updates
+        assertTrue(queue.add("users/d", false, fields("upRatings", 1L), 6));
+        queue.add("users/d", false, fields("upRatings", 2L, "totalRatings", 3L), 7);
+        CoalescingWriteQueue.Write<Integer> driver = queue.drain(1).get(0);
+        assertFalse(driver.isSet());
+        assertEquals(fields("upRatings", 2L, "totalRatings", 3L), driver.getFields());
+
+        // Deletes and dotted paths merged into a set change the fields they name, since a set
+        // can't hold either. The caller's maps are left alone
+        Map<String, Object> location = fields("lat", 1.0, "lng", 2.0);
+        queue.add("riderRequests/b", true, fields("status", "INCOMPLETE", "driverId", "d", "location", location), 8);
+        queue.add("riderRequests/b", false, fields("driverId", FieldValue.delete(), "location.lat", 3.0, "rating.up", 1L), 9);
+        queue.add("riderRequests/b", false, fields("missing.field", FieldValue.delete()), 10);
+        CoalescingWriteQueue.Write<Integer> merged = queue.drain(1).get(0);
+        assertTrue(merged.isSet());
+        assertEquals(fields("status", "INCOMPLETE", "location", fields("lat", 3.0, "lng", 2.0), "rating", fields("up", 1L)), merged.getFields());
+        assertEquals(fields("lat", 1.0, "lng", 2.0), location);
+    }
+
+
+    @Test
+    void testDrain() {
+        CoalescingWriteQueue<Integer> queue = new CoalescingWriteQueue<>();
+        assertTrue(queue.drain(10).isEmpty());
+
+        queue.add("riderRequests/c", true, fields("status", "INCOMPLETE"), 1);
+        queue.add("riderRequests/a", true, fields("status", "INCOMPLETE"), 2);
+        queue.add("riderRequests/b", true, fields("status", "INCOMPLETE"), 3);
+        queue.add("riderRequests/c", false, fields("status", "CANCELLED"), 4);
+
+        // Oldest first, no more than asked for
+        List<CoalescingWriteQueue.Write<Integer>> writes = queue.drain(2);
+        assertEquals(2, writes.size());
+        assertEquals("riderRequests/c", writes.get(0).path);
+        assertEquals("riderRequests/a", writes.get(1).path);
+        assertEquals(1, queue.size());
+
+        writes = queue.drain(2);
+        assertEquals(1, writes.size());
+        assertEquals("riderRequests/b", writes.get(0).path);
+        assertEquals(0, queue.size());
+
+        // The queue starts a new window once it is empty
+        assertTrue(queue.add("riderRequests/a", false, fields("status", "ACTIVE"), 5));
+    }
+}
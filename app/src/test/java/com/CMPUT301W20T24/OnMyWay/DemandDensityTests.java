@@ -0,0 +1,155 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Tests for the DemandDensity class. The method names here correspond to the ones they are testing
+ */
+public class DemandDensityTests {
+    private static final long NOW = 1585000000;     // Seconds since epoch
+    private static final String CAMPUS = Geohash.encode(53.5232, -113.5263, DemandDensity.PRECISION);
+
+    private Map<String, Object> mockRequestData(String status, long timeCreated, Long timeAccepted) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("requestID", "abc-123");
+        data.put("riderId", "rider");
+        data.put("driverId", timeAccepted == null ? null : "driver");
+        data.put("startLocationName", "University of Alberta");
+        data.put("startLatitude", 53.5232);
+        data.put("startLongitude", -113.5263);
+        data.put("endLocationName", "West Edmonton Mall");
+        data.put("endLatitude", 53.5225);
+        data.put("endLongitude", -113.6242);
+        data.put("paymentCents", 1250L);
+        data.put("paymentCurrency", "CAD");
+        data.put("status", status);
+        data.put("timeCreated", timeCreated);
+        data.put("timeAccepted", timeAccepted);
+        return data;
+    }
+
+
+    @Test
+    void testUpsertDemand() {
+        DemandDensity density = new DemandDensity();
+        density.upsertDemand("a", mockRequestData("INCOMPLETE", NOW - 60, null), NOW);
+        density.upsertDemand("b", mockRequestData("INCOMPLETE", NOW - 120, null), NOW);
+        assertEquals(2, density.demand(CAMPUS, NOW));
+        assertEquals(0, density.supply(CAMPUS, NOW));
+
+        // Applying the same document again changes nothing
+        density.upsertDemand("a", mockRequestData("INCOMPLETE", NOW - 60, null), NOW);
+        assertEquals(2, density.demand(CAMPUS, NOW));
+
+        // Accepted and cancelled requests are no longer demand. Supply only comes from upsertSupply()
+        density.upsertDemand("a", mockRequestData("ACTIVE", NOW - 60, NOW - 30), NOW);
+        density.upsertDemand("b", mockRequestData("CANCELLED", NOW - 120, null), NOW);
+        assertEquals(0, density.demand(CAMPUS, NOW));
+        assertEquals(0, density.supply(CAMPUS, NOW));
+
+        // Requests older than the window are never counted
+        density.upsertDemand("c", mockRequestData("INCOMPLETE", NOW - 3600, null), NOW);
+        assertEquals(0, density.demand(CAMPUS, NOW));
+
+        density.upsertDemand("d", mockRequestData("INCOMPLETE", NOW, null), NOW);
+        density.removeDemand("d", NOW);
+        assertEquals(0, density.demand(CAMPUS, NOW));
+        assertEquals(0, density.demand(Geohash.encode(51.0447, -114.0719, DemandDensity.PRECISION), NOW));
+    }
+
+
+    @Test
+    void testUpsertSupply() {
+        DemandDensity density = new DemandDensity();
+        density.upsertDemand("a", mockRequestData("INCOMPLETE", NOW - 60, null), NOW);
+
+        // A ride accepted now counts, however long ago it was requested
+        density.upsertSupply("old", mockRequestData("ACTIVE", NOW - 3600, NOW - 30), NOW);
+        density.upsertSupply("a", mockRequestData("ACTIVE", NOW - 60, NOW), NOW);
+        density.upsertDemand("a", mockRequestData("ACTIVE", NOW - 60, NOW), NOW);
+        assertEquals(0, density.demand(CAMPUS, NOW));
+        assertEquals(2, density.supply(CAMPUS, NOW));
+
+        // Completing a ride doesn't count it twice, and open requests are not supply
+        density.upsertSupply("a", mockRequestData("COMPLETE", NOW - 60, NOW), NOW);
+        density.upsertSupply("open", mockRequestData("INCOMPLETE", NOW, null), NOW);
+        assertEquals(2, density.supply(CAMPUS, NOW));
+
+        // Rides accepted before the window are never counted
+        density.upsertSupply("older", mockRequestData("COMPLETE", NOW - 7200, NOW - 3600), NOW);
+        assertEquals(2, density.supply(CAMPUS, NOW));
+
+        density.removeSupply("old", NOW);
+        assertEquals(1, density.supply(CAMPUS, NOW));
+    }
+
+
+    @Test
+    void testWindowSlides() {
+        DemandDensity density = new DemandDensity();
+        density.upsertDemand("a", mockRequestData("INCOMPLETE", NOW - 10 * 60, null), NOW);
+        density.upsertDemand("b", mockRequestData("INCOMPLETE", NOW, null), NOW);
+        assertEquals(2, density.demand(CAMPUS, NOW));
+
+        // Ten minutes later "a" is 20 minutes old and has left the 15 minute window
+        long later = NOW + 10 * 60;
+        assertEquals(1, density.demand(CAMPUS, later));
+
+        // Taking back a request that already left the window doesn't touch the others
+        density.removeDemand("a", later);
+        assertEquals(1, density.demand(CAMPUS, later));
+
+        assertEquals(0, density.demand(CAMPUS, NOW + 60 * 60));
+    }
+
+
+    @Test
+    void testForgetExpired() {
+        DemandDensity density = new DemandDensity();
+        density.upsertDemand("a", mockRequestData("INCOMPLETE", NOW - 10 * 60, null), NOW);
+        density.upsertDemand("b", mockRequestData("INCOMPLETE", NOW, null), NOW);
+        density.upsertSupply("c", mockRequestData("ACTIVE", NOW - 20 * 60, NOW - 10 * 60), NOW);
+
+        // Ten minutes later only "b" is still in the window
+        long later = NOW + 10 * 60;
+        density.forgetExpired(later);
+        assertEquals(1, density.size());
+        assertEquals(1, density.demand(CAMPUS, later));
+        assertEquals(0, density.supply(CAMPUS, later));
+    }
+
+
+    @Test
+    void testSurge() {
+        DemandDensity density = new DemandDensity();
+        assertEquals(1.0, density.surgeAt(53.5232, -113.5263, NOW));
+
+        // A couple of requests don't surge
+        for (int i = 0; i < 2; ++i) {
+            density.upsertDemand("open" + i, mockRequestData("INCOMPLETE", NOW, null), NOW);
+        }
+        assertEquals(1.0, density.surge(CAMPUS, NOW));
+
+        // Five open requests and no drivers: 1 + 0.25 * (5 - 1)
+        for (int i = 2; i < 5; ++i) {
+            density.upsertDemand("open" + i, mockRequestData("INCOMPLETE", NOW, null), NOW);
+        }
+        assertEquals(2.0, density.surge(CAMPUS, NOW));
+
+        // Drivers taking rides nearby bring it down: 1 + 0.25 * (5 / 2 - 1), to one decimal
+        density.upsertSupply("taken", mockRequestData("ACTIVE", NOW, NOW), NOW);
+        assertEquals(1.4, density.surge(CAMPUS, NOW));
+
+        // It never goes past the maximum
+        for (int i = 5; i < 40; ++i) {
+            density.upsertDemand("open" + i, mockRequestData("INCOMPLETE", NOW, null), NOW);
+        }
+        assertEquals(3.0, density.surge(CAMPUS, NOW));
+    }
+}
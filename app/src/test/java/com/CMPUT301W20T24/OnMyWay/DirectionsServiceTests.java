@@ -0,0 +1,244 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.LocalGeoApiContext;
+import com.google.maps.PendingResult;
+import com.google.maps.errors.RequestDeniedException;
+import com.google.maps.model.LatLng;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the DirectionsService class. Requests go through a real GeoApiContext and
+ * GeoApiDirectionsFetcher to a local stub of the Directions API, so building the request and
+ * parsing the response are tested too
+ */
+public class DirectionsServiceTests {
+    private static final LatLng EDMONTON = new LatLng(53.5461, -113.4938);
+    private static final LatLng CALGARY = new LatLng(51.0447, -114.0719);
+
+    // Two routes. The first is faster and shorter, so it is the one chosen
+    private static final String TWO_ROUTES = "{\"status\": \"OK\", \"routes\": ["
+            + "{\"overview_polyline\": {\"points\": \"_p~iF~ps|U_ulLnnqC\"},"
+            + " \"legs\": [{\"distance\": {\"value\": 5000, \"text\": \"5 km\"}, \"duration\": {\"value\": 600, \"text\": \"10 mins\"}}]},"
+            + "{\"overview_polyline\": {\"points\": \"_p~iF~ps|U_ulLnnqC_mqNvxq`@\"},"
+            + " \"legs\": [{\"distance\": {\"value\": 8000, \"text\": \"8 km\"}, \"duration\": {\"value\": 900, \"text\": \"15 mins\"}}]}"
+            + "]}";
+
+    // A stub of the Directions API that answers every request with the same body
+    private static class StubServer {
+        HttpServer server;
+        AtomicInteger requestCount = new AtomicInteger();
+        AtomicReference<String> lastPath = new AtomicReference<>();
+        AtomicReference<String> lastQuery = new AtomicReference<>();
+        CountDownLatch respond = new CountDownLatch(0);
+        volatile String response = TWO_ROUTES;
+
+        StubServer() throws Exception {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                requestCount.incrementAndGet();
+                lastPath.set(exchange.getRequestURI().getPath());
+                lastQuery.set(URLDecoder.decode(exchange.getRequestURI().getRawQuery(), "UTF-8"));
+                try {
+                    respond.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = response.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+    }
+
+    // The real fetcher, pointed at the stub server, that remembers being shut down
+    private static class StubFetcher extends GeoApiDirectionsFetcher {
+        boolean shutDown = false;
+
+        StubFetcher(StubServer stub) {
+            super(LocalGeoApiContext.create(stub.url()));
+        }
+
+        @Override
+        public void shutdown() {
+            shutDown = true;
+            super.shutdown();
+        }
+    }
+
+    // Records the result of one call to getDirections
+    private static class RecordingCallback implements PendingResult.Callback<RouteChoice> {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<RouteChoice> result = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicReference<Thread> thread = new AtomicReference<>();
+
+        @Override
+        public void onResult(RouteChoice choice) {
+            result.set(choice);
+            thread.set(Thread.currentThread());
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            error.set(e);
+            done.countDown();
+        }
+    }
+
+    @Test
+    void testGetDirections() throws Exception {
+        StubServer stub = new StubServer();
+        DirectionsService directionsService = new DirectionsService(new StubFetcher(stub));
+        RecordingCallback callback = new RecordingCallback();
+
+        directionsService.getDirections(EDMONTON, CALGARY, callback);
+
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        assertNull(callback.error.get());
+        assertEquals(1, stub.requestCount.get());
+
+        // The request asks for alternatives between the two points
+        assertEquals("/maps/api/directions/json", stub.lastPath.get());
+        assertTrue(stub.lastQuery.get().contains("origin=" + EDMONTON.toUrlValue()));
+        assertTrue(stub.lastQuery.get().contains("destination=" + CALGARY.toUrlValue()));
+        assertTrue(stub.lastQuery.get().contains("alternatives=true"));
+
+        // The response is parsed, and the faster route chosen and decoded
+        RouteChoice choice = callback.result.get();
+        assertEquals(600, choice.getDurationSeconds());
+        assertEquals(5000, choice.getDistanceMeters());
+        assertEquals(1, choice.getAlternatives().size());
+        RouteGeometry route = choice.getChosen();
+        assertEquals(2, route.size());
+        assertEquals(38.5, route.latitude(0), 1e-5);
+        assertEquals(-120.2, route.longitude(0), 1e-5);
+        assertEquals(3, choice.getAlternatives().get(0).size());
+
+        directionsService.shutdown();
+        stub.server.stop(0);
+    }
+
+    @Test
+    void testGetDirectionsWithoutRoutes() throws Exception {
+        StubServer stub = new StubServer();
+        DirectionsService directionsService = new DirectionsService(new StubFetcher(stub));
+
+        // No route between the points is a result, not an error
+        stub.response = "{\"status\": \"ZERO_RESULTS\", \"routes\": []}";
+        RecordingCallback noRoute = new RecordingCallback();
+        directionsService.getDirections(EDMONTON, CALGARY, noRoute);
+        assertTrue(noRoute.done.await(5, TimeUnit.SECONDS));
+        assertNull(noRoute.error.get());
+        assertNull(noRoute.result.get());
+
+        // Errors from the API reach the callback
+        stub.response = "{\"status\": \"REQUEST_DENIED\", \"error_message\": \"The provided API key is invalid.\", \"routes\": []}";
+        RecordingCallback denied = new RecordingCallback();
+        directionsService.getDirections(EDMONTON, CALGARY, denied);
+        assertTrue(denied.done.await(5, TimeUnit.SECONDS));
+        assertTrue(denied.error.get() instanceof RequestDeniedException);
+
+        // Neither was cached
+        assertEquals(2, stub.requestCount.get());
+
+        directionsService.shutdown();
+        stub.server.stop(0);
+    }
+
+    @Test
+    void testConcurrentCallsAreCoalesced() throws Exception {
+        StubServer stub = new StubServer();
+        stub.respond = new CountDownLatch(1);   // Hold the first response until both calls are made
+        DirectionsService directionsService = new DirectionsService(new StubFetcher(stub));
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+
+        directionsService.getDirections(EDMONTON, CALGARY, first);
+        directionsService.getDirections(EDMONTON, CALGARY, second);
+        stub.respond.countDown();
+
+        assertTrue(first.done.await(5, TimeUnit.SECONDS));
+        assertTrue(second.done.await(5, TimeUnit.SECONDS));
+        assertSame(first.result.get(), second.result.get());
+        assertEquals(1, stub.requestCount.get());
+
+        // A different route is not coalesced with the finished one
+        RecordingCallback reverse = new RecordingCallback();
+        directionsService.getDirections(CALGARY, EDMONTON, reverse);
+        assertTrue(reverse.done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, stub.requestCount.get());
+
+        directionsService.shutdown();
+        stub.server.stop(0);
+    }
+
+    @Test
+    void testRepeatedRoutesAreCached() throws Exception {
+        StubServer stub = new StubServer();
+        DirectionsService directionsService = new DirectionsService(new StubFetcher(stub));
+        RecordingCallback first = new RecordingCallback();
+
+        directionsService.getDirections(EDMONTON, CALGARY, first);
+        assertTrue(first.done.await(5, TimeUnit.SECONDS));
+
+        // A few metres away from the first route, so it snaps to the same cache key
+        RecordingCallback nearby = new RecordingCallback();
+        directionsService.getDirections(new LatLng(53.54612, -113.49382), CALGARY, nearby);
+
+        // Answered from the cache, but still on a worker thread so callers never run on the UI thread
+        assertTrue(nearby.done.await(5, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), nearby.thread.get());
+        assertSame(first.result.get(), nearby.result.get());
+        assertEquals(1, stub.requestCount.get());
+
+        directionsService.shutdown();
+        stub.server.stop(0);
+    }
+
+    @Test
+    void testShutdown() throws Exception {
+        StubServer stub = new StubServer();
+        StubFetcher fetcher = new StubFetcher(stub);
+        DirectionsService directionsService = new DirectionsService(fetcher);
+
+        directionsService.shutdown();
+        assertTrue(fetcher.shutDown);
+
+        // Requests made after shutdown fail instead of hanging
+        RecordingCallback callback = new RecordingCallback();
+        directionsService.getDirections(EDMONTON, CALGARY, callback);
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        assertNotNull(callback.error.get());
+        assertEquals(0, stub.requestCount.get());
+
+        stub.server.stop(0);
+    }
+}
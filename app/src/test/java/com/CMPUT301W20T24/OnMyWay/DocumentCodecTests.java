@@ -0,0 +1,154 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+/**
+ * Tests for the DocumentCodec class. The method names here correspond to the ones they are testing
+ */
+public class DocumentCodecTests {
+    private Map<String, Object> mockUserData() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("firstName", "John");
+        data.put("lastName", "Doe");
+        data.put("isDriver", true);
+        data.put("email", "johndoe@example.com");
+        data.put("phone", "(123) 456-7890");
+        data.put("upRatings", 3L);
+        data.put("totalRatings", 4L);
+        return data;
+    }
+
+    private Map<String, Object> mockRequestData() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("requestID", "abc-123");
+        data.put("riderId", "rider");
+        data.put("driverId", "driver");
+        data.put("startLocationName", "University of Alberta");
+        data.put("startLatitude", 53.5232);
+        data.put("startLongitude", -113.5263);
+        data.put("endLocationName", "West Edmonton Mall");
+        data.put("endLatitude", 53.5225);
+        data.put("endLongitude", -113.6242);
+        data.put("paymentCents", 1250L);
+        data.put("paymentCurrency", "CAD");
+        data.put("status", "ACTIVE");
+        data.put("timeCreated", 1585777000L);
+        data.put("timeAccepted", 1585777585L);
+        return data;
+    }
+
+
+    @Test
+    void testDecodeUser() {
+        User user = DocumentCodec.decodeUser("0000", mockUserData());
+        assertEquals("0000", user.getUserId());
+        assertEquals("John", user.getFirstName());
+        assertEquals("johndoe@example.com", user.getEmail());
+
+        // Whole numbers written from a map before reaching Firestore are Integers
+        Map<String, Object> data = mockUserData();
+        data.put("upRatings", 3);
+        assertEquals("John", DocumentCodec.decodeUser("0000", data).getFirstName());
+
+        // Missing and wrongly typed fields are counted instead of throwing
+        long malformed = DocumentCodec.getMalformedCount();
+
+        data = mockUserData();
+        data.remove("email");
+        assertNull(DocumentCodec.decodeUser("0000", data));
+
+        data = mockUserData();
+        data.put("isDriver", "yes");
+        assertNull(DocumentCodec.decodeUser("0000", data));
+
+        assertNull(DocumentCodec.decodeUser("0000", null));
+        assertEquals(malformed + 3, DocumentCodec.getMalformedCount());
+    }
+
+
+    @Test
+    void testDecodeRequest() {
+        // The requestID it was stored with is kept, instead of a new one being generated
+        Request request = DocumentCodec.decodeRequest("abc-123", mockRequestData());
+        assertEquals("abc-123", request.getRequestId());
+        assertEquals("driver", request.getDriverId());
+        assertEquals(53.5232, request.getStartLatitude());
+        assertEquals(Money.ofCents(1250), request.getPaymentAmount());
+
+        // Coordinates that happen to be whole numbers come back as Longs
+        Map<String, Object> data = mockRequestData();
+        data.put("endLongitude", -113L);
+        request = DocumentCodec.decodeRequest("abc-123", data);
+        assertEquals(-113.0, request.getEndLongitude());
+
+        // Older requests store the amount in dollars, as a string or a number
+        data = mockRequestData();
+        data.remove("paymentCents");
+        data.put("paymentAmount", "12.5");
+        assertEquals(Money.ofCents(1250), DocumentCodec.decodeRequest("abc-123", data).getPaymentAmount());
+        data.put("paymentAmount", 7.99);
+        assertEquals(Money.ofCents(799), DocumentCodec.decodeRequest("abc-123", data).getPaymentAmount());
+
+        long malformed = DocumentCodec.getMalformedCount();
+
+        data = mockRequestData();
+        data.remove("startLatitude");
+        assertNull(DocumentCodec.decodeRequest("abc-123", data));
+
+        // Values the Request class rejects are counted too
+        data = mockRequestData();
+        data.put("status", "LOST");
+        assertNull(DocumentCodec.decodeRequest("abc-123", data));
+
+        assertEquals(malformed + 2, DocumentCodec.getMalformedCount());
+    }
+
+
+    @Test
+    void testDecodeHistory() {
+        DriverHistoryInfo row = DocumentCodec.decodeHistory("abc-123", mockRequestData());
+        assertEquals("abc-123", row.getHistory_id());
+        assertEquals("University of Alberta", row.getHistory_start());
+        assertEquals(Long.valueOf(1585777585L), row.getHistory_time());
+
+        Map<String, Object> data = mockRequestData();
+        data.remove("timeAccepted");
+        assertNull(DocumentCodec.decodeHistory("abc-123", data));
+    }
+
+
+    @Test
+    void testDecodeMarker() {
+        Map<String, Object> data = mockRequestData();
+        data.put("status", "INCOMPLETE");
+        data.remove("driverId");
+
+        MarkerStoreObject marker = DocumentCodec.decodeMarker("doc", data);
+        assertEquals("doc", marker.getDocumentId());
+        assertEquals(Money.ofCents(1250), marker.getPaymentAmount());
+        assertNull(marker.getDriverUsername());
+
+        // Decoding into an existing tag updates it in place
+        data.put("startLatitude", 53.6);
+        assertSame(marker, DocumentCodec.decodeMarker("doc", data, marker));
+        assertEquals(53.6, marker.getStartLatitude());
+
+        // A malformed copy leaves the existing tag as it was
+        data.remove("paymentCents");
+        data.put("paymentAmount", "twelve");
+        data.put("startLatitude", 0.0);
+        assertNull(DocumentCodec.decodeMarker("doc", data, marker));
+        assertEquals(53.6, marker.getStartLatitude());
+
+        data.remove("paymentAmount");
+        assertNull(DocumentCodec.decodeMarker("doc", data));
+    }
+}
@@ -0,0 +1,86 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.model.DirectionsLeg;
+import com.google.maps.model.DirectionsResult;
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.Distance;
+import com.google.maps.model.Duration;
+import com.google.maps.model.EncodedPolyline;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * Tests for the FareEngine class. The method names here correspond to the ones they are testing
+ */
+public class FareEngineTests {
+    // $2.50 to start, $1.20 a kilometre, $0.30 a minute, at least $6 and at most double
+    private static final RateCard CITY = new RateCard(250, 120, 30, 600, 2.0);
+
+
+    private RouteChoice mockRoute(long meters, long seconds) {
+        DirectionsLeg leg = new DirectionsLeg();
+        leg.distance = new Distance();
+        leg.distance.inMeters = meters;
+        leg.duration = new Duration();
+        leg.duration.inSeconds = seconds;
+
+        DirectionsRoute route = new DirectionsRoute();
+        route.overviewPolyline = new EncodedPolyline("_p~iF~ps|U");
+        route.legs = new DirectionsLeg[] {leg};
+
+        DirectionsResult result = new DirectionsResult();
+        result.routes = new DirectionsRoute[] {route};
+        return RouteChoice.choose(result);
+    }
+
+
+    @Test
+    void testQuote() {
+        FareEngine engine = new FareEngine(CITY);
+
+        // 250 + 120 * 10 + 30 * 20
+        assertEquals(Money.ofCents(2050), engine.quote(10000, 1200, 1));
+        assertEquals(Money.ofCents(2050), engine.quote(mockRoute(10000, 1200), 1));
+
+        // Surge multiplies the whole fare, and is clamped to the rate card
+        assertEquals(Money.ofCents(3075), engine.quote(10000, 1200, 1.5));
+        assertEquals(Money.ofCents(4100), engine.quote(10000, 1200, 5));
+        assertEquals(Money.ofCents(2050), engine.quote(10000, 1200, 0.5));
+        assertEquals(Money.ofCents(2050), engine.quote(10000, 1200, Double.NaN));
+
+        // Short rides cost the minimum fare
+        assertEquals(Money.ofCents(600), engine.quote(500, 60, 1));
+
+        assertThrows(IllegalArgumentException.class, () -> engine.quote(-1, 0, 1));
+    }
+
+
+    @Test
+    void testEstimate() {
+        // The default card charges a dollar per straight-line kilometre, with a $7.99 minimum
+        FareEngine engine = new FareEngine(RateCard.DEFAULT);
+
+        // University of Alberta to Edmonton International Airport is about 24km
+        Money fare = engine.estimate(53.5232, -113.5263, 53.3097, -113.5800, 1);
+        assertEquals(2400, fare.getCents(), 10);
+
+        assertEquals(Money.ofCents(799), engine.estimate(53.5232, -113.5263, 53.5232, -113.5263, 1));
+
+        // Time is estimated at 30km/h, so 2km takes 4 minutes
+        FareEngine city = new FareEngine(CITY);
+        double km = Utilities.haversineKm(53.5232, -113.5263, 53.5412, -113.5263);
+        assertEquals(Math.round(250 + 120 * km + 30 * km * 2), city.estimate(53.5232, -113.5263, 53.5412, -113.5263, 1).getCents());
+    }
+
+
+    @Test
+    void testRateCard() {
+        assertThrows(IllegalArgumentException.class, () -> new RateCard(-1, 100, 0, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RateCard(0, 100, 0, 0, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> new RateCard(0, 100, 0, 0, Double.NaN));
+    }
+}
@@ -0,0 +1,191 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.model.LatLng;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the GeocodingService class, run against a local stub backend. The method names here
+ * correspond to the ones they are testing
+ */
+public class GeocodingServiceTests {
+    private static final Executor DIRECT = Runnable::run;
+
+    // Knows one place, and counts how often it is asked
+    private static class StubBackend implements GeocodingBackend {
+        int calls = 0;
+        boolean offline = false;
+
+        @Override
+        public LatLng geocode(String query) throws IOException {
+            ++calls;
+            if (offline) {
+                throw new IOException("No connection");
+            }
+            return query.toLowerCase().contains("edmonton") ? new LatLng(53.5461, -113.4938) : null;
+        }
+
+        @Override
+        public List<Place> suggest(String prefix, int limit) throws IOException {
+            ++calls;
+            if (offline) {
+                throw new IOException("No connection");
+            }
+            if (!"edmonton".startsWith(prefix.toLowerCase())) {
+                return Collections.emptyList();
+            }
+            return Arrays.asList(
+                    new Place("Edmonton, AB", new LatLng(53.5461, -113.4938)),
+                    new Place("Edmonton International Airport", new LatLng(53.3097, -113.5800))
+            ).subList(0, Math.min(limit, 2));
+        }
+    }
+
+    private static class MapStore implements GeocodingService.Store {
+        Map<String, String> values = new HashMap<>();
+
+        @Override
+        public String get(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            values.put(key, value);
+        }
+    }
+
+    // Keeps the last result it was called with
+    private static class MockListener implements GeocodeListener {
+        List<LatLng> results = new ArrayList<>();
+        List<Exception> errors = new ArrayList<>();
+
+        @Override
+        public void onGeocoded(LatLng location) {
+            results.add(location);
+        }
+
+        @Override
+        public void onGeocodeFailed(Exception e) {
+            errors.add(e);
+        }
+    }
+
+
+    @Test
+    void testGeocode() {
+        StubBackend backend = new StubBackend();
+        MapStore store = new MapStore();
+        GeocodingService service = new GeocodingService(backend, store, DIRECT, DIRECT);
+        MockListener listener = new MockListener();
+
+        service.geocode("Edmonton, AB", listener);
+        assertEquals(53.5461, listener.results.get(0).lat);
+        assertEquals(1, backend.calls);
+
+        // The same place typed differently comes from memory
+        service.geocode("  edmonton ,ab. ", listener);
+        assertEquals(-113.4938, listener.results.get(1).lng);
+        assertEquals(1, backend.calls);
+
+        // A new service with the same store doesn't call the backend either
+        GeocodingService restarted = new GeocodingService(backend, store, DIRECT, DIRECT);
+        restarted.geocode("EDMONTON, AB", listener);
+        assertEquals(53.5461, listener.results.get(2).lat);
+        assertEquals(1, backend.calls);
+
+        // Places that don't exist aren't cached, and empty queries never reach the backend
+        service.geocode("Nowhere", listener);
+        service.geocode("   ", listener);
+        assertNull(listener.results.get(3));
+        assertNull(listener.results.get(4));
+        assertEquals(2, backend.calls);
+
+        backend.offline = true;
+        service.geocode("Calgary", listener);
+        assertEquals(1, listener.errors.size());
+    }
+
+    @Test
+    void testGeocodeCancelled() {
+        StubBackend backend = new StubBackend();
+        List<Runnable> queued = new ArrayList<>();
+        GeocodingService service = new GeocodingService(backend, new MapStore(), queued::add, DIRECT);
+        MockListener listener = new MockListener();
+
+        // A lookup replaced before it starts never calls the backend or its listener
+        GeocodingService.Lookup first = service.geocode("Edmonton", listener);
+        first.cancel();
+        service.geocode("Edmonton, AB", listener);
+        for (Runnable runnable : queued) {
+            runnable.run();
+        }
+
+        assertTrue(first.isCancelled());
+        assertEquals(1, backend.calls);
+        assertEquals(1, listener.results.size());
+    }
+
+    @Test
+    void testSuggest() {
+        StubBackend backend = new StubBackend();
+        GeocodingService service = new GeocodingService(backend, new MapStore(), DIRECT, DIRECT);
+        List<List<Place>> suggested = new ArrayList<>();
+        PlaceSuggestionsListener listener = suggested::add;
+
+        service.suggest("Edmo", 5, listener);
+        assertEquals(2, suggested.get(0).size());
+        assertEquals(1, backend.calls);
+
+        // The same prefix is answered from memory, and so is geocoding a suggested place
+        service.suggest(" edmo ", 5, listener);
+        assertEquals(2, suggested.get(1).size());
+        MockListener geocoded = new MockListener();
+        service.geocode("Edmonton International Airport", geocoded);
+        assertEquals(53.3097, geocoded.results.get(0).lat);
+        assertEquals(1, backend.calls);
+
+        // Failures and empty prefixes suggest nothing
+        backend.offline = true;
+        service.suggest("Calg", 5, listener);
+        service.suggest(" ", 5, listener);
+        assertTrue(suggested.get(2).isEmpty());
+        assertTrue(suggested.get(3).isEmpty());
+        assertEquals(2, backend.calls);
+    }
+
+
+    @Test
+    void testRemember() {
+        StubBackend backend = new StubBackend();
+        GeocodingService service = new GeocodingService(backend, new MapStore(), DIRECT, DIRECT);
+        MockListener listener = new MockListener();
+
+        service.remember(new Place("Rutherford Library", new LatLng(53.5266, -113.5218)));
+        service.geocode("rutherford library", listener);
+        assertEquals(-113.5218, listener.results.get(0).lng);
+        assertEquals(0, backend.calls);
+    }
+
+
+    @Test
+    void testNormalize() {
+        assertEquals("edmonton, ab", GeocodingService.normalize("  Edmonton ,  AB. "));
+        assertEquals("west edmonton mall", GeocodingService.normalize("West\tEdmonton   Mall"));
+        assertEquals("", GeocodingService.normalize("  "));
+    }
+}
@@ -0,0 +1,97 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the Geohash class. The method names here correspond to the ones they are testing
+ */
+public class GeohashTests {
+    @Test
+    void testEncode() {
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        assertEquals("u4pru", Geohash.encode(57.64911, 10.40744, 5));
+        assertEquals("c3x2", Geohash.encode(53.5461, -113.4938, 4));
+
+        // A longer geohash always starts with the shorter one for the same point
+        assertTrue(Geohash.encode(53.5461, -113.4938, 9).startsWith(Geohash.encode(53.5461, -113.4938, 5)));
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            Geohash.encode(91, 0, 5);   // Latitude out of range should throw exception
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            Geohash.encode(0, 0, 0);    // Precision out of range should throw exception
+        });
+    }
+
+    @Test
+    void testPrecisionForRadius() {
+        assertEquals(5, Geohash.precisionForRadius(53.5, 1));
+        assertEquals(3, Geohash.precisionForRadius(53.5, 22));
+        assertEquals(1, Geohash.precisionForRadius(53.5, 10000));
+    }
+
+    @Test
+    void testCoveringCells() {
+        double lat = 53.5461;
+        double lon = -113.4938;
+        Set<String> cells = Geohash.coveringCells(lat, lon, 22);
+
+        assertEquals(9, cells.size());
+        assertTrue(cells.contains(Geohash.encode(lat, lon, 3)));
+
+        // Points just inside the radius in every direction should be in one of the cells
+        double[][] offsets = {{0.19, 0}, {-0.19, 0}, {0, 0.32}, {0, -0.32}, {0.13, 0.23}, {-0.13, -0.23}};
+        for (double[] offset : offsets) {
+            double pointLat = lat + offset[0];
+            double pointLon = lon + offset[1];
+            assertTrue(Utilities.haversineKm(lat, lon, pointLat, pointLon) < 22);
+            assertTrue(cells.contains(Geohash.encode(pointLat, pointLon, 3)));
+        }
+
+        // Cells wrap around the antimeridian
+        assertTrue(Geohash.coveringCells(0, 179.999, 5).contains(Geohash.encode(0, -179.999, 4)));
+    }
+
+
+    @Test
+    void testPrecisionForBounds() {
+        // About what a phone shows at zoom 15 in Edmonton
+        assertEquals(5, Geohash.precisionForBounds(53.540, -113.500, 53.548, -113.488));
+        assertEquals(1, Geohash.precisionForBounds(-80, -170, 80, 170));
+
+        // Crossing the antimeridian measures the short way around
+        assertEquals(Geohash.precisionForBounds(0, 179.99, 0.01, 180), Geohash.precisionForBounds(0, 179.995, 0.01, -179.995));
+    }
+
+    @Test
+    void testCoveringCellsForBounds() {
+        double south = 53.540, west = -113.500, north = 53.548, east = -113.488;
+        Set<String> cells = Geohash.coveringCells(south, west, north, east);
+        int precision = Geohash.precisionForBounds(south, west, north, east);
+
+        assertTrue(cells.size() <= 4);
+
+        // Every point in the box is in one of the cells
+        for (double lat = south; lat <= north; lat += 0.001) {
+            for (double lon = west; lon <= east; lon += 0.001) {
+                assertTrue(cells.contains(Geohash.encode(lat, lon, precision)));
+            }
+        }
+
+        // Boxes bigger than a precision 1 cell are stepped across
+        assertEquals(32, Geohash.coveringCells(-90, -180, 90, 180).size());
+
+        // Boxes crossing the antimeridian cover both sides
+        cells = Geohash.coveringCells(-1, 179, 1, -179);
+        precision = Geohash.precisionForBounds(-1, 179, 1, -179);
+        assertTrue(cells.contains(Geohash.encode(0, 179.5, precision)));
+        assertTrue(cells.contains(Geohash.encode(0, -179.5, precision)));
+    }
+}
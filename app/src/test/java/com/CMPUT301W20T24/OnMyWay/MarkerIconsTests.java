@@ -0,0 +1,37 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Tests for the MarkerIcons class. The method names here correspond to the ones they are testing
+ */
+public class MarkerIconsTests {
+    @Test
+    void testClusterLabel() {
+        assertEquals("2", MarkerIcons.clusterLabel(2));
+        assertEquals("9", MarkerIcons.clusterLabel(9));
+        assertEquals("10+", MarkerIcons.clusterLabel(24));
+        assertEquals("25+", MarkerIcons.clusterLabel(25));
+        assertEquals("100+", MarkerIcons.clusterLabel(5000));
+    }
+
+    @Test
+    void testPriceLabel() {
+        // Under $10 prices are rounded to the nearest dollar
+        assertEquals("$0", MarkerIcons.priceLabel(0));
+        assertEquals("$7", MarkerIcons.priceLabel(749));
+        assertEquals("$8", MarkerIcons.priceLabel(750));
+        assertEquals("$10", MarkerIcons.priceLabel(999));
+
+        // Higher prices share a label with everything in their step, so a pin is drawn per step
+        assertEquals("$10+", MarkerIcons.priceLabel(1000));
+        assertEquals("$10+", MarkerIcons.priceLabel(1499));
+        assertEquals("$45+", MarkerIcons.priceLabel(4999));
+        assertEquals("$50+", MarkerIcons.priceLabel(5999));
+        assertEquals("$90+", MarkerIcons.priceLabel(9999));
+        assertEquals("$100+", MarkerIcons.priceLabel(123456));
+    }
+}
@@ -0,0 +1,57 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the Money class. The method names here correspond to the ones they are testing
+ */
+public class MoneyTests {
+    @Test
+    void testParse() {
+        assertEquals(1250, Money.parse("12.50").getCents());
+        assertEquals(1250, Money.parse("12.5").getCents());
+        assertEquals(1250, Money.parse(" $12.50 ").getCents());
+        assertEquals(1200, Money.parse("12").getCents());
+        assertEquals(799, Money.parse("7.99").getCents());     // 7.99f is 7.98999...
+        assertEquals(13, Money.parse("0.125").getCents());     // Half a cent rounds up
+        assertEquals("CAD", Money.parse("1").getCurrency());
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            Money.parse("twelve");
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            Money.parse("-1.00");       // Fares can't be negative
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            Money.parse(null);
+        });
+    }
+
+
+    @Test
+    void testFormat() {
+        assertEquals("$12.50", Money.ofCents(1250).format());
+        assertEquals("$0.05", Money.ofCents(5).format());
+        assertEquals("$7.00", Money.ofCents(700).format());
+
+        // toString() is read back by parse()
+        assertEquals("12.50", Money.ofCents(1250).toString());
+        assertEquals(Money.ofCents(1205), Money.parse(Money.ofCents(1205).toString()));
+    }
+
+
+    @Test
+    void testPlus() {
+        assertEquals(Money.ofCents(1000), Money.ofCents(799).plus(Money.ofCents(201)));
+        assertTrue(Money.ofCents(799).compareTo(Money.ofCents(800)) < 0);
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            Money.ofCents(100).plus(new Money(100, "USD"));     // Currencies can't be mixed
+        });
+    }
+}
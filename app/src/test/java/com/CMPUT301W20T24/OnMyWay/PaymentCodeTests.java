@@ -0,0 +1,34 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * Tests for the PaymentCode class. The method names here correspond to the ones they are testing
+ */
+public class PaymentCodeTests {
+    @Test
+    void testEncodeDecode() {
+        PaymentCode code = new PaymentCode("abc-123", Money.ofCents(1250));
+        assertEquals("abc-123;1250;CAD", code.encode());
+
+        PaymentCode decoded = PaymentCode.decode(code.encode());
+        assertEquals("abc-123", decoded.getRequestId());
+        assertEquals(Money.ofCents(1250), decoded.getAmount());
+
+        // Codes shown by older versions of the app have the amount in dollars
+        decoded = PaymentCode.decode("abc-123; 12.50");
+        assertEquals("abc-123", decoded.getRequestId());
+        assertEquals(Money.ofCents(1250), decoded.getAmount());
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            PaymentCode.decode("https://example.com");
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            PaymentCode.decode("abc-123;twelve;CAD");
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the PickupClusterer class. The method names here correspond to the ones they are testing
+ */
+public class PickupClustererTests {
+    // Sizes of the clusters, largest first
+    private static List<Integer> sizes(Collection<PickupClusterer.Cluster> clusters) {
+        List<Integer> sizes = new ArrayList<>();
+        for (PickupClusterer.Cluster cluster : clusters) {
+            sizes.add(cluster.size());
+        }
+        sizes.sort((a, b) -> b - a);
+        return sizes;
+    }
+
+
+    @Test
+    void testClustersAt() {
+        PickupClusterer clusterer = new PickupClusterer();
+
+        // Three requests a couple hundred metres apart downtown, and one at the university
+        clusterer.put("a", 53.5444, -113.4909);
+        clusterer.put("b", 53.5450, -113.4920);
+        clusterer.put("c", 53.5438, -113.4895);
+        clusterer.put("d", 53.5232, -113.5263);
+
+        // Zoomed out, everything in the city is one cluster drawn at the average position
+        Collection<PickupClusterer.Cluster> clusters = clusterer.clustersAt(9);
+        assertEquals(1, clusters.size());
+        PickupClusterer.Cluster city = clusters.iterator().next();
+        assertEquals(4, city.size());
+        assertEquals((53.5444 + 53.5450 + 53.5438 + 53.5232) / 4, city.getLatitude(), 1e-9);
+
+        // At street level downtown is still one cluster, and the university is on its own
+        assertEquals(Arrays.asList(3, 1), sizes(clusterer.clustersAt(14.7f)));
+
+        // Zoomed all the way in every request is on its own
+        assertEquals(Arrays.asList(1, 1, 1, 1), sizes(clusterer.clustersAt(19)));
+    }
+
+
+    @Test
+    void testPut() {
+        PickupClusterer clusterer = new PickupClusterer();
+        clusterer.put("a", 53.5444, -113.4909);
+        clusterer.put("b", 53.5450, -113.4920);
+        assertEquals(Arrays.asList(2), sizes(clusterer.clustersAt(14)));
+
+        // Grids already built are updated in place when a request moves, is added or is removed
+        clusterer.put("b", 53.5232, -113.5263);
+        assertEquals(Arrays.asList(1, 1), sizes(clusterer.clustersAt(14)));
+
+        clusterer.put("c", 53.5233, -113.5262);
+        assertEquals(Arrays.asList(2, 1), sizes(clusterer.clustersAt(14)));
+
+        clusterer.remove("b");
+        clusterer.remove("missing");
+        assertEquals(Arrays.asList(1, 1), sizes(clusterer.clustersAt(14)));
+        assertEquals(2, clusterer.size());
+
+        // Putting the same position again changes nothing
+        clusterer.put("c", 53.5233, -113.5262);
+        assertEquals(2, clusterer.size());
+
+        clusterer.remove("a");
+        clusterer.remove("c");
+        assertTrue(clusterer.clustersAt(14).isEmpty());
+    }
+}
@@ -0,0 +1,157 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the PickupIndex class. The method names here correspond to the ones they are testing
+ */
+public class PickupIndexTests {
+    private static final int SYNTHETIC_REQUESTS = 1000;
+
+    private Map<String, Object> mockRequestData(double startLatitude, double startLongitude, long paymentCents) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("requestID", "abc-123");
+        data.put("riderId", "rider");
+        data.put("startLocationName", "University of Alberta");
+        data.put("startLatitude", startLatitude);
+        data.put("startLongitude", startLongitude);
+        data.put("endLocationName", "West Edmonton Mall");
+        data.put("endLatitude", 53.5225);
+        data.put("endLongitude", -113.6242);
+        data.put("paymentCents", paymentCents);
+        data.put("paymentCurrency", "CAD");
+        data.put("status", "INCOMPLETE");
+        return data;
+    }
+
+    // A synthetic collection of requests spread over about 20km around downtown Edmonton
+    private PickupIndex syntheticIndex() {
+        PickupIndex index = new PickupIndex();
+        Random random = new Random(301);
+        for (int i = 0; i < SYNTHETIC_REQUESTS; ++i) {
+            index.upsert("doc" + i, mockRequestData(
+                    53.45 + random.nextDouble() * 0.2,
+                    -113.6 + random.nextDouble() * 0.3,
+                    500 + random.nextInt(5000)
+            ));
+        }
+        return index;
+    }
+
+    // The number of requests a delta shows, counting every request in its clusters
+    private int shownRequests(PickupIndex.Delta delta) {
+        int shown = delta.singles.size();
+        for (PickupIndex.ClusterView cluster : delta.clusters) {
+            shown += cluster.size;
+        }
+        return shown;
+    }
+
+
+    @Test
+    void testUpsert() {
+        PickupIndex index = new PickupIndex();
+        index.upsert("doc", mockRequestData(53.5232, -113.5263, 1250));
+        assertEquals(1, index.size());
+
+        // Requests that are no longer open, or malformed, are dropped
+        Map<String, Object> data = mockRequestData(53.5232, -113.5263, 1250);
+        data.put("status", "ACTIVE");
+        index.upsert("doc", data);
+        assertEquals(0, index.size());
+
+        data = mockRequestData(53.5232, -113.5263, 1250);
+        data.remove("startLatitude");
+        index.upsert("doc", data);
+        assertEquals(0, index.size());
+    }
+
+
+    @Test
+    void testRender() {
+        PickupIndex index = syntheticIndex();
+
+        // Zoomed out over the city, 1000 requests become a handful of cluster markers
+        PickupIndex.Delta delta = index.render(11);
+        assertEquals(SYNTHETIC_REQUESTS, shownRequests(delta));
+        assertTrue(delta.size() < 50);
+
+        // Nothing changed, so there is nothing for the main thread to do
+        assertTrue(index.render(11).isEmpty());
+
+        // Changing one request only sends that request
+        delta = index.render(19);
+        assertEquals(SYNTHETIC_REQUESTS, delta.singles.size());
+        index.upsert("doc7", mockRequestData(53.5, -113.5, 999));
+        delta = index.render(19);
+        assertEquals(1, delta.size());
+        assertEquals("doc7", delta.singles.get(0).getDocumentId());
+
+        // The tags handed out are copies, so later decodes don't touch them
+        MarkerStoreObject handedOut = delta.singles.get(0);
+        index.upsert("doc7", mockRequestData(53.6, -113.5, 999));
+        assertEquals(53.5, handedOut.getStartLatitude());
+
+        index.remove("doc7");
+        delta = index.render(19);
+        assertEquals(Collections.singletonList("doc7"), delta.removedSingles);
+    }
+
+
+    @Test
+    void testBestNextRide() {
+        Map<String, Map<String, Object>> nearby = new HashMap<>();
+        Random random = new Random(301);
+        for (int i = 0; i < SYNTHETIC_REQUESTS; ++i) {
+            nearby.put("doc" + i, mockRequestData(53.45 + random.nextDouble() * 0.2, -113.6 + random.nextDouble() * 0.3, 500 + random.nextInt(5000)));
+        }
+
+        // Requests loaded for the map don't count, only the ones found around the driver
+        PickupIndex index = new PickupIndex();
+        index.upsert("on-screen", mockRequestData(53.5461, -113.4938, 1250));
+        RideMatcher.Match match = index.bestNextRide(53.5461, -113.4938, nearby);
+        assertTrue(match.documentId.startsWith("doc"));
+        MarkerStoreObject best = index.copyOf(match.documentId);
+        assertEquals(match.documentId, best.getDocumentId());
+
+        // Once it is accepted, the next best ride is a different one further away
+        nearby.get(match.documentId).put("status", "ACTIVE");
+        RideMatcher.Match next = index.bestNextRide(53.5461, -113.4938, nearby);
+        assertTrue(next.pickupSeconds >= match.pickupSeconds);
+        assertTrue(!next.documentId.equals(match.documentId));
+
+        // Requests the query no longer returns are dropped
+        nearby.remove(next.documentId);
+        assertTrue(!index.bestNextRide(53.5461, -113.4938, nearby).documentId.equals(next.documentId));
+        assertEquals(null, index.copyOf(next.documentId));
+
+        // Nothing is in range of Calgary
+        assertEquals(null, index.bestNextRide(51.0447, -114.0719, nearby));
+    }
+
+
+    @Test
+    void testRetainCells() {
+        PickupIndex index = new PickupIndex();
+        index.upsert("inside", mockRequestData(53.5461, -113.4938, 1250));
+        index.upsert("outside", mockRequestData(51.0447, -114.0719, 1250));
+        index.render(15);
+
+        index.retainCells(Collections.singleton(Geohash.encode(53.5461, -113.4938, 5)));
+        assertEquals(1, index.size());
+        assertEquals(Collections.singletonList("outside"), index.render(15).removedSingles);
+
+        // The empty prefix stands for every cell
+        index.retainCells(Collections.singleton(""));
+        assertEquals(1, index.size());
+    }
+}
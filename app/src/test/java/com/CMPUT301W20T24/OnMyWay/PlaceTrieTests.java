@@ -0,0 +1,63 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.model.LatLng;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the PlaceTrie class. The method names here correspond to the ones they are testing
+ */
+public class PlaceTrieTests {
+
+    private Place mockPlace(String name) {
+        return new Place(name, new LatLng(53.5232, -113.5263));
+    }
+
+
+    @Test
+    void testAdd() {
+        PlaceTrie trie = new PlaceTrie();
+        trie.add(mockPlace("University of Alberta"));
+        trie.add(mockPlace("university  of alberta."));
+        trie.add(mockPlace("   "));
+        assertEquals(1, trie.size());
+
+        // The newer name is the one suggested
+        assertEquals("university  of alberta.", trie.suggest("uni", 5).get(0).getName());
+
+        trie.add(mockPlace("West Edmonton Mall"));
+        assertEquals(2, trie.size());
+    }
+
+
+    @Test
+    void testSuggest() {
+        PlaceTrie trie = new PlaceTrie();
+        trie.add(mockPlace("West Edmonton Mall"));
+        trie.add(mockPlace("Westmount"));
+        trie.add(mockPlace("Westmount"));
+        trie.add(mockPlace("Whyte Avenue"));
+        trie.add(mockPlace("Westbrook"));
+
+        // Most used first, then alphabetical
+        List<Place> places = trie.suggest("WEST", 5);
+        assertEquals(3, places.size());
+        assertEquals("Westmount", places.get(0).getName());
+        assertEquals("West Edmonton Mall", places.get(1).getName());
+        assertEquals("Westbrook", places.get(2).getName());
+
+        assertEquals(2, trie.suggest("w", 2).size());
+        assertEquals("Westmount", trie.suggest("w", 1).get(0).getName());
+        assertEquals("Whyte Avenue", trie.suggest(" wh", 5).get(0).getName());
+
+        assertTrue(trie.suggest("Calgary", 5).isEmpty());
+        assertTrue(trie.suggest("", 5).isEmpty());
+        assertTrue(trie.suggest("w", 0).isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the RequestMigration class. The method names here correspond to the ones they are testing
+ */
+public class RequestMigrationTests {
+    @Test
+    void testPlan() {
+        Map<String, String> requestIds = new HashMap<>();
+        Map<String, String> statuses = new HashMap<>();
+
+        // A request stored once under a random ID is moved
+        requestIds.put("random1", "request-a");
+        statuses.put("random1", "INCOMPLETE");
+
+        // A request stored twice keeps the copy furthest along
+        requestIds.put("random2", "request-b");
+        statuses.put("random2", "INCOMPLETE");
+        requestIds.put("random3", "request-b");
+        statuses.put("random3", "COMPLETE");
+
+        // A copy further along than the one under the requestId is written over it
+        requestIds.put("request-c", "request-c");
+        statuses.put("request-c", "INCOMPLETE");
+        requestIds.put("random4", "request-c");
+        statuses.put("random4", "ACTIVE");
+
+        // A copy under its requestId stays when no other copy is further along
+        requestIds.put("request-d", "request-d");
+        statuses.put("request-d", "ACTIVE");
+        requestIds.put("random6", "request-d");
+        statuses.put("random6", "ACTIVE");
+        requestIds.put("random7", "request-d");
+        statuses.put("random7", "INCOMPLETE");
+
+        // A document without a requestID is left alone
+        requestIds.put("random5", null);
+
+        RequestMigration.Plan plan = RequestMigration.plan(requestIds, statuses);
+
+        assertEquals(3, plan.moves.size());
+        assertEquals("request-a", plan.moves.get("random1"));
+        assertEquals("request-b", plan.moves.get("random3"));
+        assertEquals("request-c", plan.moves.get("random4"));
+        assertEquals(Arrays.asList("random2", "random6", "random7"), plan.deletions);
+
+        // Running it again on the result has nothing to do
+        Map<String, String> migratedIds = new HashMap<>();
+        migratedIds.put("request-a", "request-a");
+        migratedIds.put("request-b", "request-b");
+        migratedIds.put("request-c", "request-c");
+        migratedIds.put("request-d", "request-d");
+        plan = RequestMigration.plan(migratedIds, statuses);
+        assertTrue(plan.moves.isEmpty());
+        assertTrue(plan.deletions.isEmpty());
+    }
+
+
+    @Test
+    void testMissingGeohash() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("startLatitude", 53.5461);
+        data.put("startLongitude", -113.4938);
+        assertEquals(Geohash.encode(53.5461, -113.4938, Geohash.STORED_PRECISION), RequestMigration.missingGeohash(data));
+
+        // Whole numbers come back from Firestore as longs
+        data.put("startLongitude", -113L);
+        assertEquals(Geohash.encode(53.5461, -113, Geohash.STORED_PRECISION), RequestMigration.missingGeohash(data));
+
+        // A document with a geohash, or without a pickup location, is left alone
+        data.put("geohash", "c3x29");
+        assertNull(RequestMigration.missingGeohash(data));
+        data.remove("geohash");
+        data.remove("startLatitude");
+        assertNull(RequestMigration.missingGeohash(data));
+    }
+}
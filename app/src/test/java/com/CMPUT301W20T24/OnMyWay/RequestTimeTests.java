@@ -3,6 +3,7 @@ package com.CMPUT301W20T24.OnMyWay;
 import org.junit.jupiter.api.Test;
 
 import java.util.Calendar;
+import java.util.TimeZone;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -15,15 +16,46 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  * @author John
  */
 public class RequestTimeTests {
+    // The times below are in Edmonton, whatever zone the tests run in
+    private static final TimeZone EDMONTON = TimeZone.getTimeZone("America/Edmonton");
+
     @Test
     void testRequestTime() {
         RequestTime requestTime = new RequestTime(1585777585);
 
-        assertEquals("April 1, 2020 at 3:46pm", requestTime.getDate());
+        assertEquals("April 1, 2020 at 3:46pm", requestTime.getDate(EDMONTON));
+        assertEquals("April 1, 2020 at 9:46pm", requestTime.getDate(TimeZone.getTimeZone("UTC")));
 
         requestTime = new RequestTime();
 
         assertEquals(Calendar.getInstance().getTime().getTime() / 1000, requestTime.toLong());
+
+        // Minutes are always two digits
+        assertEquals("April 1, 2020 at 3:05pm", new RequestTime(1585775100).getDate(EDMONTON));
+    }
+
+
+    @Test
+    void testWriteTimeElapsed() {
+        RequestTime requestTime = new RequestTime(1585777585);
+        char[] buffer = new char[RequestTime.ELAPSED_BUFFER_SIZE];
+
+        int length = requestTime.writeTimeElapsed(1585777585 + 65, buffer);
+        assertEquals("1:05", new String(buffer, 0, length));
+
+        // The same buffer can be reused
+        length = requestTime.writeTimeElapsed(1585777585 + 125 * 60 + 9, buffer);
+        assertEquals("125:09", new String(buffer, 0, length));
+
+        length = requestTime.writeTimeElapsed(1585777585, buffer);
+        assertEquals("0:00", new String(buffer, 0, length));
+
+        // A clock set back shows no time elapsed instead of a negative time
+        length = requestTime.writeTimeElapsed(1585777585 - 30, buffer);
+        assertEquals("0:00", new String(buffer, 0, length));
+
+        length = new RequestTime(0).writeTimeElapsed(Long.MAX_VALUE, buffer);
+        assertEquals(Long.MAX_VALUE / 60 + ":07", new String(buffer, 0, length));
     }
 
 }
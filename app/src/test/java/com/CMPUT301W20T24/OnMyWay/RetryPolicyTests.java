@@ -0,0 +1,41 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the RetryPolicy class. The method names here correspond to the ones they are testing
+ */
+public class RetryPolicyTests {
+    @Test
+    void testDelayMillis() {
+        RetryPolicy retryPolicy = new RetryPolicy(1000, 60000);
+
+        // Without jitter the delay is half of the exponential delay, with full jitter it is all of it
+        assertEquals(500, retryPolicy.delayMillis(1, 0));
+        assertEquals(1000, retryPolicy.delayMillis(1, 1));
+        assertEquals(2000, retryPolicy.delayMillis(2, 1));
+        assertEquals(32000, retryPolicy.delayMillis(6, 1));
+
+        // Capped at the maximum, even after many attempts
+        assertEquals(60000, retryPolicy.delayMillis(7, 1));
+        assertEquals(60000, retryPolicy.delayMillis(1000, 1));
+        assertEquals(30000, retryPolicy.delayMillis(1000, 0));
+
+        for (int attempts = 1; attempts < 20; ++attempts) {
+            long delay = retryPolicy.delayMillis(attempts);
+            assertTrue(delay >= 500 && delay <= 60000);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            new RetryPolicy(0, 1000);       // A delay of zero should throw exception
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            new RetryPolicy(1000, 500);     // A max below the base should throw exception
+        });
+    }
+}
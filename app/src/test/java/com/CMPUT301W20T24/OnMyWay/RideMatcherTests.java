@@ -0,0 +1,173 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the RideMatcher class. The method names here correspond to the ones they are testing
+ */
+public class RideMatcherTests {
+    // The driver waits downtown
+    private static final double DRIVER_LAT = 53.5461;
+    private static final double DRIVER_LON = -113.4938;
+
+    private List<String> ids(List<RideMatcher.Match> matches) {
+        List<String> ids = new ArrayList<>();
+        for (RideMatcher.Match match : matches) {
+            ids.add(match.documentId);
+        }
+        return ids;
+    }
+
+
+    @Test
+    void testTopMatches() {
+        RideMatcher matcher = new RideMatcher(2, 22);
+        matcher.upsert("far", 53.6461, -113.4938);      // About 11km north
+        matcher.upsert("near", 53.5561, -113.4938);     // About 1km north
+        matcher.upsert("middle", 53.5961, -113.4938);   // About 5.5km north
+        matcher.upsert("calgary", 51.0447, -114.0719);  // Out of range
+
+        // Nothing is ranked until the driver's position is known
+        assertTrue(matcher.topMatches().isEmpty());
+
+        matcher.setDriverPosition(DRIVER_LAT, DRIVER_LON);
+        assertEquals(Arrays.asList("near", "middle"), ids(matcher.topMatches()));
+
+        // A closer arrival pushes the worst out of the best K
+        matcher.upsert("closest", 53.5471, -113.4938);
+        assertEquals(Arrays.asList("closest", "near"), ids(matcher.topMatches()));
+
+        // When one of the best leaves, the next best takes its place
+        matcher.remove("closest");
+        assertEquals(Arrays.asList("near", "middle"), ids(matcher.topMatches()));
+
+        // And when one moves away, it is ranked again against the rest
+        matcher.upsert("near", 53.7, -113.4938);
+        assertEquals(Arrays.asList("middle", "far"), ids(matcher.topMatches()));
+
+        assertThrows(IllegalArgumentException.class, () -> new RideMatcher(0, 22));
+    }
+
+
+    @Test
+    void testBestNextRide() {
+        RideMatcher matcher = new RideMatcher(5, 22);
+        matcher.setDriverPosition(DRIVER_LAT, DRIVER_LON);
+        assertNull(matcher.bestNextRide());
+
+        matcher.upsert("north", 53.5661, -113.4938);
+        matcher.upsert("west", 53.5461, -113.5338);
+        assertEquals("north", matcher.bestNextRide().documentId);
+
+        // About 2.2km at 30km/h, along roads 1.4 times as long
+        assertEquals(Math.round(Utilities.haversineKm(DRIVER_LAT, DRIVER_LON, 53.5661, -113.4938) * 1.4 / 30 * 3600), matcher.bestNextRide().pickupSeconds);
+
+        // Driving to the west one turns out to be quicker than the estimate said
+        matcher.recordPickupTime("west", DRIVER_LAT, DRIVER_LON, 120);
+        assertEquals("west", matcher.bestNextRide().documentId);
+        assertEquals(120, matcher.bestNextRide().pickupSeconds);
+
+        // Then slower, so the north one is the best again
+        matcher.recordPickupTime("west", DRIVER_LAT, DRIVER_LON, 3600);
+        assertEquals("north", matcher.bestNextRide().documentId);
+
+        // Requests that already left are ignored
+        matcher.recordPickupTime("gone", DRIVER_LAT, DRIVER_LON, 1);
+        assertEquals("north", matcher.bestNextRide().documentId);
+
+        // The driver moving across town changes the answer
+        matcher.setDriverPosition(53.5661, -113.4938);
+        assertEquals("north", matcher.bestNextRide().documentId);
+    }
+
+
+    @Test
+    void testRecordPickupTime() {
+        // Only the single best request is kept, so the west one is outside it at first
+        RideMatcher matcher = new RideMatcher(1, 22);
+        matcher.setDriverPosition(DRIVER_LAT, DRIVER_LON);
+        matcher.upsert("north", 53.5661, -113.4938);
+        matcher.upsert("west", 53.5461, -113.5338);
+        assertEquals(Collections.singletonList("north"), ids(matcher.topMatches()));
+
+        // A request outside the best K that improves is offered right away
+        matcher.recordPickupTime("west", DRIVER_LAT, DRIVER_LON, 60);
+        assertEquals(Collections.singletonList("west"), ids(matcher.topMatches()));
+
+        // And one inside it that gets worse gives its place back
+        matcher.recordPickupTime("west", DRIVER_LAT, DRIVER_LON, 3600);
+        assertEquals(Collections.singletonList("north"), ids(matcher.topMatches()));
+
+        // A time recorded from somewhere else doesn't apply where the driver is now
+        matcher.recordPickupTime("west", 53.5661, -113.4938, 1);
+        assertEquals(Collections.singletonList("north"), ids(matcher.topMatches()));
+    }
+
+
+    @Test
+    void testSetDriverPosition() {
+        // The heap always agrees with scoring every request and sorting them
+        RideMatcher matcher = new RideMatcher(10, 22);
+        Random random = new Random(301);
+        List<double[]> pickups = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            double[] pickup = {53.45 + random.nextDouble() * 0.2, -113.6 + random.nextDouble() * 0.3};
+            pickups.add(pickup);
+            matcher.upsert("doc" + i, pickup[0], pickup[1]);
+        }
+        Set<String> removed = new HashSet<>();
+        for (int i = 0; i < 100; ++i) {
+            String id = "doc" + random.nextInt(1000);
+            matcher.remove(id);
+            removed.add(id);
+        }
+        matcher.setDriverPosition(DRIVER_LAT, DRIVER_LON);
+
+        List<RideMatcher.Match> top = matcher.topMatches();
+        assertEquals(10, top.size());
+
+        final List<Double> distances = new ArrayList<>();
+        for (double[] pickup : pickups) {
+            distances.add(Utilities.haversineKm(DRIVER_LAT, DRIVER_LON, pickup[0], pickup[1]));
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < pickups.size(); ++i) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(distances.get(a), distances.get(b));
+            }
+        });
+
+        // Every ranked request is at least as close as any unranked one still open
+        double worstRanked = 0;
+        for (RideMatcher.Match match : top) {
+            worstRanked = Math.max(worstRanked, distances.get(Integer.parseInt(match.documentId.substring(3))));
+        }
+        List<String> ranked = ids(top);
+        for (int i : order) {
+            if (distances.get(i) >= worstRanked) {
+                break;
+            }
+            String id = "doc" + i;
+            assertTrue(ranked.contains(id) || removed.contains(id));
+        }
+    }
+}
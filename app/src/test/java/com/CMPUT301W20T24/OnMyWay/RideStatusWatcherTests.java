@@ -0,0 +1,78 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the RideStatusWatcher class. The method names here correspond to the ones they are testing
+ */
+public class RideStatusWatcherTests {
+    // Records every call, in order
+    private static class MockListener implements RideStatusListener {
+        List<String> calls = new ArrayList<>();
+
+        @Override
+        public void onDriverAccepted(String driverId) {
+            calls.add("accepted " + driverId);
+        }
+
+        @Override
+        public void onRideCompleted() {
+            calls.add("completed");
+        }
+
+        @Override
+        public void onRideCancelled() {
+            calls.add("cancelled");
+        }
+    }
+
+
+    @Test
+    void testOnSnapshot() {
+        MockListener listener = new MockListener();
+        RideStatusWatcher watcher = new RideStatusWatcher(listener);
+
+        assertFalse(watcher.onSnapshot("INCOMPLETE", null, false));
+        assertTrue(watcher.onSnapshot("ACTIVE", "driver", false));
+
+        // Repeated and stale snapshots, and echoes of unsent writes, do nothing
+        assertFalse(watcher.onSnapshot("ACTIVE", "driver", false));
+        assertFalse(watcher.onSnapshot("INCOMPLETE", null, false));
+        assertFalse(watcher.onSnapshot("COMPLETE", "driver", true));
+        assertFalse(watcher.onSnapshot("LOST", "driver", false));
+        assertFalse(watcher.onSnapshot(null, "driver", false));
+
+        assertTrue(watcher.onSnapshot("COMPLETE", "driver", false));
+        assertTrue(watcher.isFinished());
+
+        // Nothing moves a finished ride
+        assertFalse(watcher.onSnapshot("CANCELLED", "driver", false));
+        assertFalse(watcher.onSnapshot("COMPLETE", "driver", false));
+
+        assertEquals(Arrays.asList("accepted driver", "completed"), listener.calls);
+    }
+
+    @Test
+    void testOnSnapshotSkippedStatus() {
+        // A ride accepted and completed between two snapshots still runs both transitions
+        MockListener listener = new MockListener();
+        RideStatusWatcher watcher = new RideStatusWatcher(listener);
+        watcher.onSnapshot("COMPLETE", "driver", false);
+        assertEquals(Arrays.asList("accepted driver", "completed"), listener.calls);
+
+        listener = new MockListener();
+        watcher = new RideStatusWatcher(listener);
+        watcher.onSnapshot("CANCELLED", null, false);
+        assertEquals("CANCELLED", watcher.getStatus());
+        assertEquals(Arrays.asList("cancelled"), listener.calls);
+    }
+}
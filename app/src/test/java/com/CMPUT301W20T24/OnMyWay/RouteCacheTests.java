@@ -0,0 +1,81 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+/**
+ * Tests for the RouteCache class. The method names here correspond to the ones they are testing
+ */
+public class RouteCacheTests {
+    // A RouteCache whose clock is moved by hand
+    private static class ManualClockCache extends RouteCache<String> {
+        long time = 0;
+
+        ManualClockCache(int capacity, long ttlMillis) {
+            super(capacity, ttlMillis);
+        }
+
+        @Override
+        protected long now() {
+            return time;
+        }
+    }
+
+    @Test
+    void testKey() {
+        // About 5m apart snaps to the same cell
+        assertEquals(RouteCache.key(53.54610, -113.49380, 51.0447, -114.0719),
+                RouteCache.key(53.54614, -113.49384, 51.0447, -114.0719));
+
+        // About 200m apart doesn't
+        assertNotEquals(RouteCache.key(53.5461, -113.4938, 51.0447, -114.0719),
+                RouteCache.key(53.5479, -113.4938, 51.0447, -114.0719));
+
+        // Direction matters
+        assertNotEquals(RouteCache.key(53.5461, -113.4938, 51.0447, -114.0719),
+                RouteCache.key(51.0447, -114.0719, 53.5461, -113.4938));
+    }
+
+    @Test
+    void testGetPut() {
+        ManualClockCache cache = new ManualClockCache(2, 1000);
+
+        assertNull(cache.get("a"));
+        cache.put("a", "route a");
+        assertEquals("route a", cache.get("a"));
+        cache.put("a", "new route a");
+        assertEquals("new route a", cache.get("a"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        ManualClockCache cache = new ManualClockCache(2, 1000);
+
+        cache.put("a", "route a");
+        cache.put("b", "route b");
+        cache.get("a");     // "b" is now the least recently used
+        cache.put("c", "route c");
+
+        assertEquals(2, cache.size());
+        assertEquals("route a", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("route c", cache.get("c"));
+    }
+
+    @Test
+    void testEntriesExpire() {
+        ManualClockCache cache = new ManualClockCache(2, 1000);
+
+        cache.put("a", "route a");
+        cache.time = 999;
+        assertEquals("route a", cache.get("a"));
+        cache.time = 1000;
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+}
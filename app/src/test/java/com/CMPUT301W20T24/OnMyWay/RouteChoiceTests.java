@@ -0,0 +1,71 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import com.google.maps.model.DirectionsLeg;
+import com.google.maps.model.DirectionsResult;
+import com.google.maps.model.DirectionsRoute;
+import com.google.maps.model.Distance;
+import com.google.maps.model.Duration;
+import com.google.maps.model.EncodedPolyline;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+/**
+ * Tests for the RouteChoice class. The method names here correspond to the ones they are testing
+ */
+public class RouteChoiceTests {
+    private static final String PATH_A = "_p~iF~ps|U_ulLnnqC_mqNvxq`@";   // 3 points
+    private static final String PATH_B = "_p~iF~ps|U";                     // 1 point
+
+
+    private DirectionsRoute mockRoute(String path, long meters, long seconds, Long secondsInTraffic) {
+        DirectionsLeg leg = new DirectionsLeg();
+        leg.distance = new Distance();
+        leg.distance.inMeters = meters;
+        leg.duration = new Duration();
+        leg.duration.inSeconds = seconds;
+        if (secondsInTraffic != null) {
+            leg.durationInTraffic = new Duration();
+            leg.durationInTraffic.inSeconds = secondsInTraffic;
+        }
+
+        DirectionsRoute route = new DirectionsRoute();
+        route.overviewPolyline = new EncodedPolyline(path);
+        route.legs = new DirectionsLeg[] {leg};
+        return route;
+    }
+
+
+    @Test
+    void testScore() {
+        // 600 seconds plus 30 seconds for each of the 5 kilometres
+        assertEquals(750, RouteChoice.score(mockRoute(PATH_A, 5000, 600, null)), 1e-9);
+
+        // Time in traffic is used when it's there
+        assertEquals(1050, RouteChoice.score(mockRoute(PATH_A, 5000, 600, 900L)), 1e-9);
+    }
+
+    @Test
+    void testChoose() {
+        DirectionsResult result = new DirectionsResult();
+        result.routes = new DirectionsRoute[] {
+                mockRoute(PATH_A, 9000, 600, null),   // 870
+                mockRoute(PATH_B, 5000, 660, null),   // 810, the best
+                mockRoute(PATH_A, 4000, 900, null)    // 1020
+        };
+
+        RouteChoice choice = RouteChoice.choose(result);
+        assertEquals(1, choice.getChosen().size());
+        assertEquals(2, choice.getAlternatives().size());
+        assertEquals(3, choice.getAlternatives().get(0).size());
+        assertEquals(660, choice.getDurationSeconds());
+        assertEquals(5000, choice.getDistanceMeters());
+
+        result.routes = new DirectionsRoute[0];
+        assertNull(RouteChoice.choose(result));
+        assertNull(RouteChoice.choose(null));
+    }
+}
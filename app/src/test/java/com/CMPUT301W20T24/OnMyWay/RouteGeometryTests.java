@@ -0,0 +1,82 @@
+package com.CMPUT301W20T24.OnMyWay;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests for the RouteGeometry class. The method names here correspond to the ones they are testing
+ */
+public class RouteGeometryTests {
+    @Test
+    void testDecode() {
+        // The example from Google's polyline algorithm documentation
+        RouteGeometry route = RouteGeometry.decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+
+        assertEquals(3, route.size());
+        assertEquals(38.5, route.latitude(0), 1e-9);
+        assertEquals(-120.2, route.longitude(0), 1e-9);
+        assertEquals(40.7, route.latitude(1), 1e-9);
+        assertEquals(-120.95, route.longitude(1), 1e-9);
+        assertEquals(43.252, route.latitude(2), 1e-9);
+        assertEquals(-126.453, route.longitude(2), 1e-9);
+
+        assertEquals(0, RouteGeometry.decode("").size());
+    }
+
+    @Test
+    void testDecodeInto() {
+        RouteGeometry route = new RouteGeometry(1);
+
+        // Grows past its capacity, then is reused for a shorter route
+        RouteGeometry.decodeInto("_p~iF~ps|U_ulLnnqC_mqNvxq`@", route);
+        assertEquals(3, route.size());
+
+        RouteGeometry.decodeInto("_p~iF~ps|U", route);
+        assertEquals(1, route.size());
+        assertEquals(38.5, route.latitude(0), 1e-9);
+        assertEquals(-120.2, route.longitude(0), 1e-9);
+    }
+
+    @Test
+    void testMetresPerPixel() {
+        assertEquals(156543.03392, RouteGeometry.metresPerPixel(0, 0), 1e-6);
+        assertEquals(156543.03392 / 32768, RouteGeometry.metresPerPixel(15, 0), 1e-6);
+
+        // Pixels cover less ground away from the equator
+        assertTrue(RouteGeometry.metresPerPixel(15, 53.5) < RouteGeometry.metresPerPixel(15, 0));
+    }
+
+    @Test
+    void testSimplify() {
+        RouteGeometry route = new RouteGeometry(8);
+
+        // A straight line north with a 100m bump in the middle
+        for (int i = 0; i <= 10; ++i) {
+            route.add(53.5 + i * 0.001, -113.5);
+        }
+        route.add(53.5105, -113.5 + 0.0015);
+        for (int i = 11; i <= 20; ++i) {
+            route.add(53.5 + i * 0.001, -113.5);
+        }
+
+        // Coarse enough to drop the bump, so only the ends are left
+        RouteGeometry coarse = route.simplify(200);
+        assertEquals(2, coarse.size());
+        assertEquals(53.5, coarse.latitude(0), 1e-9);
+        assertEquals(53.52, coarse.latitude(1), 1e-9);
+
+        // Fine enough to keep the bump and the points it joins to
+        RouteGeometry fine = route.simplify(10);
+        assertEquals(5, fine.size());
+        assertEquals(-113.4985, fine.longitude(2), 1e-9);
+
+        // Nothing to simplify on very short routes
+        RouteGeometry twoPoints = new RouteGeometry(2);
+        twoPoints.add(53.5, -113.5);
+        twoPoints.add(53.6, -113.6);
+        assertEquals(2, twoPoints.simplify(1000).size());
+    }
+}
@@ -80,4 +80,12 @@ public class UtilitiesTests {
             Utilities.checkLongNotNull(null);  // Null string should throw exception
         });
     }
+
+    @Test
+    void testHaversineKm() {
+        assertEquals(0, Utilities.haversineKm(53.5461, -113.4938, 53.5461, -113.4938), 1e-9);
+        assertEquals(281, Utilities.haversineKm(53.5461, -113.4938, 51.0447, -114.0719), 1);    // Edmonton to Calgary
+        assertEquals(111.2, Utilities.haversineKm(0, 0, 1, 0), 0.1);    // One degree of latitude
+        assertEquals(Utilities.haversineKm(1, 2, 3, 4), Utilities.haversineKm(3, 4, 1, 2), 1e-9);
+    }
 }
@@ -0,0 +1,25 @@
+package com.google.maps;
+
+
+/**
+ * Builds GeoApiContexts that send their requests to a local stub server instead of Google.
+ * GeoApiContext.Builder.baseUrlOverride() is package-private, so this has to live in com.google.maps
+ */
+public class LocalGeoApiContext {
+    // The library rejects keys that don't look like a real one, but the stub server never checks it
+    private static final String FAKE_API_KEY = "AIzaFakeKeyForLocalTests";
+
+
+    /**
+     * Returns a context that sends every request to a local server
+     * @param baseUrl The server's URL, such as "http://127.0.0.1:8080"
+     * @return The context. Shut it down when done
+     */
+    public static GeoApiContext create(String baseUrl) {
+        return new GeoApiContext.Builder()
+                .apiKey(FAKE_API_KEY)
+                .baseUrlOverride(baseUrl)
+                .maxRetries(0)
+                .build();
+    }
+}